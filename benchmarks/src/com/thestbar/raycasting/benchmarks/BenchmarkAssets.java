@@ -0,0 +1,105 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.LevelData;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.render.TexelCache;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+// Loads the bundled assets without any Gdx backend, so the benchmarks run headless
+public final class BenchmarkAssets {
+    public static final float CELL_SIZE = 30;
+    // Same order as GameScreen, cell value 1 uses the first texture
+    public static final String[] TEXTURE_FILES = { "eagle.png", "redbrick.png", "purplestone.png", "greystone.png",
+            "bluestone.png", "mossy.png", "wood.png", "colorstone.png", "pillar.png", "greenlight.png", "barrel.png" };
+
+    private BenchmarkAssets() {
+    }
+
+    public static File assetsDir() {
+        return new File(System.getProperty("assets.dir", "../assets"));
+    }
+
+    public static GridMap loadLevel(String levelName) throws IOException {
+        File file = new File(assetsDir(), "levelMaps/" + levelName + "_Map.txt");
+        return LevelData.load(file, CELL_SIZE, CELL_SIZE).toGridMap();
+    }
+
+    // Decodes a texture into RGBA8888 ints, the same layout Pixmap.getPixel() returns
+    public static int[] loadTexels(String textureName) throws IOException {
+        BufferedImage image = ImageIO.read(new File(assetsDir(), "textures/" + textureName));
+        int[] texels = new int[image.getWidth() * image.getHeight()];
+        for(int y = 0; y < image.getHeight(); y++) {
+            for(int x = 0; x < image.getWidth(); x++) {
+                int argb = image.getRGB(x, y);
+                texels[y * image.getWidth() + x] = (argb << 8) | (argb >>> 24);
+            }
+        }
+        return texels;
+    }
+
+    public static TexelCache loadTexelCache() throws IOException {
+        int[][] texels = new int[TEXTURE_FILES.length][];
+        for(int i = 0; i < texels.length; i++) {
+            texels[i] = loadTexels(TEXTURE_FILES[i]);
+        }
+        return new TexelCache(64, 64, texels);
+    }
+
+    // Large open level: walls around the border and a few scattered pillars
+    public static GridMap openWorld(int size, long seed) {
+        Random random = new Random(seed);
+        GridMap map = new GridMap(size, size, CELL_SIZE, CELL_SIZE);
+        for(int i = 0; i < size; i++) {
+            map.set(i, 0, 1);
+            map.set(i, size - 1, 1);
+            map.set(0, i, 1);
+            map.set(size - 1, i, 1);
+        }
+        int pillars = size * size / 2000;
+        for(int i = 0; i < pillars; i++) {
+            map.set(1 + random.nextInt(size - 2), 1 + random.nextInt(size - 2), 1 + random.nextInt(8));
+        }
+        return map;
+    }
+
+    // Sprites at random spots of random empty cells, using the pillar, greenlight and barrel textures
+    public static Sprites scatterSprites(GridMap map, int count, long seed) {
+        Random random = new Random(seed);
+        Sprites sprites = new Sprites();
+        sprites.ensureCapacity(count);
+        while(sprites.count < count) {
+            int x = random.nextInt(map.getWidth());
+            int y = random.nextInt(map.getHeight());
+            if(map.get(x, y) != 0) continue;
+            sprites.add((x + random.nextFloat()) * map.getCellWidth(), (y + random.nextFloat()) * map.getCellHeight(),
+                    9 + random.nextInt(3));
+        }
+        return sprites;
+    }
+
+    // Center of the empty cell that is closest to the middle of the map
+    public static float[] findSpawn(GridMap map) {
+        int centerX = map.getWidth() / 2;
+        int centerY = map.getHeight() / 2;
+        int bestX = -1;
+        int bestY = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for(int y = 0; y < map.getHeight(); y++) {
+            for(int x = 0; x < map.getWidth(); x++) {
+                int distance = (x - centerX) * (x - centerX) + (y - centerY) * (y - centerY);
+                if(map.get(x, y) == 0 && distance < bestDistance) {
+                    bestDistance = distance;
+                    bestX = x;
+                    bestY = y;
+                }
+            }
+        }
+        return new float[] { (bestX + 0.5f) * map.getCellWidth(), (bestY + 0.5f) * map.getCellHeight() };
+    }
+}
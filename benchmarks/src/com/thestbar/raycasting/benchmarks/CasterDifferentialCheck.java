@@ -0,0 +1,147 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.DistanceField;
+import com.thestbar.raycasting.map.GridMap;
+
+import java.util.Random;
+
+// Differential check of the DDA with empty space skipping against the plain
+// DDA. Casts fans of rays from random empty cells of the bundled levels and
+// of large open levels, also after cells are painted one at a time and after
+// a burst of edits published through the map change tracking, and fails when
+// any hit differs in any field or the incrementally updated distance field
+// differs from one built from scratch. Every other fan stops at the end of the fog
+public class CasterDifferentialCheck {
+    private static final int RAYS = 720;
+    private static final int ORIGINS = 200;
+    private static final int PAINTED_CELLS = 300;
+    // Edits of one frame of a fast drag or of scripted level generation
+    private static final int BURST_CELLS = 5000;
+    // Same as the end of the fog in GameScreen
+    private static final float MAX_DISTANCE = 900;
+
+    private static int mismatches = 0;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        for(String level: new String[] { "Level1", "Level2", "Level3" }) {
+            check(level, BenchmarkAssets.loadLevel(level), random);
+        }
+        check("Open512", BenchmarkAssets.openWorld(512, 1), random);
+        check("Open2048", BenchmarkAssets.openWorld(2048, 2), random);
+
+        if(mismatches > 0) {
+            System.err.println(mismatches + " mismatches");
+            System.exit(1);
+        }
+    }
+
+    static void check(String name, GridMap map, Random random) {
+        DistanceField field = new DistanceField(map);
+        DdaRayCaster plain = new DdaRayCaster();
+        DdaRayCaster skipping = new DdaRayCaster(field);
+        CameraPlane camera = new CameraPlane();
+        Rays rays = new Rays();
+        RayHits expected = new RayHits();
+        RayHits actual = new RayHits();
+        int before = mismatches;
+
+        for(int pass = 0; pass < 3; pass++) {
+            for(int i = 0; i < ORIGINS; i++) {
+                int cellX;
+                int cellY;
+                do {
+                    cellX = random.nextInt(map.getWidth());
+                    cellY = random.nextInt(map.getHeight());
+                } while(map.get(cellX, cellY) != 0);
+                float x = (cellX + random.nextFloat()) * map.getCellWidth();
+                float y = (cellY + random.nextFloat()) * map.getCellHeight();
+                camera.set(new Vector2(1, 0).rotateDeg(random.nextFloat() * 360), 50, RAYS);
+                rays.fan(camera);
+                rays.maxDistance = i % 2 == 0 ? Float.POSITIVE_INFINITY : MAX_DISTANCE;
+                expected.ensureCapacity(rays.count);
+                actual.ensureCapacity(rays.count);
+                plain.cast(map, x, y, rays, 0, rays.count, expected);
+                skipping.cast(map, x, y, rays, 0, rays.count, actual);
+                compare(name, expected, actual, rays.count);
+            }
+
+            // Paint cells one at a time, then cast again on the updated field
+            if(pass % 2 == 0) {
+                for(int i = 0; i < PAINTED_CELLS; i++) {
+                    int cellX = random.nextInt(map.getWidth());
+                    int cellY = random.nextInt(map.getHeight());
+                    map.set(cellX, cellY, random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(8));
+                    field.update(cellX, cellY);
+                }
+                // Already applied, nobody is listening yet
+                map.publishChanges();
+            }
+            // Or all in one frame, and the field only learns about them from the published rectangles
+            else {
+                map.addChangeListener(field);
+                paintBurst(map, random);
+                map.publishChanges();
+                map.removeChangeListener(field);
+            }
+            compareFields(name, field, new DistanceField(map));
+        }
+
+        System.out.println(name + ": " + (mismatches == before ? "ok" : (mismatches - before) + " mismatches"));
+    }
+
+    // Half of it a stroke across the map like a drag, the other half scattered
+    static void paintBurst(GridMap map, Random random) {
+        int x = random.nextInt(map.getWidth());
+        int y = random.nextInt(map.getHeight());
+        for(int i = 0; i < BURST_CELLS / 2; i++) {
+            x = Math.max(0, Math.min(map.getWidth() - 1, x + random.nextInt(3) - 1));
+            y = Math.max(0, Math.min(map.getHeight() - 1, y + random.nextInt(3) - 1));
+            map.set(x, y, 1 + random.nextInt(8));
+        }
+        for(int i = 0; i < BURST_CELLS / 2; i++) {
+            map.set(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()),
+                    random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(8));
+        }
+    }
+
+    static void compare(String name, RayHits expected, RayHits actual, int count) {
+        for(int i = 0; i < count; i++) {
+            boolean same = Float.floatToIntBits(expected.distance[i]) == Float.floatToIntBits(actual.distance[i])
+                    && Float.floatToIntBits(expected.euclDistance[i]) == Float.floatToIntBits(actual.euclDistance[i])
+                    && Float.floatToIntBits(expected.textureU[i]) == Float.floatToIntBits(actual.textureU[i])
+                    && Float.floatToIntBits(expected.hitX[i]) == Float.floatToIntBits(actual.hitX[i])
+                    && Float.floatToIntBits(expected.hitY[i]) == Float.floatToIntBits(actual.hitY[i])
+                    && expected.side[i] == actual.side[i] && expected.cellValue[i] == actual.cellValue[i]
+                    && expected.cellX[i] == actual.cellX[i] && expected.cellY[i] == actual.cellY[i];
+            if(!same) {
+                if(mismatches < 10) {
+                    System.err.println(name + " column " + i + ": expected cell " + expected.cellX[i] + "," + expected.cellY[i]
+                            + " at " + expected.euclDistance[i] + ", got " + actual.cellX[i] + "," + actual.cellY[i]
+                            + " at " + actual.euclDistance[i]);
+                }
+                mismatches++;
+            }
+        }
+    }
+
+    static void compareFields(String name, DistanceField updated, DistanceField rebuilt) {
+        GridMap map = updated.getMap();
+        for(int y = 0; y < map.getHeight(); y++) {
+            for(int x = 0; x < map.getWidth(); x++) {
+                if(updated.get(x, y) != rebuilt.get(x, y)) {
+                    if(mismatches < 10) {
+                        System.err.println(name + " distance at " + x + "," + y + ": expected "
+                                + rebuilt.get(x, y) + ", got " + updated.get(x, y));
+                    }
+                    mismatches++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.render.FloorCaster;
+import com.thestbar.raycasting.render.FogTable;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Cost of drawFloorAndCeiling3D for common window sizes. The 3D view is
+// the right half of the window, like in GameScreen. With walls set to a
+// level the pixels behind the walls seen from its spawn point are skipped.
+// With fog every pixel goes through the fog tables, and the rows past its end are filled
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FloorCasterBenchmark {
+    private static final float FOV = 50;
+    private static final float WALL_HEIGHT_SCALE = 30;
+
+    @Param({ "1280x720", "1440x720", "1920x1080", "3840x2160" })
+    public String resolution;
+
+    // 0 casts every row on the benchmark thread, a pool without threads does not hand any band off
+    @Param({ "1", "0" })
+    public int parallel;
+
+    @Param({ "none", "Level3" })
+    public String walls;
+
+    @Param({ "off", "on" })
+    public String fog;
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private int[] floorTexels;
+    private int[] ceilingTexels;
+    private final Vector2 player = new Vector2(75, 45);
+    private final CameraPlane camera = new CameraPlane();
+    private final RayHits hits = new RayHits();
+    private WorkerPool pool;
+    private FloorCaster floorCaster;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]) / 2;
+        height = Integer.parseInt(size[1]);
+        pixels = new int[width * height];
+        floorTexels = BenchmarkAssets.loadTexels("greystone.png");
+        ceilingTexels = BenchmarkAssets.loadTexels("wood.png");
+        pool = parallel == 1 ? new WorkerPool() : new WorkerPool(0);
+        floorCaster = new FloorCaster(pool, 64, 64);
+        if(fog.equals("on")) {
+            floorCaster.setFog(new FogTable(150, 900, 0x0c0c11ff, SoftwareRenderer.SIDE_SHADE), WALL_HEIGHT_SCALE);
+        }
+        camera.set(new Vector2(1, 0).rotateDeg(30), FOV, width);
+        if(!walls.equals("none")) {
+            GridMap map = BenchmarkAssets.loadLevel(walls);
+            float[] spawn = BenchmarkAssets.findSpawn(map);
+            player.set(spawn[0], spawn[1]);
+            Rays rays = new Rays();
+            rays.fan(camera);
+            hits.ensureCapacity(rays.count);
+            new DdaRayCaster().cast(map, player.x, player.y, rays, 0, rays.count, hits);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] castFloorAndCeiling() {
+        if(!walls.equals("none")) {
+            floorCaster.occludeWithWalls(hits, width, height, WALL_HEIGHT_SCALE);
+        }
+        floorCaster.cast(pixels, width, height, player, camera,
+                BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE, floorTexels, ceilingTexels);
+        return pixels;
+    }
+}
@@ -0,0 +1,234 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.render.FloorCaster;
+import com.thestbar.raycasting.render.FogTable;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Differential check of FloorCaster against the per pixel loop of the old
+// GameScreen.drawFloorAndCeiling3D, kept below. Casts frames at several
+// resolutions, odd heights and widths included, from random positions and
+// directions, on a pool without threads and on one with several, and fails
+// when any pixel differs. Every frame is cast twice: with the edge rays of
+// the old loop, the player direction rotated by half the FOV, which must give
+// the pixels of the old game, and with the edges of the camera plane the game
+// uses since its rays are projected through one. Those are 1 / cos(fov / 2)
+// times as long, so the floor is that much smaller than it used to be, which
+// is checked too. With fog, every row must be shaded like a wall whose foot
+// is on that row, for cell sizes other than the wall height scale too
+public class FloorCasterCheck {
+    private static final int TEXTURE_WIDTH = 64;
+    private static final int TEXTURE_HEIGHT = 64;
+    private static final float FOV = 50;
+    private static final int FRAMES = 50;
+    // Same as GameScreen
+    private static final float WALL_HEIGHT_SCALE = 30;
+    private static final float[] FOG_CELL_SIZES = { 30, 16, 64 };
+    // Window sizes, the 3D view is the right half of the window
+    private static final int[][] WINDOWS = { { 1280, 720 }, { 1440, 720 }, { 640, 481 }, { 1922, 1081 },
+            { 202, 99 }, { 2, 3 } };
+
+    private static int mismatches = 0;
+
+    public static void main(String[] args) throws Exception {
+        int[] floorTexels = BenchmarkAssets.loadTexels("greystone.png");
+        int[] ceilingTexels = BenchmarkAssets.loadTexels("wood.png");
+        WorkerPool serial = new WorkerPool(0);
+        WorkerPool parallel = new WorkerPool(3);
+        Random random = new Random(42);
+        try {
+            for(int[] window: WINDOWS) {
+                check(window[0], window[1], "serial", serial, floorTexels, ceilingTexels, random);
+                check(window[0], window[1], "parallel", parallel, floorTexels, ceilingTexels, random);
+            }
+            for(float cellSize: FOG_CELL_SIZES) {
+                checkFog(cellSize, parallel, random);
+            }
+        }
+        finally {
+            serial.shutdown();
+            parallel.shutdown();
+        }
+
+        if(mismatches > 0) {
+            System.err.println(mismatches + " mismatches");
+            System.exit(1);
+        }
+    }
+
+    static void check(int windowWidth, int windowHeight, String name, WorkerPool pool,
+                      int[] floorTexels, int[] ceilingTexels, Random random) {
+        int width = windowWidth / 2;
+        FloorCaster floorCaster = new FloorCaster(pool, TEXTURE_WIDTH, TEXTURE_HEIGHT);
+        CameraPlane camera = new CameraPlane();
+        Vector2 player = new Vector2();
+        Vector2 playerDir = new Vector2();
+        int[] expected = new int[width * windowHeight];
+        int[] actual = new int[width * windowHeight];
+        int before = mismatches;
+
+        for(int frame = 0; frame < FRAMES; frame++) {
+            player.set(random.nextFloat() * 64 * BenchmarkAssets.CELL_SIZE,
+                    random.nextFloat() * 64 * BenchmarkAssets.CELL_SIZE);
+            playerDir.set(1, 0).rotateDeg(random.nextFloat() * 360);
+            camera.set(playerDir, FOV, width);
+
+            // The old game
+            Vector2 rayDir0 = playerDir.cpy().rotateDeg(-FOV / 2);
+            Vector2 rayDir1 = playerDir.cpy().rotateDeg(FOV / 2);
+            drawFloorAndCeiling3D(expected, windowWidth, windowHeight, player, playerDir, null,
+                    BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE, floorTexels, ceilingTexels);
+            floorCaster.cast(actual, width, windowHeight, player, rayDir0.x, rayDir0.y, rayDir1.x, rayDir1.y,
+                    BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE, floorTexels, ceilingTexels);
+            compare(expected, actual, width, windowWidth + "x" + windowHeight + " " + name + " old edges");
+
+            // The camera plane
+            drawFloorAndCeiling3D(expected, windowWidth, windowHeight, player, playerDir, camera,
+                    BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE, floorTexels, ceilingTexels);
+            floorCaster.cast(actual, width, windowHeight, player, camera,
+                    BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE, floorTexels, ceilingTexels);
+            compare(expected, actual, width, windowWidth + "x" + windowHeight + " " + name + " camera plane");
+
+            float scale = (float)Math.cos(Math.toRadians(FOV / 2));
+            if(Math.abs((camera.dirX - camera.planeX) * scale - rayDir0.x) > 1e-5f
+                    || Math.abs((camera.dirY - camera.planeY) * scale - rayDir0.y) > 1e-5f
+                    || Math.abs((camera.dirX + camera.planeX) * scale - rayDir1.x) > 1e-5f
+                    || Math.abs((camera.dirY + camera.planeY) * scale - rayDir1.y) > 1e-5f) {
+                System.err.println(windowWidth + "x" + windowHeight + " " + name
+                        + ": the camera plane edges are not the old edges scaled by 1 / cos(fov / 2)");
+                mismatches++;
+            }
+        }
+
+        System.out.println(windowWidth + "x" + windowHeight + " " + name + ": "
+                + (mismatches == before ? "ok" : (mismatches - before) + " mismatches"));
+    }
+
+    static void compare(int[] expected, int[] actual, int width, String name) {
+        for(int i = 0; i < expected.length; i++) {
+            if(expected[i] != actual[i]) {
+                if(mismatches < 10) {
+                    System.err.println(name + " pixel " + i % width + "," + i / width + ": expected "
+                            + Integer.toHexString(expected[i]) + ", got " + Integer.toHexString(actual[i]));
+                }
+                mismatches++;
+            }
+        }
+    }
+
+    // Floor and ceiling textures of a single color, so the fog level of each
+    // row can be read back from its pixels. The fog distance of a row is the
+    // distance of the wall whose foot is on it, wallHeightScale * height / 2
+    // rows tall, whatever the size of the cells
+    static void checkFog(float cellSize, WorkerPool pool, Random random) {
+        int width = 320;
+        int height = 481;
+        int floorColor = 0x806040ff;
+        int ceilingColor = 0x406080ff;
+        int[] floorTexels = new int[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+        int[] ceilingTexels = new int[TEXTURE_WIDTH * TEXTURE_HEIGHT];
+        Arrays.fill(floorTexels, floorColor);
+        Arrays.fill(ceilingTexels, ceilingColor);
+        FogTable fog = new FogTable(150, 900, 0x0c0c11ff, SoftwareRenderer.SIDE_SHADE);
+        FloorCaster floorCaster = new FloorCaster(pool, TEXTURE_WIDTH, TEXTURE_HEIGHT);
+        floorCaster.setFog(fog, WALL_HEIGHT_SCALE);
+        CameraPlane camera = new CameraPlane();
+        camera.set(new Vector2(1, 0).rotateDeg(random.nextFloat() * 360), FOV, width);
+        Vector2 player = new Vector2(random.nextFloat() * 64 * cellSize, random.nextFloat() * 64 * cellSize);
+        int[] pixels = new int[width * height];
+        floorCaster.cast(pixels, width, height, player, camera, cellSize, cellSize, floorTexels, ceilingTexels);
+
+        int before = mismatches;
+        for(int y = 0; y < height; y++) {
+            int p = y - height / 2;
+            float wallDistance = Math.abs(0.5f * height / p) * WALL_HEIGHT_SCALE;
+            int offset = fog.offset(wallDistance, false);
+            int color = y >= height / 2 ? ceilingColor : floorColor;
+            int expected = fog.isOpaque(offset) ? fog.getFogColor() : fog.isClear(offset) ? color : fog.shade(color, offset);
+            for(int x = 0; x < width; x++) {
+                if(pixels[y * width + x] != expected) {
+                    if(mismatches < 10) {
+                        System.err.println("fog with cells of " + cellSize + " row " + y + ": expected "
+                                + Integer.toHexString(expected) + ", got " + Integer.toHexString(pixels[y * width + x]));
+                    }
+                    mismatches++;
+                    break;
+                }
+            }
+        }
+
+        System.out.println("fog with cells of " + cellSize + ": "
+                + (mismatches == before ? "ok" : (mismatches - before) + " mismatching rows"));
+    }
+
+    // The old loop, with Gdx.graphics replaced by the window size and
+    // Pixmap.getPixel() by the same RGBA8888 texels FloorCaster samples.
+    // Without a camera it is the loop of the old game, with one only its edge rays change
+    static void drawFloorAndCeiling3D(int[] floorAndCeilingPixelsData, int windowWidth, int windowHeight,
+                                      Vector2 player, Vector2 playerDir, CameraPlane camera,
+                                      float cellWidth, float cellHeight, int[] floorTexels, int[] ceilingTexels) {
+        int posX = (int)(player.x / cellWidth);
+        int posY = (int)(player.y / cellHeight);
+        int offX = (int)((player.x / cellWidth - posX) * TEXTURE_WIDTH);
+        int offY = (int)((player.y / cellHeight - posY) * TEXTURE_HEIGHT);
+
+        for(int y = 0; y < windowHeight; y++) {
+            // Ray direction for left most and right most rays
+            Vector2 rayDir0 = playerDir.cpy().rotateDeg(-FOV / 2);
+            Vector2 rayDir1 = playerDir.cpy().rotateDeg(FOV / 2);
+            if(camera != null) {
+                rayDir0.set(camera.dirX - camera.planeX, camera.dirY - camera.planeY);
+                rayDir1.set(camera.dirX + camera.planeX, camera.dirY + camera.planeY);
+            }
+
+            // Current y position compared to the center of the screen
+            int p = y - windowHeight / 2;
+
+            // Vertical position of the camera
+            float posZ = 0.5f * windowHeight;
+
+            // Horizontal distance from the camera to the floor for the current row
+            // 0.5 is the z position exactly in the middle between floor and ceiling
+            float rowDistance = posZ / p;
+
+            // Calculate the real world step vector we have to add for each x (parallel to camera plane)
+            // adding step by step avoids multiplications with a weight in the inner loop
+            float floorStepX = rowDistance * (rayDir1.x - rayDir0.x) / (windowWidth / 2f);
+            float floorStepY = rowDistance * (rayDir1.y - rayDir0.y) / (windowWidth / 2f);
+
+            // Real world coordinates of the leftmost column. This will be updated as we step to the right
+            float floorX = posX + rowDistance * rayDir0.x;
+            float floorY = posY + rowDistance * rayDir0.y;
+
+            for(int x = windowWidth / 2; x < windowWidth; ++x)
+            {
+                // The cell coordinate is simply got from the integer parts of floorX and floorY
+                int cellX = (int)(floorX);
+                int cellY = (int)(floorY);
+
+                if((y >= windowHeight / 2)) { // Drawing ceiling
+                    // Get the texture coordinate from the fractional part
+                    int tx = offX + (int)(TEXTURE_WIDTH * (floorX - cellX)) & (TEXTURE_WIDTH - 1);
+                    int ty = offY + (int)(TEXTURE_HEIGHT * (floorY - cellY)) & (TEXTURE_HEIGHT - 1);
+                    floorAndCeilingPixelsData[y * windowWidth / 2 + x - windowWidth / 2] =
+                            ceilingTexels[ty * TEXTURE_WIDTH + tx];
+                }
+                else { // Drawing floor
+                    // Get the texture coordinate from the fractional part
+                    int tx = -offX + (int)(TEXTURE_WIDTH * (floorX - cellX)) & (TEXTURE_WIDTH - 1);
+                    int ty = -offY + (int)(TEXTURE_HEIGHT * (floorY - cellY)) & (TEXTURE_HEIGHT - 1);
+                    floorAndCeilingPixelsData[y * windowWidth / 2 + x - windowWidth / 2] =
+                            floorTexels[ty * TEXTURE_WIDTH + tx];
+                }
+
+                floorX += floorStepX;
+                floorY += floorStepY;
+            }
+        }
+    }
+}
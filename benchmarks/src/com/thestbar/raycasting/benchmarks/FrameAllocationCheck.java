@@ -0,0 +1,328 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.thestbar.raycasting.World;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCastScheduler;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.caster.SlowRayCaster;
+import com.thestbar.raycasting.input.InputFrame;
+import com.thestbar.raycasting.map.DistanceField;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.LevelData;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibilitySet;
+import com.thestbar.raycasting.profile.FrameProfiler;
+import com.thestbar.raycasting.render.FloorCaster;
+import com.thestbar.raycasting.render.FogTable;
+import com.thestbar.raycasting.render.MinimapLayer;
+import com.thestbar.raycasting.render.MultiViewRenderer;
+import com.thestbar.raycasting.render.ResolutionScaler;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.render.SpriteRenderer;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.render.View3D;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+// Allocation regression check for the CPU side of a GameScreen frame. After
+// a warm-up it renders frames headless and fails when any thread (the
+// caller or a pool worker) allocated memory while doing so. The last pass
+// replays input through a World with painting and the profiler on, so the
+// map listeners and the visibility refresh are measured too. Only the GL
+// upload of the minimap is left out, there is no context to upload to
+public class FrameAllocationCheck {
+    private static final int WARMUP_FRAMES = 2000;
+    private static final int MEASURED_FRAMES = 500;
+    // Input of the World pass repeats with this period, the cells painted
+    // during a cycle are erased at its end so the map keeps changing
+    private static final int INPUT_CYCLE = 64;
+    // Frames the paint button is held on each cell, the mouse moves to the next cell after that
+    private static final int PAINT_FRAMES = 4;
+    private static final int PAINT_CELLS = INPUT_CYCLE / (2 * PAINT_FRAMES);
+    // Painted cells are at least this many cells away from the player, so it is never walled in
+    private static final int PAINT_MIN_DISTANCE = 3;
+    // Same budget as GameScreen
+    private static final long VISIBILITY_REFRESH_BUDGET_NANOS = 1000000;
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 720;
+    private static final float FOV = 50;
+    private static final int SPRITES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        GridMap map = BenchmarkAssets.loadLevel("Level3");
+        float[] spawn = BenchmarkAssets.findSpawn(map);
+        Vector2 player = new Vector2(spawn[0], spawn[1]);
+        Vector2 playerDir = new Vector2(1, 0);
+
+        WorkerPool pool = new WorkerPool();
+        RayCastScheduler scheduler = new RayCastScheduler(pool);
+        FloorCaster floorCaster = new FloorCaster(pool, 64, 64);
+        SoftwareRenderer renderer = new SoftwareRenderer(WIDTH, HEIGHT, 64, 64, floorCaster);
+        TexelCache texelCache = BenchmarkAssets.loadTexelCache();
+        renderer.setWallTextures(texelCache);
+        renderer.setFlatTextures(texelCache.getFlatTexels(4), texelCache.getFlatTexels(7), 0.7f);
+        CameraPlane camera = new CameraPlane();
+        Rays rays = new Rays();
+        RayHits hits = new RayHits();
+        Sprites sprites = BenchmarkAssets.scatterSprites(map, SPRITES, 1);
+        SpriteRenderer spriteRenderer = new SpriteRenderer();
+
+        boolean failed = false;
+        RayCaster[] casters = { new DdaRayCaster(), new SlowRayCaster(1f), new DdaRayCaster(new DistanceField(map)) };
+        for(RayCaster caster: casters) {
+            for(int i = 0; i < WARMUP_FRAMES; i++) {
+                renderFrame(caster, map, player, playerDir, camera, scheduler, renderer, rays, hits, sprites, spriteRenderer);
+            }
+
+            long[] ids = threads.getAllThreadIds();
+
+            // Reading the counters allocates the result array, measure that cost on its own first
+            long first = allocatedBytes(threads, ids);
+            long overhead = allocatedBytes(threads, ids) - first;
+
+            long before = allocatedBytes(threads, ids);
+            for(int i = 0; i < MEASURED_FRAMES; i++) {
+                renderFrame(caster, map, player, playerDir, camera, scheduler, renderer, rays, hits, sprites, spriteRenderer);
+            }
+            long allocated = allocatedBytes(threads, ids) - before - overhead;
+
+            System.out.println(caster.getName() + ": " + (double)allocated / MEASURED_FRAMES + " bytes/frame");
+            if(allocated > 0) failed = true;
+        }
+
+        // Dynamic resolution goes back and forth between the sizes of the scale steps,
+        // once every size was seen the buffers are big enough and switching must not allocate
+        RayCaster caster = casters[0];
+        for(int i = 0; i < WARMUP_FRAMES; i++) {
+            applyScale(renderer, i % ResolutionScaler.SCALE_STEPS + 1);
+            renderFrame(caster, map, player, playerDir, camera, scheduler, renderer, rays, hits, sprites, spriteRenderer);
+        }
+        long[] ids = threads.getAllThreadIds();
+        long first = allocatedBytes(threads, ids);
+        long overhead = allocatedBytes(threads, ids) - first;
+        long before = allocatedBytes(threads, ids);
+        for(int i = 0; i < MEASURED_FRAMES; i++) {
+            applyScale(renderer, ResolutionScaler.SCALE_STEPS - i % ResolutionScaler.SCALE_STEPS);
+            renderFrame(caster, map, player, playerDir, camera, scheduler, renderer, rays, hits, sprites, spriteRenderer);
+        }
+        long allocated = allocatedBytes(threads, ids) - before - overhead;
+        System.out.println(caster.getName() + " with resolution changes: "
+                + (double)allocated / MEASURED_FRAMES + " bytes/frame");
+        if(allocated > 0) failed = true;
+
+        // Split screen, the views are cast as one batch and drawn in parallel, culling the sprites with the
+        // visibility sets and shading everything with the fog tables
+        MultiViewRenderer multiView = new MultiViewRenderer(pool, texelCache, 64, 64, texelCache.getFlatTexels(4),
+                texelCache.getFlatTexels(7), 0.7f, FOV, 30);
+        multiView.setViewCount(MultiViewRenderer.MAX_VIEWS);
+        multiView.setVisibility(VisibilitySet.compute(map, VisibilitySet.DEFAULT_MAX_DISTANCE, pool));
+        multiView.setFog(new FogTable(150, 900, 0x0c0c11ff, SoftwareRenderer.SIDE_SHADE));
+        for(int view = 0; view < MultiViewRenderer.MAX_VIEWS; view++) {
+            multiView.getView(view).setResolution(WIDTH / 2, HEIGHT / 2);
+        }
+        for(int i = 0; i < WARMUP_FRAMES; i++) {
+            renderViews(caster, map, player, playerDir, multiView, sprites);
+        }
+        ids = threads.getAllThreadIds();
+        first = allocatedBytes(threads, ids);
+        overhead = allocatedBytes(threads, ids) - first;
+        before = allocatedBytes(threads, ids);
+        for(int i = 0; i < MEASURED_FRAMES; i++) {
+            renderViews(caster, map, player, playerDir, multiView, sprites);
+        }
+        allocated = allocatedBytes(threads, ids) - before - overhead;
+        System.out.println(caster.getName() + " with " + MultiViewRenderer.MAX_VIEWS + " views: "
+                + (double)allocated / MEASURED_FRAMES + " bytes/frame");
+        if(allocated > 0) failed = true;
+
+        // Painting and moving through World.update like GameScreen.input(), the painted cells reach
+        // the distance field, the visibility sets and the minimap, and the profiler times every scope
+        GdxNativesLoader.load();
+        World world = new World(new File(BenchmarkAssets.assetsDir(), "levelMaps/Level3_Map.lvl").getPath());
+        GridMap worldMap = world.getGridMap();
+        VisibilitySet visibility = world.getVisibility();
+        if(visibility == null) throw new IllegalStateException("Level3 has no up to date visibility file");
+        float[] worldSpawn = BenchmarkAssets.findSpawn(worldMap);
+        world.setPlayer(worldSpawn[0], worldSpawn[1], 1, 0);
+        int[] paintCells = pickPaintCells(worldMap, world.getPlayer());
+        MinimapLayer minimap = new MinimapLayer(worldMap, LevelData.defaultPalette(), Color.DARK_GRAY);
+        worldMap.addChangeListener(minimap);
+        multiView.setVisibility(visibility);
+        RayCaster worldCaster = new DdaRayCaster(world.getDistanceField());
+
+        FrameProfiler profiler = new FrameProfiler();
+        int[] scopes = { profiler.register("frame"), profiler.register("input"), profiler.register("drawMap2D"),
+                profiler.register("castRays"), profiler.register("drawFloorAndCeiling3D"),
+                profiler.register("drawSprites3D"), profiler.register("drawScreen3D") };
+        int[] viewScopes = new int[MultiViewRenderer.MAX_VIEWS];
+        for(int i = 0; i < viewScopes.length; i++) {
+            viewScopes[i] = profiler.register("view" + i);
+        }
+        profiler.setEnabled(true);
+
+        InputFrame input = new InputFrame();
+        for(int i = 0; i < WARMUP_FRAMES; i++) {
+            replayFrame(i, input, world, paintCells, visibility, minimap, worldCaster, multiView, profiler,
+                    scopes, viewScopes);
+        }
+        ids = threads.getAllThreadIds();
+        first = allocatedBytes(threads, ids);
+        overhead = allocatedBytes(threads, ids) - first;
+        before = allocatedBytes(threads, ids);
+        int refreshed = 0;
+        for(int i = WARMUP_FRAMES; i < WARMUP_FRAMES + MEASURED_FRAMES; i++) {
+            refreshed += replayFrame(i, input, world, paintCells, visibility, minimap, worldCaster, multiView, profiler,
+                    scopes, viewScopes);
+        }
+        allocated = allocatedBytes(threads, ids) - before - overhead;
+        System.out.println(worldCaster.getName() + " with painting and the profiler: "
+                + (double)allocated / MEASURED_FRAMES + " bytes/frame, " + refreshed + " visibility sets refreshed");
+        if(allocated > 0) failed = true;
+
+        minimap.dispose();
+        pool.shutdown();
+
+        if(failed) {
+            System.err.println("Frame loop is not allocation free");
+            System.exit(1);
+        }
+    }
+
+    static void renderFrame(RayCaster caster, GridMap map, Vector2 player, Vector2 playerDir, CameraPlane camera,
+                            RayCastScheduler scheduler, SoftwareRenderer renderer, Rays rays, RayHits hits,
+                            Sprites sprites, SpriteRenderer spriteRenderer) {
+        playerDir.rotateDeg(0.5f);
+        int width = renderer.getPixelBuffer().getWidth();
+        int height = renderer.getPixelBuffer().getHeight();
+        camera.set(playerDir, FOV, width);
+        rays.fan(camera);
+        scheduler.cast(caster, map, player.x, player.y, rays, hits);
+        renderer.getFloorCaster().occludeWithWalls(hits, rays.count, height, 30);
+        renderer.drawFloorAndCeiling(player, camera, map.getCellWidth(), map.getCellHeight());
+        for(int i = 0; i < rays.count; i++) {
+            if(hits.cellValue[i] <= 0) continue;
+            float wallHeight = 30 * height / hits.distance[i];
+            renderer.drawWallColumn(i, i + 1, wallHeight, hits.side[i], hits.cellValue[i],
+                    (int)(hits.textureU[i] * 64), hits.distance[i]);
+        }
+        spriteRenderer.setDepth(hits, rays.count);
+        spriteRenderer.project(sprites, player.x, player.y, camera, height, map.getCellWidth(), 30, 2000);
+        spriteRenderer.draw(sprites, renderer, 64);
+    }
+
+    static void renderViews(RayCaster caster, GridMap map, Vector2 player, Vector2 playerDir,
+                            MultiViewRenderer multiView, Sprites sprites) {
+        playerDir.rotateDeg(0.5f);
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            View3D view = multiView.getView(i);
+            view.position.set(player);
+            view.direction.set(playerDir).rotateDeg(90 * i);
+        }
+        multiView.castRays(caster, map);
+        multiView.drawFloorAndCeiling(true, map.getCellWidth(), map.getCellHeight());
+        multiView.projectSprites(sprites, true, map.getCellWidth(), 2000, map.getCellWidth(), map.getCellHeight());
+        multiView.drawSoftware(sprites);
+    }
+
+    // Frame number of the replay decides the input, so every cycle paints and erases the same cells.
+    // Returns the number of visibility sets cast again
+    static int replayFrame(int frame, InputFrame input, World world, int[] paintCells, VisibilitySet visibility,
+                            MinimapLayer minimap, RayCaster caster, MultiViewRenderer multiView,
+                            FrameProfiler profiler, int[] scopes, int[] viewScopes) {
+        GridMap map = world.getGridMap();
+        int step = frame % INPUT_CYCLE;
+        int paintCell = paintCells[step / (2 * PAINT_FRAMES)];
+        input.delta = 1 / 60f;
+        input.held = (step < INPUT_CYCLE / 2 ? InputFrame.MOVE_FORWARD : InputFrame.MOVE_BACKWARD)
+                | InputFrame.TURN_RIGHT;
+        if(step % (2 * PAINT_FRAMES) < PAINT_FRAMES) input.held |= InputFrame.PAINT;
+        input.mouseX = (int)((paintCell % map.getWidth() + 0.5f) * map.getCellWidth());
+        input.mouseY = (int)((paintCell / map.getWidth() + 0.5f) * map.getCellHeight());
+        if(step == INPUT_CYCLE - 1) {
+            // Published with the next update, like any other edit of the map
+            for(int cell: paintCells) {
+                map.set(cell % map.getWidth(), cell / map.getWidth(), 0);
+            }
+        }
+
+        profiler.begin(scopes[0]);
+        profiler.begin(scopes[1]);
+        world.update(input);
+        int refreshed = visibility.refreshStale(VISIBILITY_REFRESH_BUDGET_NANOS);
+        profiler.end(scopes[1]);
+
+        profiler.begin(scopes[2]);
+        minimap.update();
+        profiler.end(scopes[2]);
+
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            View3D view = multiView.getView(i);
+            view.position.set(world.getPlayer());
+            view.direction.set(world.getPlayerDir()).rotateDeg(90 * i);
+        }
+        profiler.begin(scopes[3]);
+        multiView.castRays(caster, map);
+        profiler.end(scopes[3]);
+        profiler.begin(scopes[4]);
+        multiView.drawFloorAndCeiling(true, map.getCellWidth(), map.getCellHeight());
+        profiler.end(scopes[4]);
+        profiler.begin(scopes[5]);
+        multiView.projectSprites(world.getSprites(), true, map.getCellWidth(), 2000,
+                map.getCellWidth(), map.getCellHeight());
+        profiler.end(scopes[5]);
+        profiler.begin(scopes[6]);
+        multiView.drawSoftware(world.getSprites());
+        profiler.end(scopes[6]);
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            View3D view = multiView.getView(i);
+            profiler.record(viewScopes[i], view.getFloorNanos() + view.getDrawNanos());
+        }
+        profiler.end(scopes[0]);
+        // The overlay starts a new interval every second
+        if(frame % 60 == 0) profiler.resetIntervals();
+        return refreshed;
+    }
+
+    // Empty cells spread over the map and away from the player, as cell indices
+    static int[] pickPaintCells(GridMap map, Vector2 player) {
+        int playerX = (int)(player.x / map.getCellWidth());
+        int playerY = (int)(player.y / map.getCellHeight());
+        int[] cells = new int[PAINT_CELLS];
+        int count = 0;
+        int stride = Math.max(1, map.getWidth() * map.getHeight() / (PAINT_CELLS * 4));
+        for(int cell = 0; cell < map.getWidth() * map.getHeight() && count < cells.length; cell += stride) {
+            int x = cell % map.getWidth();
+            int y = cell / map.getWidth();
+            if(map.get(x, y) != 0) continue;
+            if(Math.max(Math.abs(x - playerX), Math.abs(y - playerY)) < PAINT_MIN_DISTANCE) continue;
+            cells[count++] = cell;
+        }
+        if(count < cells.length) throw new IllegalStateException("Not enough empty cells to paint");
+        return cells;
+    }
+
+    static void applyScale(SoftwareRenderer renderer, int step) {
+        renderer.resize(WIDTH * step / ResolutionScaler.SCALE_STEPS, HEIGHT * step / ResolutionScaler.SCALE_STEPS);
+    }
+
+    // Sum over the given threads, so allocations inside the pool workers are counted too
+    static long allocatedBytes(com.sun.management.ThreadMXBean threads, long[] ids) {
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        long total = 0;
+        for(long bytes: allocated) {
+            if(bytes > 0) total += bytes;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,89 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.thestbar.raycasting.GridSetup;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.LevelData;
+import com.thestbar.raycasting.map.LevelFile;
+import com.thestbar.raycasting.map.LevelTextParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Cost of loading a level for growing map sizes, from the text format
+// through the old GridSetup entry point and the streaming parser, and from
+// the memory mapped binary format
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GridSetupBenchmark {
+    @Param({ "24", "256", "1024", "2048", "4096" })
+    public int mapSize;
+
+    private File levelFile;
+    private File binaryLevelFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        levelFile = File.createTempFile("level" + mapSize, ".txt");
+        writeLevel(levelFile, mapSize);
+        binaryLevelFile = File.createTempFile("level" + mapSize, LevelFile.EXTENSION);
+        LevelFile.write(LevelTextParser.parse(levelFile, 30, 30), binaryLevelFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        levelFile.delete();
+        binaryLevelFile.delete();
+    }
+
+    @Benchmark
+    public int[] parse() throws IOException {
+        return new GridSetup(levelFile.getPath(), mapSize, mapSize).getGrid();
+    }
+
+    @Benchmark
+    public LevelData parseText() throws IOException {
+        return LevelTextParser.parse(levelFile, 30, 30);
+    }
+
+    @Benchmark
+    public LevelData mapBinary() throws IOException {
+        return LevelFile.read(binaryLevelFile);
+    }
+
+    // Mapping plus the copy into the mutable grid that the game plays on
+    @Benchmark
+    public GridMap mapBinaryToGridMap() throws IOException {
+        return LevelFile.read(binaryLevelFile).toGridMap();
+    }
+
+    // Writes a closed level with random walls in the same format as assets/levelMaps
+    static void writeLevel(File file, int size) throws IOException {
+        Random random = new Random(size);
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            for(int y = 0; y < size; y++) {
+                for(int x = 0; x < size; x++) {
+                    boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+                    int value = border ? 1 : (random.nextInt(8) == 0 ? 1 + random.nextInt(8) : 0);
+                    writer.write(Integer.toString(value));
+                    if(x < size - 1 || y < size - 1) writer.write(',');
+                }
+                writer.newLine();
+            }
+        }
+    }
+}
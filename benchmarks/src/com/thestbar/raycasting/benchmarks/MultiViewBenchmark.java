@@ -0,0 +1,102 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibilitySet;
+import com.thestbar.raycasting.render.MultiViewRenderer;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.render.View3D;
+import com.thestbar.raycasting.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Cost of a frame of MultiViewRenderer on Level3 for one, two and four views.
+// Split views share the same number of columns between them, like the tiles
+// of GameScreen share the 3D half of the window, so with the same pixels in
+// every case the difference is what the extra views cost. Full views are each
+// as large as the single one, like the spectator views of ReplayRunner, and
+// cost about one frame per view: nearly all of a frame is drawing pixels that
+// only one camera sees. projectSprites only measures the sprite pass, where the
+// sprites in the visible cells are found once for all the views in a cell.
+// The views all stand at the spawn point, so that is once per frame
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MultiViewBenchmark {
+    private static final float FOV = 50;
+    private static final int TOTAL_COLUMNS = 1440;
+    private static final int ROWS = 720;
+    private static final int SPRITES = 2000;
+
+    @Param({ "1", "2", "4" })
+    public int views;
+
+    // 0 renders every view on the benchmark thread, a pool without threads does not hand any band off
+    @Param({ "1", "0" })
+    public int parallel;
+
+    @Param({ "split", "full" })
+    public String layout;
+
+    private GridMap map;
+    private Sprites sprites;
+    private float[] spawn;
+    private final RayCaster caster = new DdaRayCaster();
+    private WorkerPool pool;
+    private MultiViewRenderer multiView;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        map = BenchmarkAssets.loadLevel("Level3");
+        sprites = BenchmarkAssets.scatterSprites(map, SPRITES, 1);
+        spawn = BenchmarkAssets.findSpawn(map);
+        pool = parallel == 1 ? new WorkerPool() : new WorkerPool(0);
+        TexelCache texelCache = BenchmarkAssets.loadTexelCache();
+        multiView = new MultiViewRenderer(pool, texelCache, 64, 64, texelCache.getFlatTexels(4),
+                texelCache.getFlatTexels(7), 0.7f, FOV, 30);
+        multiView.setViewCount(views);
+        multiView.setVisibility(VisibilitySet.compute(map, VisibilitySet.DEFAULT_MAX_DISTANCE, pool));
+        for(int i = 0; i < views; i++) {
+            View3D view = multiView.getView(i);
+            view.setResolution(layout.equals("full") ? TOTAL_COLUMNS : TOTAL_COLUMNS / views, ROWS);
+            // All at the spawn point, looking in evenly spaced directions like ReplayRunner --views
+            view.position.set(spawn[0], spawn[1]);
+            view.direction.set(1, 0).rotateDeg(30 + 360f * i / views);
+        }
+        // The depth buffer of projectSprites()
+        multiView.castRays(caster, map);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public MultiViewRenderer renderViews() {
+        multiView.castRays(caster, map);
+        multiView.drawFloorAndCeiling(true, map.getCellWidth(), map.getCellHeight());
+        multiView.projectSprites(sprites, true, map.getCellWidth(), 2000, map.getCellWidth(), map.getCellHeight());
+        multiView.drawSoftware(sprites);
+        return multiView;
+    }
+
+    @Benchmark
+    public MultiViewRenderer projectSprites() {
+        multiView.projectSprites(sprites, true, map.getCellWidth(), 2000, map.getCellWidth(), map.getCellHeight());
+        return multiView;
+    }
+}
@@ -0,0 +1,98 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.DistanceField;
+import com.thestbar.raycasting.map.GridMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Plain DDA against DDA with empty space skipping on large open levels,
+// where the rays cross hundreds of empty cells before they hit a wall,
+// and both with the rays stopped at the end of the fog (0 for no limit)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpenWorldBenchmark {
+    private static final float FOV = 50;
+    private static final int NUM_OF_RAYS = 720;
+
+    @Param({ "512", "2048" })
+    public int mapSize;
+
+    @Param({ "DDA", "Skipping" })
+    public String caster;
+
+    @Param({ "0", "900" })
+    public float maxDistance;
+
+    private GridMap map;
+    private float playerX;
+    private float playerY;
+    private DistanceField field;
+    private RayCaster rayCaster;
+    private final Rays rays = new Rays();
+    private final RayHits hits = new RayHits();
+    private final Random random = new Random(7);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        map = BenchmarkAssets.openWorld(mapSize, mapSize);
+        float[] spawn = BenchmarkAssets.findSpawn(map);
+        playerX = spawn[0];
+        playerY = spawn[1];
+        field = new DistanceField(map);
+        map.publishChanges();
+        map.addChangeListener(field);
+        rayCaster = caster.equals("DDA") ? new DdaRayCaster() : new DdaRayCaster(field);
+        CameraPlane camera = new CameraPlane();
+        camera.set(new Vector2(1, 0).rotateDeg(30), FOV, NUM_OF_RAYS);
+        rays.fan(camera);
+        if(maxDistance > 0) rays.maxDistance = maxDistance;
+        hits.ensureCapacity(NUM_OF_RAYS);
+    }
+
+    @Benchmark
+    public RayHits cast() {
+        rayCaster.cast(map, playerX, playerY, rays, 0, rays.count, hits);
+        return hits;
+    }
+
+    // Cost of keeping the field up to date when a cell is painted
+    @Benchmark
+    public DistanceField paintCell() {
+        int x = map.getWidth() / 3;
+        int y = map.getHeight() / 3;
+        map.set(x, y, map.get(x, y) == 0 ? 1 : 0);
+        map.publishChanges();
+        return field;
+    }
+
+    // A frame with a thousand edits of a drag across the map, published as one rectangle per chunk
+    @Benchmark
+    public DistanceField paintStroke() {
+        int x = 1 + random.nextInt(map.getWidth() - 2);
+        int y = 1 + random.nextInt(map.getHeight() - 2);
+        for(int i = 0; i < 1000; i++) {
+            x = Math.max(1, Math.min(map.getWidth() - 2, x + random.nextInt(3) - 1));
+            y = Math.max(1, Math.min(map.getHeight() - 2, y + random.nextInt(3) - 1));
+            map.set(x, y, map.get(x, y) == 0 ? 1 : 0);
+        }
+        map.publishChanges();
+        return field;
+    }
+}
@@ -0,0 +1,84 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.thestbar.raycasting.util.ParallelBands;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Checks that ParallelBands runs every band exactly once, and that a band
+// that throws, on the calling thread or on a worker, fails only its own
+// frame: the exception reaches the caller of run() and the next frame runs
+// all of its bands again. Covers pools without threads, with fewer threads
+// than bands and with more
+public class ParallelBandsCheck {
+    private static final int FRAMES = 2000;
+    private static final int BANDS = 16;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        for(int threads: new int[] { 0, 1, 3, 24 }) {
+            WorkerPool pool = new WorkerPool(threads);
+            try {
+                check(threads, pool);
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+
+        if(failures > 0) {
+            System.err.println(failures + " failures");
+            System.exit(1);
+        }
+    }
+
+    static void check(int threads, WorkerPool pool) {
+        final AtomicIntegerArray runs = new AtomicIntegerArray(BANDS);
+        // Band that throws in the current frame, -1 for none
+        final int[] throwingBand = { -1 };
+        ParallelBands bands = new ParallelBands(pool) {
+            @Override
+            protected void runBand(int band) {
+                runs.incrementAndGet(band);
+                if(band == throwingBand[0]) throw new IllegalStateException("band " + band);
+            }
+        };
+        int before = failures;
+
+        for(int frame = 0; frame < FRAMES; frame++) {
+            for(int i = 0; i < BANDS; i++) {
+                runs.set(i, 0);
+            }
+            // Every third frame one band throws, the first one often runs on the calling thread
+            throwingBand[0] = frame % 3 == 0 ? frame / 3 % BANDS : -1;
+            boolean threw = false;
+            try {
+                bands.run(BANDS);
+            } catch (IllegalStateException e) {
+                threw = e.getMessage().equals("band " + throwingBand[0]);
+                if(!threw) {
+                    report(threads + " threads, frame " + frame + ": unexpected " + e);
+                    continue;
+                }
+            }
+            if(threw != (throwingBand[0] >= 0)) {
+                report(threads + " threads, frame " + frame + ": " + (threw ? "threw" : "did not throw"));
+            }
+            // After a failure the bands that were not claimed yet are dropped, never run twice
+            for(int i = 0; i < BANDS; i++) {
+                int count = runs.get(i);
+                if(count > 1 || (count == 0 && !threw)) {
+                    report(threads + " threads, frame " + frame + ": band " + i + " ran " + count + " times");
+                }
+            }
+        }
+
+        System.out.println(threads + " threads: " + (failures == before ? "ok" : (failures - before) + " failures"));
+    }
+
+    static void report(String message) {
+        if(failures < 10) System.err.println(message);
+        failures++;
+    }
+}
@@ -0,0 +1,94 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCastScheduler;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.render.FloorCaster;
+import com.thestbar.raycasting.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Scaling of the two passes that ParallelBands splits over the worker pool,
+// the rays and the floor of a 2560x1440 window on Level3, with a growing
+// number of pool threads. The thread that runs the bands works on them too,
+// so 0, 1, 3 and 7 threads are 1, 2, 4 and 8 cores, and the time at 0 divided
+// by the time at N is the speedup, the wait for the helpers' last bands
+// included. Counts above the cores of the machine only measure the contention
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParallelScalingBenchmark {
+    private static final float FOV = 50;
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 1440;
+
+    @Param({ "0", "1", "3", "7" })
+    public int threads;
+
+    private GridMap map;
+    private float playerX;
+    private float playerY;
+    private final RayCaster caster = new DdaRayCaster();
+    private final CameraPlane camera = new CameraPlane();
+    private final Vector2 player = new Vector2();
+    private final Rays rays = new Rays();
+    private final RayHits hits = new RayHits();
+    private int[] pixels;
+    private int[] floorTexels;
+    private int[] ceilingTexels;
+    private WorkerPool pool;
+    private RayCastScheduler scheduler;
+    private FloorCaster floorCaster;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        map = BenchmarkAssets.loadLevel("Level3");
+        float[] spawn = BenchmarkAssets.findSpawn(map);
+        playerX = spawn[0];
+        playerY = spawn[1];
+        player.set(playerX, playerY);
+        camera.set(new Vector2(1, 0).rotateDeg(30), FOV, WIDTH);
+        rays.fan(camera);
+        hits.ensureCapacity(rays.count);
+        pixels = new int[WIDTH * HEIGHT];
+        floorTexels = BenchmarkAssets.loadTexels("greystone.png");
+        ceilingTexels = BenchmarkAssets.loadTexels("wood.png");
+        pool = new WorkerPool(threads);
+        scheduler = new RayCastScheduler(pool);
+        floorCaster = new FloorCaster(pool, 64, 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public RayHits castRays() {
+        scheduler.cast(caster, map, playerX, playerY, rays, hits);
+        return hits;
+    }
+
+    @Benchmark
+    public int[] castFloorAndCeiling() {
+        floorCaster.cast(pixels, WIDTH, HEIGHT, player, camera,
+                BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE, floorTexels, ceilingTexels);
+        return pixels;
+    }
+}
@@ -0,0 +1,84 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCastScheduler;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.caster.SlowRayCaster;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Cost of casting all the rays of one frame (what castRayDDAAlgo and
+// castRaySlowAlgo did per frame) on every bundled level
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RayCasterBenchmark {
+    private static final float FOV = 50;
+
+    @Param({ "Level1", "Level2", "Level3" })
+    public String level;
+
+    @Param({ "180", "360", "720", "1440" })
+    public int numOfRays;
+
+    @Param({ "DDA", "Slow" })
+    public String caster;
+
+    private GridMap map;
+    private float playerX;
+    private float playerY;
+    private RayCaster rayCaster;
+    private final Rays rays = new Rays();
+    private final RayHits hits = new RayHits();
+    private WorkerPool pool;
+    private RayCastScheduler scheduler;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        map = BenchmarkAssets.loadLevel(level);
+        float[] spawn = BenchmarkAssets.findSpawn(map);
+        playerX = spawn[0];
+        playerY = spawn[1];
+        rayCaster = caster.equals("DDA") ? new DdaRayCaster() : new SlowRayCaster(1f);
+        CameraPlane camera = new CameraPlane();
+        camera.set(new Vector2(1, 0).rotateDeg(30), FOV, numOfRays);
+        rays.fan(camera);
+        hits.ensureCapacity(numOfRays);
+        pool = new WorkerPool();
+        scheduler = new RayCastScheduler(pool);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public RayHits castSingleThread() {
+        rayCaster.cast(map, playerX, playerY, rays, 0, rays.count, hits);
+        return hits;
+    }
+
+    @Benchmark
+    public RayHits castParallel() {
+        scheduler.cast(rayCaster, map, playerX, playerY, rays, hits);
+        return hits;
+    }
+}
@@ -0,0 +1,302 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.thestbar.raycasting.World;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.caster.SlowRayCaster;
+import com.thestbar.raycasting.input.InputFrame;
+import com.thestbar.raycasting.input.InputRecorder;
+import com.thestbar.raycasting.input.InputReplay;
+import com.thestbar.raycasting.input.InputSource;
+import com.thestbar.raycasting.map.VisibilitySet;
+import com.thestbar.raycasting.profile.FrameProfiler;
+import com.thestbar.raycasting.profile.LatencyHistogram;
+import com.thestbar.raycasting.render.FogTable;
+import com.thestbar.raycasting.render.MultiViewRenderer;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.render.View3D;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+// Plays an input trace (see InputTrace) through the level and the software
+// renderer of GameScreen without a window, so runs of different commits see
+// exactly the same frames. Prints the frame time distribution and the
+// throughput, and can write every timing scope as CSV for nightly tracking.
+//   --trace <file>       trace to play, recorded with the desktop launcher's --record
+//   --generate <frames>  first writes a scripted trace of that many frames to --trace
+//   --level <file>       level to play on instead of the one stored in the trace
+//   --caster <name>      DDA (default), Slow or Skipping
+//   --size <w>x<h>       resolution of the 3D view, 720x720 by default
+//   --views <count>      cameras rendered per frame, each at the full size, 1 by default.
+//                        They stand at the player and look in evenly spaced directions
+//   --visibility <on|off> cull the sprites with the level's baked visibility sets, on by default
+//   --fog <on|off>       shade with the distance fog of GameScreen and stop the rays where it ends, off by default
+//   --warmup <passes>    passes over the trace before the measured one, 1 by default
+//   --csv <file>         per scope timings of the measured pass
+public class ReplayRunner {
+    private static final float FOV = 50;
+    private static final float WALL_HEIGHT_SCALE = 30;
+    private static final float SPRITE_MAX_DISTANCE = 2000;
+    private static final int TEXTURE_SIZE = 64;
+    private static final int FLOOR_TEX_VALUE = 4;
+    private static final int CEIL_TEX_VALUE = 7;
+    private static final float FLAT_TINT = 0.7f;
+    // Same budget as GameScreen for casting the sets that painting made stale
+    private static final long VISIBILITY_REFRESH_BUDGET_NANOS = 1000000;
+    // Same fog as GameScreen
+    private static final float FOG_START = 150;
+    private static final float FOG_END = 900;
+    private static final int FOG_COLOR = 0x0c0c11ff;
+
+    private final FrameProfiler profiler = new FrameProfiler();
+    private final int profileFrame = profiler.register("frame");
+    private final int profileUpdate = profiler.register("update");
+    private final int profileCastRays = profiler.register("castRays");
+    private final int profileFloor = profiler.register("drawFloorAndCeiling3D");
+    private final int profileSprites = profiler.register("drawSprites3D");
+    private final int profileScreen = profiler.register("drawScreen3D");
+
+    private final WorkerPool pool = new WorkerPool();
+    private final MultiViewRenderer multiView;
+    private final InputFrame frame = new InputFrame();
+    // Per view totals of the measured pass
+    private final long[] viewNanos;
+    private final long[] viewWallColumns;
+    private final long[] viewSprites;
+    private final boolean useVisibility;
+    // Whether the last pass had visibility sets to cull with
+    private boolean visibilityUsed;
+
+    ReplayRunner(int width, int height, int viewCount, boolean useVisibility, boolean useFog) throws IOException {
+        this.useVisibility = useVisibility;
+        TexelCache texelCache = BenchmarkAssets.loadTexelCache();
+        multiView = new MultiViewRenderer(pool, texelCache, TEXTURE_SIZE, TEXTURE_SIZE,
+                texelCache.getFlatTexels(FLOOR_TEX_VALUE), texelCache.getFlatTexels(CEIL_TEX_VALUE), FLAT_TINT,
+                FOV, WALL_HEIGHT_SCALE);
+        multiView.setViewCount(viewCount);
+        if(useFog) multiView.setFog(new FogTable(FOG_START, FOG_END, FOG_COLOR, SoftwareRenderer.SIDE_SHADE));
+        for(int i = 0; i < viewCount; i++) {
+            multiView.getView(i).setScreenArea(0, 0, width, height);
+            multiView.getView(i).setResolution(width, height);
+        }
+        viewNanos = new long[viewCount];
+        viewWallColumns = new long[viewCount];
+        viewSprites = new long[viewCount];
+    }
+
+    public static void main(String[] args) throws Exception {
+        File traceFile = null;
+        File levelFile = null;
+        String casterName = "DDA";
+        int width = 720;
+        int height = 720;
+        int warmupPasses = 1;
+        int viewCount = 1;
+        int generateFrames = 0;
+        boolean useVisibility = true;
+        boolean useFog = false;
+        File csvFile = null;
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if(args[i].equals("--trace")) traceFile = new File(value);
+            else if(args[i].equals("--generate")) generateFrames = Integer.parseInt(value);
+            else if(args[i].equals("--level")) levelFile = new File(value);
+            else if(args[i].equals("--caster")) casterName = value;
+            else if(args[i].equals("--warmup")) warmupPasses = Integer.parseInt(value);
+            else if(args[i].equals("--views")) viewCount = Integer.parseInt(value);
+            else if(args[i].equals("--csv")) csvFile = new File(value);
+            else if(args[i].equals("--visibility")) useVisibility = value.equals("on");
+            else if(args[i].equals("--fog")) useFog = value.equals("on");
+            else if(args[i].equals("--size")) {
+                String[] size = value.split("x");
+                width = Integer.parseInt(size[0]);
+                height = Integer.parseInt(size[1]);
+            }
+            else throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+        if(traceFile == null) {
+            throw new IllegalArgumentException("Missing --trace <file>");
+        }
+
+        if(generateFrames > 0) {
+            File level = levelFile != null ? levelFile : new File(BenchmarkAssets.assetsDir(), "levelMaps/Level3_Map.lvl");
+            writeScriptedTrace(traceFile, level, generateFrames);
+            System.out.println("Wrote " + generateFrames + " frames to " + traceFile);
+        }
+
+        InputReplay replay = new InputReplay(traceFile);
+        if(levelFile == null) {
+            levelFile = resolveLevel(replay.getLevelPath());
+        }
+
+        ReplayRunner runner = new ReplayRunner(width, height, viewCount, useVisibility, useFog);
+        for(int pass = 0; pass < warmupPasses; pass++) {
+            runner.play(replay, levelFile, casterName);
+        }
+        runner.profiler.setEnabled(true);
+        runner.clearViewStats();
+        long start = System.nanoTime();
+        World world = runner.play(replay, levelFile, casterName);
+        long elapsed = System.nanoTime() - start;
+        runner.profiler.setEnabled(false);
+        runner.pool.shutdown();
+
+        LatencyHistogram frames = runner.profiler.getTotal(runner.profileFrame);
+        System.out.println("Trace: " + traceFile + ", " + replay.getFrameCount() + " frames");
+        System.out.println("Level: " + levelFile + ", caster: " + casterName + ", view: " + width + "x" + height
+                + (viewCount > 1 ? " x " + viewCount + " views" : "")
+                + ", visibility sets: " + (runner.visibilityUsed ? "on" : "off") + ", fog: " + (useFog ? "on" : "off"));
+        System.out.printf("Throughput: %.1f frames/s (%.3f s total)%n",
+                replay.getFrameCount() / (elapsed / 1e9), elapsed / 1e9);
+        System.out.printf("Frame time ms: mean %.3f, p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+                frames.getMean() / 1e6, frames.percentile(0.5) / 1e6, frames.percentile(0.9) / 1e6,
+                frames.percentile(0.99) / 1e6, frames.percentile(0.999) / 1e6, frames.getMax() / 1e6);
+        for(int scope = 0; scope < runner.profiler.getScopeCount(); scope++) {
+            LatencyHistogram histogram = runner.profiler.getTotal(scope);
+            System.out.printf("  %-22s mean %.3f ms, p99 %.3f ms%n", runner.profiler.getName(scope),
+                    histogram.getMean() / 1e6, histogram.percentile(0.99) / 1e6);
+        }
+        if(viewCount > 1) {
+            for(int i = 0; i < viewCount; i++) {
+                System.out.printf("  view %d: floor, sprites and walls mean %.3f ms, %.1f wall columns, %.1f sprites%n",
+                        i, runner.viewNanos[i] / 1e6 / replay.getFrameCount(),
+                        (double)runner.viewWallColumns[i] / replay.getFrameCount(),
+                        (double)runner.viewSprites[i] / replay.getFrameCount());
+            }
+        }
+        // The same trace must always end in the same state, a different one means the replay is not deterministic
+        System.out.println("Final player: " + world.getPlayer() + " facing " + world.getPlayerDir());
+
+        if(csvFile != null) {
+            try(Writer writer = new FileWriter(csvFile)) {
+                runner.profiler.writeCsv(writer);
+            }
+            System.out.println("Wrote " + csvFile);
+        }
+    }
+
+    // One pass over the whole trace on a freshly loaded level, returns the final state
+    World play(InputReplay replay, File levelFile, String casterName) throws IOException {
+        World world = new World(levelFile.getPath());
+        world.setPlayer(replay.getStartX(), replay.getStartY(), replay.getStartDirX(), replay.getStartDirY());
+        RayCaster caster = createCaster(casterName, world);
+        VisibilitySet visibility = useVisibility ? world.getVisibility() : null;
+        multiView.setVisibility(visibility);
+        visibilityUsed = visibility != null;
+        replay.rewind();
+
+        while(replay.poll(0, frame)) {
+            profiler.begin(profileFrame);
+
+            profiler.begin(profileUpdate);
+            world.update(frame);
+            if(visibility != null) visibility.refreshStale(VISIBILITY_REFRESH_BUDGET_NANOS);
+            profiler.end(profileUpdate);
+
+            // The views stand at the player, view 0 looks where the player does
+            int viewCount = multiView.getViewCount();
+            for(int i = 0; i < viewCount; i++) {
+                View3D view = multiView.getView(i);
+                view.position.set(world.getPlayer());
+                view.direction.set(world.getPlayerDir()).rotateDeg(360f * i / viewCount);
+            }
+
+            profiler.begin(profileCastRays);
+            multiView.castRays(caster, world.getGridMap());
+            profiler.end(profileCastRays);
+
+            profiler.begin(profileFloor);
+            multiView.drawFloorAndCeiling(true, world.getCellSize().x, world.getCellSize().y);
+            profiler.end(profileFloor);
+
+            profiler.begin(profileSprites);
+            multiView.projectSprites(world.getSprites(), true, world.getCellSize().x, SPRITE_MAX_DISTANCE,
+                    world.getCellSize().x, world.getCellSize().y);
+            profiler.end(profileSprites);
+
+            profiler.begin(profileScreen);
+            multiView.drawSoftware(world.getSprites());
+            profiler.end(profileScreen);
+
+            for(int i = 0; i < viewCount; i++) {
+                View3D view = multiView.getView(i);
+                viewNanos[i] += view.getFloorNanos() + view.getDrawNanos();
+                viewWallColumns[i] += view.getWallColumns();
+                viewSprites[i] += view.getVisibleSprites();
+            }
+
+            profiler.end(profileFrame);
+        }
+        return world;
+    }
+
+    void clearViewStats() {
+        for(int i = 0; i < viewNanos.length; i++) {
+            viewNanos[i] = 0;
+            viewWallColumns[i] = 0;
+            viewSprites[i] = 0;
+        }
+    }
+
+    static RayCaster createCaster(String name, World world) {
+        if(name.equals("DDA")) return new DdaRayCaster();
+        if(name.equals("Slow")) return new SlowRayCaster(1f);
+        if(name.equals("Skipping")) return new DdaRayCaster(world.getDistanceField());
+        throw new IllegalArgumentException("Unknown caster " + name + ", expected DDA, Slow or Skipping");
+    }
+
+    // Traces store the level path the game was started with, which is relative to
+    // its working directory, so a path that does not exist is looked up in the assets
+    static File resolveLevel(String path) {
+        File file = new File(path);
+        if(file.exists()) return file;
+        return new File(BenchmarkAssets.assetsDir(), "levelMaps/" + file.getName());
+    }
+
+    // Deterministic walk through the level at 60 FPS: runs of moving and
+    // turning, now and then strafing, and painting a random cell of the map
+    static void writeScriptedTrace(File traceFile, File levelFile, int frameCount) throws IOException {
+        World world = new World(levelFile.getPath());
+        final Random random = new Random(7);
+        final int mapWidth = (int)(world.getGridMap().getWidth() * world.getCellSize().x);
+        final int mapHeight = (int)(world.getGridMap().getHeight() * world.getCellSize().y);
+        InputSource script = new InputSource() {
+            private int framesLeft = 0;
+            private int held;
+
+            @Override
+            public boolean poll(float delta, InputFrame frame) {
+                if(framesLeft == 0) {
+                    framesLeft = 30 + random.nextInt(90);
+                    held = random.nextInt(4) == 0 ? InputFrame.MOVE_BACKWARD : InputFrame.MOVE_FORWARD;
+                    int turn = random.nextInt(3);
+                    if(turn == 1) held |= InputFrame.TURN_LEFT;
+                    if(turn == 2) held |= InputFrame.TURN_RIGHT;
+                    if(random.nextInt(5) == 0) held |= random.nextBoolean() ? InputFrame.STRAFE_LEFT : InputFrame.STRAFE_RIGHT;
+                }
+                framesLeft--;
+                frame.delta = 1 / 60f;
+                frame.held = held;
+                frame.pressed = 0;
+                frame.mouseX = random.nextInt(mapWidth);
+                frame.mouseY = random.nextInt(mapHeight);
+                if(random.nextInt(120) == 0) frame.held |= InputFrame.PAINT;
+                return true;
+            }
+        };
+
+        try(InputRecorder recorder = new InputRecorder(script, traceFile, levelFile.getPath(),
+                world.getPlayer().x, world.getPlayer().y, world.getPlayerDir().x, world.getPlayerDir().y)) {
+            InputFrame frame = new InputFrame();
+            for(int i = 0; i < frameCount; i++) {
+                recorder.poll(0, frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.render.FloorCaster;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.render.SpriteRenderer;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Culling, sorting and drawing of the sprites of one frame on an open level,
+// where most sprites are in front of the camera and only some are behind walls
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpriteBenchmark {
+    private static final float FOV = 50;
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 720;
+
+    @Param({ "1000", "10000", "100000" })
+    public int spriteCount;
+
+    private GridMap map;
+    private Sprites sprites;
+    private final SpriteRenderer spriteRenderer = new SpriteRenderer();
+    private final CameraPlane camera = new CameraPlane();
+    private final Rays rays = new Rays();
+    private final RayHits hits = new RayHits();
+    private float playerX;
+    private float playerY;
+    private WorkerPool pool;
+    private SoftwareRenderer renderer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        map = BenchmarkAssets.openWorld(256, 256);
+        sprites = BenchmarkAssets.scatterSprites(map, spriteCount, 1);
+        float[] spawn = BenchmarkAssets.findSpawn(map);
+        playerX = spawn[0];
+        playerY = spawn[1];
+        camera.set(new Vector2(1, 0).rotateDeg(30), FOV, WIDTH);
+        rays.fan(camera);
+        hits.ensureCapacity(rays.count);
+        new DdaRayCaster().cast(map, playerX, playerY, rays, 0, rays.count, hits);
+
+        pool = new WorkerPool(1);
+        renderer = new SoftwareRenderer(WIDTH, HEIGHT, 64, 64, new FloorCaster(pool, 64, 64));
+        TexelCache texelCache = BenchmarkAssets.loadTexelCache();
+        renderer.setWallTextures(texelCache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int project() {
+        spriteRenderer.setDepth(hits, rays.count);
+        spriteRenderer.project(sprites, playerX, playerY, camera, HEIGHT, map.getCellWidth(), 30, 2000);
+        return spriteRenderer.getVisibleCount();
+    }
+
+    @Benchmark
+    public int projectAndDraw() {
+        spriteRenderer.setDepth(hits, rays.count);
+        spriteRenderer.project(sprites, playerX, playerY, camera, HEIGHT, map.getCellWidth(), 30, 2000);
+        spriteRenderer.draw(sprites, renderer, 64);
+        return spriteRenderer.getVisibleCount();
+    }
+}
@@ -0,0 +1,285 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibilitySet;
+import com.thestbar.raycasting.map.VisibleCells;
+import com.thestbar.raycasting.render.SpriteRenderer;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.io.File;
+import java.util.Random;
+
+// Check of the potentially visible sets (see VisibilitySet) on the bundled
+// levels and on a generated level of rooms joined by doorways. Fails when
+// a wall that a dense fan of rays hits is missing from the set of the cell
+// the rays start in, when culling with the sets changes which sprites are
+// drawn, when a baked file does not read back the same, or when the sets
+// after painting and refreshStale() differ from sets computed from scratch,
+// also after the same cells were painted and erased many times in a row.
+// Also prints the bake time and size, and the sprite projection time with
+// and without the sets
+public class VisibilityCheck {
+    private static final int RAYS = 1440;
+    private static final int CAMERAS = 300;
+    private static final float FOV = 50;
+    private static final float WALL_HEIGHT_SCALE = 30;
+    // Same as GameScreen, about 67 cells of 30 units, inside the sets' reach
+    private static final float SPRITE_MAX_DISTANCE = 2000;
+    private static final int PAINTED_CELLS = 200;
+    // Cells painted and erased over and over without a refresh in between, like a fast drag
+    private static final int TOGGLED_CELLS = 16;
+    private static final int ROOM_SIZE = 12;
+    // The projection is timed over the same cameras after this many untimed rounds
+    private static final int TIMING_WARMUP_ROUNDS = 5;
+    private static final int TIMING_ROUNDS = 5;
+
+    private static int mismatches = 0;
+
+    public static void main(String[] args) throws Exception {
+        WorkerPool pool = new WorkerPool();
+        Random random = new Random(42);
+        try {
+            for(String level: new String[] { "Level1", "Level2", "Level3" }) {
+                check(level, BenchmarkAssets.loadLevel(level), pool, random);
+            }
+            check("Rooms96", rooms(96, 3), pool, random);
+        } finally {
+            pool.shutdown();
+        }
+
+        if(mismatches > 0) {
+            System.err.println(mismatches + " mismatches");
+            System.exit(1);
+        }
+    }
+
+    static void check(String name, GridMap map, WorkerPool pool, Random random) throws Exception {
+        int before = mismatches;
+        long start = System.nanoTime();
+        VisibilitySet visibility = VisibilitySet.compute(map, VisibilitySet.DEFAULT_MAX_DISTANCE, pool);
+        long bakeNanos = System.nanoTime() - start;
+        long bitsetBytes = (long)visibility.getSetCount() * ((map.getWidth() * map.getHeight() + 7) / 8);
+        System.out.printf("%s: %d sets in %.1f ms, %d bytes (%d as bitsets)%n", name, visibility.getSetCount(),
+                bakeNanos / 1e6, visibility.getEncodedBytes(), bitsetBytes);
+
+        File file = File.createTempFile("visibility", VisibilitySet.EXTENSION);
+        try {
+            visibility.write(file);
+            if(!VisibilitySet.isUpToDate(file, map, VisibilitySet.checksum(map))) {
+                report(name + " written file is not up to date");
+            }
+            compareSets(name + " read back", VisibilitySet.read(file, map), visibility, map);
+        } finally {
+            file.delete();
+        }
+
+        Sprites sprites = BenchmarkAssets.scatterSprites(map, map.getWidth() * map.getHeight() / 2, 7);
+        checkCameras(name, map, visibility, sprites, random);
+        timeProjection(name, map, visibility, sprites, new Random(random.nextLong()));
+
+        // Painting makes sets stale, casting them again must give what a fresh bake gives
+        map.addChangeListener(visibility);
+        for(int i = 0; i < PAINTED_CELLS; i++) {
+            int x = 1 + random.nextInt(map.getWidth() - 2);
+            int y = 1 + random.nextInt(map.getHeight() - 2);
+            map.set(x, y, random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(8));
+        }
+        map.publishChanges();
+        int stale = visibility.getStaleCount();
+        // Stale sets have to be conservative too
+        checkCameras(name + " stale", map, visibility, sprites, random);
+        start = System.nanoTime();
+        int refreshed = visibility.refreshStale(Long.MAX_VALUE);
+        long refreshNanos = System.nanoTime() - start;
+        System.out.printf("  painted %d cells: %d stale sets, %d cast again in %.1f ms%n", PAINTED_CELLS, stale,
+                refreshed, refreshNanos / 1e6);
+        compareSets(name + " refreshed", visibility, VisibilitySet.compute(map, visibility.getMaxDistance(), pool), map);
+        checkCameras(name + " refreshed", map, visibility, sprites, random);
+
+        // Cells that turn into walls and back queue up again each time, more often than the
+        // map has cells, every one of them must still be cast again in the end
+        map.addChangeListener(visibility);
+        int[] toggled = new int[TOGGLED_CELLS];
+        for(int i = 0; i < toggled.length; i++) {
+            int x;
+            int y;
+            do {
+                x = 1 + random.nextInt(map.getWidth() - 2);
+                y = 1 + random.nextInt(map.getHeight() - 2);
+            } while(map.get(x, y) != 0);
+            toggled[i] = y * map.getWidth() + x;
+        }
+        int rounds = map.getWidth() * map.getHeight() / TOGGLED_CELLS + 2;
+        for(int round = 0; round < rounds; round++) {
+            for(int value = 1; value >= 0; value--) {
+                for(int cell: toggled) {
+                    map.set(cell % map.getWidth(), cell / map.getWidth(), value);
+                }
+                map.publishChanges();
+            }
+        }
+        visibility.refreshStale(Long.MAX_VALUE);
+        map.removeChangeListener(visibility);
+        compareSets(name + " toggled", visibility, VisibilitySet.compute(map, visibility.getMaxDistance(), pool), map);
+
+        System.out.println(name + ": " + (mismatches == before ? "ok" : (mismatches - before) + " mismatches"));
+    }
+
+    // Dense fans from random cameras: every hit wall within reach is in the set, and the
+    // sprites drawn with and without culling are the same ones
+    static void checkCameras(String name, GridMap map, VisibilitySet visibility, Sprites sprites, Random random) {
+        DdaRayCaster caster = new DdaRayCaster();
+        CameraPlane camera = new CameraPlane();
+        Rays rays = new Rays();
+        RayHits hits = new RayHits();
+        VisibleCells visible = new VisibleCells();
+        SpriteRenderer culled = new SpriteRenderer();
+        SpriteRenderer unculled = new SpriteRenderer();
+
+        for(int i = 0; i < CAMERAS; i++) {
+            int cellX;
+            int cellY;
+            do {
+                cellX = random.nextInt(map.getWidth());
+                cellY = random.nextInt(map.getHeight());
+            } while(map.get(cellX, cellY) != 0);
+            float x = (cellX + random.nextFloat()) * map.getCellWidth();
+            float y = (cellY + random.nextFloat()) * map.getCellHeight();
+            camera.set(new Vector2(1, 0).rotateDeg(random.nextFloat() * 360), FOV, RAYS);
+            rays.fan(camera);
+            hits.ensureCapacity(rays.count);
+            caster.cast(map, x, y, rays, 0, rays.count, hits);
+
+            visibility.select(cellX, cellY, visible);
+            for(int ray = 0; ray < rays.count; ray++) {
+                if(hits.cellValue[ray] <= 0) continue;
+                int hitX = hits.cellX[ray];
+                int hitY = hits.cellY[ray];
+                if(Math.max(Math.abs(hitX - cellX), Math.abs(hitY - cellY)) > visibility.getMaxDistance()) continue;
+                if(!visible.contains(hitX, hitY)) {
+                    report(name + ": wall " + hitX + "," + hitY + " hit from " + cellX + "," + cellY
+                            + " is not in its set");
+                }
+            }
+
+            culled.setDepth(hits, rays.count);
+            unculled.setDepth(hits, rays.count);
+            culled.project(sprites, x, y, camera, RAYS, map.getCellWidth(), WALL_HEIGHT_SCALE, SPRITE_MAX_DISTANCE,
+                    visible);
+            unculled.project(sprites, x, y, camera, RAYS, map.getCellWidth(), WALL_HEIGHT_SCALE, SPRITE_MAX_DISTANCE);
+            if(culled.getVisibleCount() != unculled.getVisibleCount()) {
+                report(name + ": " + culled.getVisibleCount() + " sprites drawn with the sets from " + cellX + ","
+                        + cellY + ", " + unculled.getVisibleCount() + " without");
+            }
+        }
+    }
+
+    // Mean time of SpriteRenderer.project() per camera with and without the sets,
+    // and how many sprites get past the sets to the per column work
+    static void timeProjection(String name, GridMap map, VisibilitySet visibility, Sprites sprites, Random random) {
+        DdaRayCaster caster = new DdaRayCaster();
+        CameraPlane[] cameras = new CameraPlane[CAMERAS];
+        RayHits[] cameraHits = new RayHits[CAMERAS];
+        float[] cameraX = new float[CAMERAS];
+        float[] cameraY = new float[CAMERAS];
+        // Decoded up front, the game only decodes when the camera enters another cell
+        VisibleCells[] visible = new VisibleCells[CAMERAS];
+        Rays rays = new Rays();
+        for(int i = 0; i < CAMERAS; i++) {
+            int cellX;
+            int cellY;
+            do {
+                cellX = random.nextInt(map.getWidth());
+                cellY = random.nextInt(map.getHeight());
+            } while(map.get(cellX, cellY) != 0);
+            cameraX[i] = (cellX + random.nextFloat()) * map.getCellWidth();
+            cameraY[i] = (cellY + random.nextFloat()) * map.getCellHeight();
+            cameras[i] = new CameraPlane();
+            cameras[i].set(new Vector2(1, 0).rotateDeg(random.nextFloat() * 360), FOV, RAYS);
+            rays.fan(cameras[i]);
+            cameraHits[i] = new RayHits();
+            cameraHits[i].ensureCapacity(rays.count);
+            caster.cast(map, cameraX[i], cameraY[i], rays, 0, rays.count, cameraHits[i]);
+            visible[i] = new VisibleCells();
+            visibility.select(cellX, cellY, visible[i]);
+        }
+
+        SpriteRenderer renderer = new SpriteRenderer();
+        long[] nanos = new long[2];
+        long passed = 0;
+        long drawn = 0;
+        for(int round = 0; round < TIMING_WARMUP_ROUNDS + TIMING_ROUNDS; round++) {
+            boolean timed = round >= TIMING_WARMUP_ROUNDS;
+            for(int culling = 0; culling < 2; culling++) {
+                long start = System.nanoTime();
+                for(int i = 0; i < CAMERAS; i++) {
+                    renderer.setDepth(cameraHits[i], RAYS);
+                    renderer.project(sprites, cameraX[i], cameraY[i], cameras[i], RAYS, map.getCellWidth(),
+                            WALL_HEIGHT_SCALE, SPRITE_MAX_DISTANCE, culling == 1 ? visible[i] : null);
+                    if(timed && culling == 1) {
+                        drawn += renderer.getVisibleCount();
+                        for(int k = 0; k < sprites.count; k++) {
+                            if(visible[i].containsPoint(sprites.x[k], sprites.y[k])) passed++;
+                        }
+                    }
+                }
+                if(timed) nanos[culling] += System.nanoTime() - start;
+            }
+        }
+        int projections = CAMERAS * TIMING_ROUNDS;
+        System.out.printf("  %d sprites, %.1f in the sets, %.1f drawn: projection %.1f us with the sets, %.1f us"
+                        + " without%n", sprites.count, (double)passed / projections, (double)drawn / projections,
+                nanos[1] / 1e3 / projections, nanos[0] / 1e3 / projections);
+    }
+
+    static void compareSets(String name, VisibilitySet actual, VisibilitySet expected, GridMap map) {
+        VisibleCells actualCells = new VisibleCells();
+        VisibleCells expectedCells = new VisibleCells();
+        for(int y = 0; y < map.getHeight(); y++) {
+            for(int x = 0; x < map.getWidth(); x++) {
+                actual.select(x, y, actualCells);
+                expected.select(x, y, expectedCells);
+                if(actualCells.isKnown() != expectedCells.isKnown()) {
+                    report(name + ": set of " + x + "," + y + " is " + (actualCells.isKnown() ? "" : "not ") + "known");
+                    continue;
+                }
+                for(int cellY = 0; cellY < map.getHeight(); cellY++) {
+                    for(int cellX = 0; cellX < map.getWidth(); cellX++) {
+                        if(actualCells.contains(cellX, cellY) != expectedCells.contains(cellX, cellY)) {
+                            report(name + ": set of " + x + "," + y + " differs at " + cellX + "," + cellY);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Square rooms separated by walls, with a doorway in the middle of every inner wall
+    static GridMap rooms(int size, long seed) {
+        Random random = new Random(seed);
+        GridMap map = new GridMap(size, size, BenchmarkAssets.CELL_SIZE, BenchmarkAssets.CELL_SIZE);
+        for(int y = 0; y < size; y++) {
+            for(int x = 0; x < size; x++) {
+                boolean border = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+                boolean wallX = x % ROOM_SIZE == 0 && Math.abs(y % ROOM_SIZE - ROOM_SIZE / 2) > 0;
+                boolean wallY = y % ROOM_SIZE == 0 && Math.abs(x % ROOM_SIZE - ROOM_SIZE / 2) > 0;
+                if(border || wallX || wallY) map.set(x, y, 1 + random.nextInt(8));
+            }
+        }
+        map.publishChanges();
+        return map;
+    }
+
+    static void report(String message) {
+        if(mismatches < 10) {
+            System.err.println(message);
+        }
+        mismatches++;
+    }
+}
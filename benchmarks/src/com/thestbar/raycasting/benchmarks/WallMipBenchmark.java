@@ -0,0 +1,178 @@
+package com.thestbar.raycasting.benchmarks;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.render.FloorCaster;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.util.WorkerPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Wall columns of the views of Level2 that see the farthest walls, drawn
+// with and without the mip chain of the wall textures. Every column of a far
+// wall is only a few pixels tall, so without mipmaps it strides through a
+// whole 64 texel column of the texture. Setup also prints how many cache
+// lines of wall texels the frame of one view reads either way
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WallMipBenchmark {
+    private static final float FOV = 50;
+    private static final float WALL_HEIGHT_SCALE = 30;
+    private static final int TEXTURE_SIZE = 64;
+    // Views drawn per benchmark call, out of the directions tried from every empty cell
+    private static final int VIEWS = 8;
+    private static final int DIRECTIONS = 16;
+    // Rays of the fan that scores a view, the views that are kept are cast at the full width
+    private static final int SCORE_RAYS = 64;
+    private static final int CACHE_LINE = 64;
+
+    @Param({ "360x360", "720x720" })
+    public String resolution;
+
+    @Param({ "on", "off" })
+    public String mipmaps;
+
+    private int width;
+    private int height;
+    private WorkerPool pool;
+    private SoftwareRenderer renderer;
+    private TexelCache texelCache;
+    private final RayHits[] viewHits = new RayHits[VIEWS];
+    private int columns;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String[] size = resolution.split("x");
+        width = Integer.parseInt(size[0]);
+        height = Integer.parseInt(size[1]);
+        pool = new WorkerPool(1);
+        renderer = new SoftwareRenderer(width, height, TEXTURE_SIZE, TEXTURE_SIZE,
+                new FloorCaster(pool, TEXTURE_SIZE, TEXTURE_SIZE));
+        texelCache = BenchmarkAssets.loadTexelCache();
+        renderer.setWallTextures(texelCache);
+        renderer.setMipmaps(mipmaps.equals("on"));
+
+        GridMap map = BenchmarkAssets.loadLevel("Level2");
+        findFarViews(map);
+        long withMipmaps = 0;
+        long withoutMipmaps = 0;
+        float meanHeight = 0;
+        int walls = 0;
+        for(RayHits hits: viewHits) {
+            withMipmaps += texelFootprint(hits, true);
+            withoutMipmaps += texelFootprint(hits, false);
+            for(int i = 0; i < columns; i++) {
+                if(hits.cellValue[i] <= 0) continue;
+                meanHeight += WALL_HEIGHT_SCALE * height / hits.distance[i];
+                walls++;
+            }
+        }
+        System.out.printf("%nWalls %.1f pixels tall on average, wall texels read per view: %.1f KB with mipmaps,"
+                        + " %.1f KB without%n", meanHeight / Math.max(1, walls), withMipmaps / 1024.0 / VIEWS,
+                withoutMipmaps / 1024.0 / VIEWS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public SoftwareRenderer drawWalls() {
+        for(RayHits hits: viewHits) {
+            for(int i = 0; i < columns; i++) {
+                if(hits.cellValue[i] <= 0) continue;
+                renderer.drawWallColumn(i, i + 1, WALL_HEIGHT_SCALE * height / hits.distance[i], hits.side[i],
+                        hits.cellValue[i], (int)(hits.textureU[i] * TEXTURE_SIZE), hits.distance[i]);
+            }
+        }
+        return renderer;
+    }
+
+    // Keeps the VIEWS views, from the center of an empty cell, whose walls are the farthest away on average
+    void findFarViews(GridMap map) {
+        DdaRayCaster caster = new DdaRayCaster();
+        CameraPlane camera = new CameraPlane();
+        Rays rays = new Rays();
+        RayHits hits = new RayHits();
+        hits.ensureCapacity(Math.max(SCORE_RAYS, width));
+        float[] bestScore = new float[VIEWS];
+        float[][] best = new float[VIEWS][];
+
+        for(int y = 0; y < map.getHeight(); y++) {
+            for(int x = 0; x < map.getWidth(); x++) {
+                if(map.get(x, y) != 0) continue;
+                float originX = (x + 0.5f) * map.getCellWidth();
+                float originY = (y + 0.5f) * map.getCellHeight();
+                for(int direction = 0; direction < DIRECTIONS; direction++) {
+                    float angle = 360f * direction / DIRECTIONS;
+                    camera.set(new Vector2(1, 0).rotateDeg(angle), FOV, SCORE_RAYS);
+                    rays.fan(camera);
+                    caster.cast(map, originX, originY, rays, 0, rays.count, hits);
+                    float score = 0;
+                    for(int i = 0; i < rays.count; i++) {
+                        score += hits.distance[i];
+                    }
+                    // Replace the worst of the kept views
+                    int worst = 0;
+                    for(int k = 1; k < VIEWS; k++) {
+                        if(bestScore[k] < bestScore[worst]) worst = k;
+                    }
+                    if(score > bestScore[worst]) {
+                        bestScore[worst] = score;
+                        best[worst] = new float[] { originX, originY, angle };
+                    }
+                }
+            }
+        }
+
+        columns = width;
+        for(int k = 0; k < VIEWS; k++) {
+            camera.set(new Vector2(1, 0).rotateDeg(best[k][2]), FOV, width);
+            rays.fan(camera);
+            viewHits[k] = new RayHits();
+            viewHits[k].ensureCapacity(rays.count);
+            caster.cast(map, best[k][0], best[k][1], rays, 0, rays.count, viewHits[k]);
+        }
+    }
+
+    // Bytes of the distinct cache lines of wall texels that the columns of a view read,
+    // every column reads the whole height of the texture column it samples
+    long texelFootprint(RayHits hits, boolean withMipmaps) {
+        Set<Long> lines = new HashSet<>();
+        for(int i = 0; i < columns; i++) {
+            if(hits.cellValue[i] <= 0) continue;
+            float wallHeight = WALL_HEIGHT_SCALE * height / hits.distance[i];
+            int level = withMipmaps ? texelCache.getMipLevel(wallHeight) : 0;
+            int levelHeight = TEXTURE_SIZE >> level;
+            int texX = Math.min(TEXTURE_SIZE - 1, (int)(hits.textureU[i] * TEXTURE_SIZE)) >> level;
+            // Side shaded texels are a copy of their own
+            long texture = ((long)hits.cellValue[i] * 2 + (hits.side[i] ? 1 : 0)) * 16 + level;
+            int first = texX * levelHeight * 4 / CACHE_LINE;
+            int last = ((texX + 1) * levelHeight * 4 - 1) / CACHE_LINE;
+            for(int line = first; line <= last; line++) {
+                lines.add((texture << 32) | line);
+            }
+        }
+        return (long)lines.size() * CACHE_LINE;
+    }
+}
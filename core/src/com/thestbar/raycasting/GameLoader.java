@@ -0,0 +1,267 @@
+package com.thestbar.raycasting;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.thestbar.raycasting.input.InputReplay;
+import com.thestbar.raycasting.map.LevelData;
+import com.thestbar.raycasting.render.BakedTextures;
+import com.thestbar.raycasting.render.MinimapLayer;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.render.TexelFile;
+import com.thestbar.raycasting.render.WallMesh;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Everything GameScreen needs before its first frame. The PNG decoding, the
+// level parsing and everything built from them runs as tasks on the worker
+// pool, which GameScreen keeps for the ray casters afterwards. The render
+// thread only polls update() once per frame, which does the GL uploads one
+// at a time as their inputs become ready, so the loading screen keeps drawing.
+// The decoded textures are baked into TEXEL_CACHE_FILE on the first run, in
+// the cache directory of the game (on Android the app's internal storage), later
+// runs map that file instead of decoding the PNGs, until one of them changes.
+// The PNGs are still read to tell that, which is far cheaper than decoding them
+public class GameLoader {
+    // Wall textures in the order of their cell values, cell value 1 uses the first one
+    static final String[] TEXTURE_FILES = { "eagle.png", "redbrick.png", "purplestone.png", "greystone.png",
+            "bluestone.png", "mossy.png", "wood.png", "colorstone.png", "pillar.png", "greenlight.png", "barrel.png" };
+    private static final int TEXTURE_WIDTH = 64;
+    // File with the decoded textures in the cache directory, see TexelFile
+    private static final String TEXEL_CACHE_FILE = "textures.texels";
+    // Cache directory in the local storage, when the launcher does not pick one
+    private static final String LOCAL_CACHE_DIRECTORY = "cache";
+    // Steps done on the render thread: the atlas, the minimap and the screen
+    private static final int UPLOAD_STEPS = 3;
+
+    private final RayCasting game;
+    private final WorkerPool workerPool = new WorkerPool();
+    private final WorkerPool.Job<BakedTextures> bakedTask;
+    private final WorkerPool.Job<Pixmap>[] textureTasks;
+    private final WorkerPool.Job<InputReplay> replayTask;
+    private final WorkerPool.Job<World> worldTask;
+    private final WorkerPool.Job<Pixmap> atlasTask;
+    private final WorkerPool.Job<TexelCache> texelCacheTask;
+    private final WorkerPool.Job<MinimapLayer> minimapTask;
+    private final int workerSteps;
+    private int uploadStep = 0;
+
+    private WallMesh wallMesh;
+    private MinimapLayer minimap;
+    private GameScreen screen;
+
+    // Time the workers spent on each part, read only after joining their tasks
+    private final AtomicLong textureNanos = new AtomicLong();
+    private long levelNanos;
+    private final long startNanos;
+    // Contents, size and checksum of each PNG, what the texel cache was baked from
+    private final byte[][] textureBytes = new byte[TEXTURE_FILES.length][];
+    private final long[] textureSizes = new long[TEXTURE_FILES.length];
+    private final long[] textureChecksums = new long[TEXTURE_FILES.length];
+    private final File texelCacheFile;
+
+    @SuppressWarnings("unchecked")
+    public GameLoader(RayCasting game, final String levelPath) {
+        this.game = game;
+        this.startNanos = System.nanoTime();
+
+        File cacheDirectory = game.cacheDirectory != null ? game.cacheDirectory
+                : Gdx.files.local(LOCAL_CACHE_DIRECTORY).file();
+        texelCacheFile = new File(cacheDirectory, TEXEL_CACHE_FILE);
+        // The baked texels, or null when there are none yet or a PNG changed since they were baked
+        bakedTask = workerPool.submit(new Callable<BakedTextures>() {
+            @Override
+            public BakedTextures call() throws IOException {
+                long start = System.nanoTime();
+                for(int i = 0; i < TEXTURE_FILES.length; i++) {
+                    textureBytes[i] = Gdx.files.internal("textures/" + TEXTURE_FILES[i]).readBytes();
+                    textureSizes[i] = textureBytes[i].length;
+                    textureChecksums[i] = TexelFile.checksum(textureBytes[i]);
+                }
+                BakedTextures baked = null;
+                if(TexelFile.isUpToDate(texelCacheFile, textureSizes, textureChecksums)) {
+                    baked = TexelFile.read(texelCacheFile);
+                }
+                textureNanos.addAndGet(System.nanoTime() - start);
+                return baked;
+            }
+        });
+
+        textureTasks = new WorkerPool.Job[TEXTURE_FILES.length];
+        for(int i = 0; i < TEXTURE_FILES.length; i++) {
+            final int index = i;
+            textureTasks[i] = workerPool.submit(new Callable<Pixmap>() {
+                @Override
+                public Pixmap call() {
+                    BakedTextures baked = bakedTask.join();
+                    long start = System.nanoTime();
+                    Pixmap pixmap;
+                    if(baked != null) {
+                        pixmap = baked.toPixmap(index);
+                    }
+                    else {
+                        // Decoding a PNG does not need the GL context
+                        pixmap = new Pixmap(textureBytes[index], 0, textureBytes[index].length);
+                    }
+                    textureNanos.addAndGet(System.nanoTime() - start);
+                    return pixmap;
+                }
+            });
+        }
+
+        final File replayFile = game.inputReplayFile;
+        replayTask = workerPool.submit(new Callable<InputReplay>() {
+            @Override
+            public InputReplay call() throws IOException {
+                return replayFile != null ? new InputReplay(replayFile) : null;
+            }
+        });
+
+        // A replay brings its own level and start
+        worldTask = workerPool.submit(new Callable<World>() {
+            @Override
+            public World call() throws IOException {
+                InputReplay replay = replayTask.join();
+                long start = System.nanoTime();
+                World world = new World(replay != null ? replay.getLevelPath() : levelPath);
+                if(replay != null) {
+                    world.setPlayer(replay.getStartX(), replay.getStartY(), replay.getStartDirX(), replay.getStartDirY());
+                }
+                levelNanos = System.nanoTime() - start;
+                return world;
+            }
+        });
+
+        // Each PNG is decoded once, the pixmap feeds both the wall atlas and the texel cache
+        atlasTask = workerPool.submit(new Callable<Pixmap>() {
+            @Override
+            public Pixmap call() {
+                return WallMesh.buildAtlas(joinTextures());
+            }
+        });
+        texelCacheTask = workerPool.submit(new Callable<TexelCache>() {
+            @Override
+            public TexelCache call() {
+                BakedTextures baked = bakedTask.join();
+                if(baked != null) return baked.toTexelCache();
+
+                TexelCache texelCache = TexelCache.fromPixmaps(joinTextures());
+                // The next start skips the decoding, without the cache it just decodes again
+                try {
+                    File directory = texelCacheFile.getParentFile();
+                    if(!directory.isDirectory() && !directory.mkdirs()) {
+                        throw new IOException("Could not create " + directory);
+                    }
+                    TexelFile.write(texelCacheFile, texelCache, textureSizes, textureChecksums);
+                } catch (IOException e) {
+                    Gdx.app.error("Startup", "Could not write " + texelCacheFile, e);
+                }
+                return texelCache;
+            }
+        });
+
+        // The 2D map image is painted here, only its texture is created on the render thread
+        minimapTask = workerPool.submit(new Callable<MinimapLayer>() {
+            @Override
+            public MinimapLayer call() {
+                World world = worldTask.join();
+                int[] palette = world.getPalette().length > 0 ? world.getPalette() : LevelData.defaultPalette();
+                return new MinimapLayer(world.getGridMap(), palette, Color.DARK_GRAY);
+            }
+        });
+
+        workerSteps = textureTasks.length + 6;
+    }
+
+    private Pixmap[] joinTextures() {
+        Pixmap[] pixmaps = new Pixmap[textureTasks.length];
+        for(int i = 0; i < textureTasks.length; i++) {
+            pixmaps[i] = textureTasks[i].join();
+        }
+        return pixmaps;
+    }
+
+    // Called once per frame on the render thread, does at most one upload.
+    // Returns the game screen once it is ready, null until then. A task that
+    // failed throws its exception here
+    public GameScreen update() throws IOException {
+        if(screen != null) return screen;
+
+        if(uploadStep == 0 && atlasTask.isDone()) {
+            wallMesh = new WallMesh(atlasTask.join(), TEXTURE_WIDTH, SoftwareRenderer.SIDE_SHADE);
+            uploadStep++;
+        }
+        else if(uploadStep == 1 && minimapTask.isDone()) {
+            minimap = minimapTask.join();
+            minimap.upload();
+            uploadStep++;
+        }
+        else if(uploadStep == 2 && texelCacheTask.isDone()) {
+            // The atlas and the texel cache have their own copies of the pixels
+            for(Pixmap pixmap: joinTextures()) {
+                pixmap.dispose();
+            }
+            screen = new GameScreen(game, this);
+            uploadStep++;
+            Gdx.app.log("Startup", String.format("Loaded in %.1f ms: %d textures %s in %.1f ms and the level"
+                            + " built in %.1f ms on %d workers, %s", (System.nanoTime() - startNanos) / 1e6,
+                    textureTasks.length, bakedTask.join() != null ? "mapped" : "decoded", textureNanos.get() / 1e6,
+                    levelNanos / 1e6, workerPool.getThreadCount(),
+                    worldTask.join().getVisibility() != null ? "visibility sets loaded" : "no visibility sets"));
+        }
+        return screen;
+    }
+
+    // Fraction of the loading that is done, from 0 to 1
+    public float getProgress() {
+        int done = uploadStep;
+        if(bakedTask.isDone()) done++;
+        for(WorkerPool.Job<Pixmap> task: textureTasks) {
+            if(task.isDone()) done++;
+        }
+        if(replayTask.isDone()) done++;
+        if(worldTask.isDone()) done++;
+        if(atlasTask.isDone()) done++;
+        if(texelCacheTask.isDone()) done++;
+        if(minimapTask.isDone()) done++;
+        return (float)done / (workerSteps + UPLOAD_STEPS);
+    }
+
+    // Frees what was loaded so far when the game is closed before it finished
+    // loading, afterwards all of it belongs to the game screen
+    public void dispose() {
+        if(screen != null) return;
+        workerPool.shutdown();
+        if(wallMesh != null) wallMesh.dispose();
+        if(minimap != null) minimap.dispose();
+    }
+
+    WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    InputReplay getReplay() {
+        return replayTask.join();
+    }
+
+    World getWorld() {
+        return worldTask.join();
+    }
+
+    TexelCache getTexelCache() {
+        return texelCacheTask.join();
+    }
+
+    WallMesh getWallMesh() {
+        return wallMesh;
+    }
+
+    MinimapLayer getMinimap() {
+        return minimap;
+    }
+}
@@ -1,59 +1,148 @@
 package com.thestbar.raycasting;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.Input;
 import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.*;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.ScreenUtils;
-import com.thestbar.raycasting.util.ByteBufferHandler;
-import com.thestbar.raycasting.util.CenteredRectangle;
+import com.thestbar.raycasting.caster.DdaRayCaster;
+import com.thestbar.raycasting.caster.RayCasterRegistry;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.SlowRayCaster;
+import com.thestbar.raycasting.input.GdxInputSource;
+import com.thestbar.raycasting.input.InputFrame;
+import com.thestbar.raycasting.input.InputRecorder;
+import com.thestbar.raycasting.input.InputReplay;
+import com.thestbar.raycasting.input.InputSource;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibilitySet;
+import com.thestbar.raycasting.profile.FrameProfiler;
+import com.thestbar.raycasting.render.FogTable;
+import com.thestbar.raycasting.render.MinimapLayer;
+import com.thestbar.raycasting.render.MultiViewRenderer;
+import com.thestbar.raycasting.render.ProfilerOverlay;
+import com.thestbar.raycasting.render.ResolutionScaler;
+import com.thestbar.raycasting.render.SoftwareRenderer;
+import com.thestbar.raycasting.render.StreamingTexture;
+import com.thestbar.raycasting.render.TexelCache;
+import com.thestbar.raycasting.render.View3D;
+import com.thestbar.raycasting.render.WallMesh;
+import com.thestbar.raycasting.util.WorkerPool;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.Writer;
+import java.util.Random;
 
 public class GameScreen implements Screen {
     private final RayCasting game;
     private final OrthographicCamera camera;
-    private Vector2 player = new Vector2(300, 40);
-    private final Vector2 playerDir = new Vector2(1, 0);
-    private float playerMovementSpeed = 100;
-    private float playerRotationMovementSpeed = 150;
-    private final Vector2 mapSize = new Vector2(24, 24);
-    private final Vector2 cellSize = new Vector2(30, 30);
-    private int[] map = new int[(int)(mapSize.x * mapSize.y)];
-    private Vector2 mouse;
+    // Level and player, changed only through the input frames
+    private final World world;
+    private final Vector2 player;
+    private final Vector2 playerDir;
+    private final Vector2 cellSize;
+    private final GridMap gridMap;
+    private final Sprites sprites;
+    // Cells seen from each cell, culls the sprites before the per column work. Null without a baked file
+    private final VisibilitySet visibility;
+    // Time each frame may spend casting again the visibility sets that painting made stale
+    private final long VISIBILITY_REFRESH_BUDGET_NANOS = 1000000;
+    // Keyboard and mouse, or a recorded trace, optionally recorded again
+    private InputSource inputSource;
+    private InputRecorder inputRecorder;
+    private final InputFrame inputFrame = new InputFrame();
+    private final MinimapLayer minimap;
+    private final Vector2 mouse;
     private boolean isDrawingRayIntersections;
-    private final int NUM_OF_RAYS = Gdx.graphics.getWidth() / 2;
+    // Size of the 3D view on the screen, the right half of the window
+    private int viewWidth = Gdx.graphics.getWidth() / 2;
+    private int viewHeight = Gdx.graphics.getHeight();
+    // The internal resolution the 3D views are rendered at and then upscaled
+    // from is picked by the resolution scaler to keep the frame time within
+    // FRAME_TIME_BUDGET_MS, one ray is cast per column
+    private final float FRAME_TIME_BUDGET_MS = 8;
+    private final float MIN_RESOLUTION_SCALE = 0.25f;
+    private final ResolutionScaler resolutionScaler = new ResolutionScaler(FRAME_TIME_BUDGET_MS,
+            MIN_RESOLUTION_SCALE, 1);
     private final float SLOW_RAY_CASTER_DELTA_DISTANCE = 1f;
     private final float FOV = 50;
     private float fpsCounterInterval = 0;
     private final float UPDATE_FPS_INTERVAL = 1;
-    private final String LEVEL_MAP_PATH = "./assets/levelMaps/Level3_Map.txt"; // Contains the Path to current level
-    private final int NUMBER_OF_TEXTURES = 11;
-    private Texture[] textures;
+    private final StringBuilder titleBuilder = new StringBuilder();
+    // All the wall textures in one atlas, so the wall columns of a frame are a single draw
+    private final WallMesh wallMesh;
+    private final TexelCache texelCache;
     private final int TEXTURE_WIDTH = 64;
     private final int TEXTURE_HEIGHT = 64;
-    // If 0 then DDA Algorithm is used
-    // If 1 then Slow Algorithm is used
+    // Index of the ray caster in use inside the registry
+    // Index 0 is the DDA Algorithm, index 1 is the Slow Algorithm and
+    // index 2 is the DDA Algorithm with empty space skipping
     private int rayCaster = 0;
-    private Pixmap backgroundPixmap;
-    private Texture backgroundTexture;
+    private final RayCasterRegistry rayCasters = new RayCasterRegistry();
+    // Worker threads that loaded the game, shared by the ray casters and the floor casters
+    private final WorkerPool workerPool;
+    // The 3D views, tiled over the right half of the window. View 0 is the
+    // player, view 1 looks behind the player and the others are spectators
+    private final MultiViewRenderer multiView;
+    private final int[] VIEW_COUNTS = { 1, 2, 4 };
+    private int viewCountIndex = 0;
+    // Spectators stand in random empty cells and slowly turn around
+    private final float SPECTATOR_TURN_SPEED = 20;
+    private final long SPECTATOR_SEED = 7;
+    private final int SPECTATOR_PLACEMENT_ATTEMPTS = 1000;
+    private final Vector2[] spectatorPositions = new Vector2[MultiViewRenderer.MAX_VIEWS];
+    private final Vector2[] spectatorDirections = new Vector2[MultiViewRenderer.MAX_VIEWS];
+    // Billboards of the level, drawn in front of the walls
+    private final float SPRITE_MAX_DISTANCE = 2000;
+    // Height of a wall of distance 1 as a multiple of the view height, the same for sprites
+    private final float WALL_HEIGHT_SCALE = 30;
     private final int FLOOR_TEX_INDEX = 3;
     private final int CEIL_TEX_INDEX = 6;
-    private final Pixmap floorPixmap;
-    private final Pixmap ceilingPixmap;
-    private final int[] floorAndCeilingPixelsData;
-    private final ByteBuffer floorAndCeilingByteBuffer;
+    // Streams either the floor/ceiling background or the software frame of each view to the GPU
+    private final StreamingTexture[] frameStreams = new StreamingTexture[MultiViewRenderer.MAX_VIEWS];
     private final Color floorAndCeilingFilterColor = new Color(0.7f, 0.7f, 0.7f, 1);
-
-    public GameScreen(RayCasting game) throws IOException {
+    // If 0 then the 3D view is drawn column by column with the sprite batch
+    // If 1 then the 3D view is rendered in software and uploaded once per frame
+    private int renderMode = 0;
+    // Distance fog of the software frame, in world units. Nothing is drawn past
+    // FOG_END, so the rays stop there and the cost of a ray has an upper bound
+    private final float FOG_START = 150;
+    private final float FOG_END = 900;
+    private final Color fogColor = new Color(0.05f, 0.05f, 0.07f, 1);
+    private final FogTable fogTable = new FogTable(FOG_START, FOG_END, Color.rgba8888(fogColor),
+            SoftwareRenderer.SIDE_SHADE);
+    private boolean isFogEnabled = true;
+    // Timing scopes of the frame, shown with P and written to PROFILE_CSV_FILE on exit
+    private final FrameProfiler profiler = new FrameProfiler();
+    private final int PROFILE_FRAME = profiler.register("frame");
+    private final int PROFILE_INPUT = profiler.register("input");
+    private final int PROFILE_MAP_2D = profiler.register("drawMap2D");
+    private final int PROFILE_FLOOR_3D = profiler.register("drawFloorAndCeiling3D");
+    private final int PROFILE_CAST_RAYS = profiler.register("castRays");
+    private final int PROFILE_RAYS_2D = profiler.register("drawRays2D");
+    private final int PROFILE_SCREEN_3D = profiler.register("drawScreen3D");
+    private final int PROFILE_SPRITES_3D = profiler.register("drawSprites3D");
+    // Floor, sprites and walls of each view, the views partly run at the same time
+    private final int[] PROFILE_VIEWS = { profiler.register("view0"), profiler.register("view1"),
+            profiler.register("view2"), profiler.register("view3") };
+    private final String PROFILE_CSV_FILE = "profile.csv";
+    private final ProfilerOverlay profilerOverlay;
+    // Draw calls issued by the sprite batch during the last frame, in total and for the wall pass
+    private int drawCallsLastFrame = 0;
+    private int wallDrawCallsLastFrame = 0;
+    // The time to the first frame is logged once, at the end of that frame
+    private boolean isFirstFrame = true;
+
+    // Takes over everything the loader prepared, see GameLoader
+    public GameScreen(RayCasting game, GameLoader loader) throws IOException {
         this.game = game;
+        workerPool = loader.getWorkerPool();
 
-        // Load textures
-        loadTextures();
+        // Textures, decoded by the loader and already uploaded as the atlas
+        wallMesh = loader.getWallMesh();
+        texelCache = loader.getTexelCache();
 
         // Create camera
         camera = new OrthographicCamera();
@@ -68,25 +157,90 @@ public class GameScreen implements Screen {
         mouse = new Vector2();
         isDrawingRayIntersections = false;
 
-        // Initialize map
-        initializeMap();
-
-        // Initialize pix-maps for ceiling and floor
-        if (!textures[FLOOR_TEX_INDEX].getTextureData().isPrepared()) {
-            textures[FLOOR_TEX_INDEX].getTextureData().prepare();
+        // Map and its cached 2D image, a replay brings its own level and start
+        InputReplay replay = loader.getReplay();
+        world = loader.getWorld();
+        player = world.getPlayer();
+        playerDir = world.getPlayerDir();
+        cellSize = world.getCellSize();
+        gridMap = world.getGridMap();
+        sprites = world.getSprites();
+        visibility = world.getVisibility();
+        minimap = loader.getMinimap();
+        gridMap.addChangeListener(minimap);
+
+        inputSource = replay != null ? replay : new GdxInputSource();
+        if(game.inputRecordFile != null) {
+            inputRecorder = new InputRecorder(inputSource, game.inputRecordFile, world.getLevelPath(),
+                    player.x, player.y, playerDir.x, playerDir.y);
+            inputSource = inputRecorder;
         }
-        floorPixmap = textures[FLOOR_TEX_INDEX].getTextureData().consumePixmap();
 
-        if (!textures[CEIL_TEX_INDEX].getTextureData().isPrepared()) {
-            textures[CEIL_TEX_INDEX].getTextureData().prepare();
+        // Register the available ray casters
+        rayCasters.register(new DdaRayCaster());
+        rayCasters.register(new SlowRayCaster(SLOW_RAY_CASTER_DELTA_DISTANCE));
+        rayCasters.register(new DdaRayCaster(world.getDistanceField()));
+
+        // The floor casters sample the cached texels instead of calling Pixmap.getPixel() per pixel
+        multiView = new MultiViewRenderer(workerPool, texelCache, TEXTURE_WIDTH, TEXTURE_HEIGHT,
+                texelCache.getFlatTexels(FLOOR_TEX_INDEX + 1), texelCache.getFlatTexels(CEIL_TEX_INDEX + 1),
+                floorAndCeilingFilterColor.r, FOV, WALL_HEIGHT_SCALE);
+        multiView.setVisibility(visibility);
+        applyFog();
+        placeSpectators();
+        applyViewCount();
+
+        profilerOverlay = new ProfilerOverlay(profiler, game.skin.getFont("default-font"));
+    }
+
+    // Random empty cells of the level, the same ones on every run. A level
+    // without a free cell leaves the spectators where the player starts
+    void placeSpectators() {
+        Random random = new Random(SPECTATOR_SEED);
+        for(int i = 2; i < spectatorPositions.length; i++) {
+            spectatorPositions[i] = new Vector2(player);
+            spectatorDirections[i] = new Vector2(1, 0).rotateDeg(90 * i);
+            for(int attempt = 0; attempt < SPECTATOR_PLACEMENT_ATTEMPTS; attempt++) {
+                int x = random.nextInt(gridMap.getWidth());
+                int y = random.nextInt(gridMap.getHeight());
+                if(gridMap.get(x, y) == 0) {
+                    spectatorPositions[i].set((x + 0.5f) * cellSize.x, (y + 0.5f) * cellSize.y);
+                    break;
+                }
+            }
         }
-        ceilingPixmap = textures[CEIL_TEX_INDEX].getTextureData().consumePixmap();
+    }
 
-        backgroundPixmap = new Pixmap(Gdx.graphics.getWidth() / 2, Gdx.graphics.getHeight(), Pixmap.Format.RGBA8888);
+    // The fog is shaded in the software pixel path only, the sprite batch path draws everything unfogged
+    void applyFog() {
+        multiView.setFog(isFogEnabled && renderMode == 1 ? fogTable : null);
+    }
 
-        // Initialize int array and byte buffer that are used to draw ceiling and floor
-        floorAndCeilingPixelsData = new int[Gdx.graphics.getHeight() * Gdx.graphics.getWidth() / 2];
-        floorAndCeilingByteBuffer = ByteBuffer.allocateDirect(floorAndCeilingPixelsData.length * 4);
+    // Uses VIEW_COUNTS[viewCountIndex] views, each with its own streaming texture
+    void applyViewCount() {
+        int count = VIEW_COUNTS[viewCountIndex];
+        multiView.setViewCount(count);
+        for(int i = 0; i < count; i++) {
+            if(frameStreams[i] == null) frameStreams[i] = new StreamingTexture(1, 1, true);
+        }
+        applyResolution();
+    }
+
+    // Moves the cameras of the views for this frame
+    void updateViews(float deltaTime) {
+        View3D playerView = multiView.getView(0);
+        playerView.position.set(player);
+        playerView.direction.set(playerDir);
+        if(multiView.getViewCount() > 1) {
+            View3D rearView = multiView.getView(1);
+            rearView.position.set(player);
+            rearView.direction.set(playerDir).scl(-1);
+        }
+        for(int i = 2; i < multiView.getViewCount(); i++) {
+            spectatorDirections[i].rotateDeg(deltaTime * SPECTATOR_TURN_SPEED);
+            multiView.getView(i).position.set(spectatorPositions[i]);
+            multiView.getView(i).direction.set(spectatorDirections[i]);
+        }
     }
 
     @Override
@@ -95,74 +249,83 @@ public class GameScreen implements Screen {
     }
 
     private void input(float deltaTime) {
-        mouse = new Vector2(Gdx.input.getX(), Gdx.input.getY());
-
-        Vector2 cell = new Vector2((float)Math.floor(mouse.x / cellSize.x),
-                (float)Math.floor(mouse.y / cellSize.y));
+        // At the end of a replay the keyboard and mouse take over
+        if(!inputSource.poll(deltaTime, inputFrame)) {
+            Gdx.app.log("Input", "Replay finished");
+            inputSource = new GdxInputSource();
+            inputSource.poll(deltaTime, inputFrame);
+        }
+        mouse.set(inputFrame.mouseX, inputFrame.mouseY);
 
-        // Paint with right mouse button "solid" tiles
-        if(Gdx.input.isTouched()) map[(int)(cell.y * mapSize.x + cell.x)] = 1;
+        // Painting and movement, the changed cells reach the minimap through the map
+        world.update(inputFrame);
+        // Until then the stale sets count every cell as visible
+        if(visibility != null) visibility.refreshStale(VISIBILITY_REFRESH_BUDGET_NANOS);
 
-        // Get a copy of player's current position
-        Vector2 playerCpy = player.cpy();
+        // If space is pressed then enable/disable drawing intersection of rays with wall
+        if(inputFrame.wasPressed(InputFrame.TOGGLE_RAY_INTERSECTIONS))
+            isDrawingRayIntersections = !isDrawingRayIntersections;
 
-        // Move "player" position
-        if(Gdx.input.isKeyPressed(Input.Keys.W)) {
-            playerCpy.x += playerDir.x * playerMovementSpeed * deltaTime;
-            playerCpy.y += playerDir.y * playerMovementSpeed * deltaTime;
-        }
-        else if(Gdx.input.isKeyPressed(Input.Keys.S)) {
-            Vector2 behindFromPlayerDir = playerDir.cpy().rotateDeg(180);
-            playerCpy.x += behindFromPlayerDir.x * playerMovementSpeed * deltaTime;
-            playerCpy.y += behindFromPlayerDir.y * playerMovementSpeed * deltaTime;
-        }
-        if(Gdx.input.isKeyPressed(Input.Keys.A)) {
-            playerDir.rotateDeg(-deltaTime * playerRotationMovementSpeed);
-        }
-        else if(Gdx.input.isKeyPressed(Input.Keys.D)) {
-            playerDir.rotateDeg(deltaTime * playerRotationMovementSpeed);
-        }
-        if(Gdx.input.isKeyPressed(Input.Keys.LEFT)) {
-            Vector2 leftFromPlayerDir = playerDir.cpy().rotateDeg(-90);
-            playerCpy.x += leftFromPlayerDir.x * playerMovementSpeed * deltaTime;
-            playerCpy.y += leftFromPlayerDir.y * playerMovementSpeed * deltaTime;
+        // If R button is pressed change ray caster in use
+        if(inputFrame.wasPressed(InputFrame.NEXT_RAY_CASTER)) {
+            rayCaster = rayCasters.next(rayCaster);
         }
-        else if(Gdx.input.isKeyPressed(Input.Keys.RIGHT)) {
-            Vector2 rightFromPlayerDir = playerDir.cpy().rotateDeg(90);
-            playerCpy.x += rightFromPlayerDir.x * playerMovementSpeed * deltaTime;
-            playerCpy.y += rightFromPlayerDir.y * playerMovementSpeed * deltaTime;
+
+        // If F button is pressed switch between sprite batch and software 3D rendering
+        if(inputFrame.wasPressed(InputFrame.TOGGLE_RENDER_MODE)) {
+            if(renderMode == 0) renderMode = 1;
+            else renderMode = 0;
+            applyFog();
         }
 
-        detectCollisions(playerCpy);
+        // If G button is pressed enable/disable the fog of the software 3D view
+        if(inputFrame.wasPressed(InputFrame.TOGGLE_FOG)) {
+            isFogEnabled = !isFogEnabled;
+            applyFog();
+        }
 
-        // If space is pressed then enable/disable drawing intersection of rays with wall
-        if(Gdx.input.isKeyJustPressed(Input.Keys.SPACE))
-            isDrawingRayIntersections = !isDrawingRayIntersections;
+        // If P button is pressed show/hide the profiler, it only measures while shown
+        if(inputFrame.wasPressed(InputFrame.TOGGLE_PROFILER)) {
+            profiler.setEnabled(!profiler.isEnabled());
+            profiler.resetIntervals();
+        }
 
-        // If R button is pressed change ray caster in use
-        if(Gdx.input.isKeyJustPressed(Input.Keys.R)) {
-            if(rayCaster == 0) rayCaster = 1;
-            else rayCaster = 0;
+        // If V button is pressed cycle through the number of 3D views
+        if(inputFrame.wasPressed(InputFrame.NEXT_VIEW_COUNT)) {
+            viewCountIndex = (viewCountIndex + 1) % VIEW_COUNTS.length;
+            applyViewCount();
         }
 
     }
 
     @Override
     public void render(float delta) {
+        // Time spent on the frame itself, without the wait for vsync that delta contains
+        long frameStart = System.nanoTime();
+        profiler.begin(PROFILE_FRAME);
+
         // Set FPS counter in Desktop title
         countFps(delta);
 
+        int drawCallsAtFrameStart = game.batch.totalRenderCalls;
+
         ScreenUtils.clear(0, 0, 0, 1);
 
-        // On each frame clear bytebuffer that is used for ceiling and floor
-        floorAndCeilingByteBuffer.clear();
+        // On each frame reset the upload counters of the streaming textures
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            frameStreams[i].beginFrame();
+        }
 
         game.batch.setProjectionMatrix(camera.combined);
 
+        profiler.begin(PROFILE_INPUT);
         input(delta);
+        profiler.end(PROFILE_INPUT);
 
         // Draw Map
+        profiler.begin(PROFILE_MAP_2D);
         drawMap2D();
+        profiler.end(PROFILE_MAP_2D);
 
         // Draw player
         drawPlayer2D();
@@ -170,7 +333,7 @@ public class GameScreen implements Screen {
         // Draw mouse
         drawMouse2D();
 
-        drawFloorAndCeiling3D();
+        updateViews(delta);
 
         // Cast rays
         // When you know the origin point the length of the line and the direction
@@ -179,478 +342,177 @@ public class GameScreen implements Screen {
         // Where l is the length of the line
         // x1, y1 are the coordinates of the starting point
         // a, b are the coordinates of the direction vector
-        Vector2 currRayDir = playerDir.cpy().rotateDeg(-FOV / 2);
-        final float rayStep = FOV / NUM_OF_RAYS;
-        for(int i = 0; i < NUM_OF_RAYS; i++) {
-            // Selection between 2 different ray casters
-            if(rayCaster == 0)
-                castRayDDAAlgo(player, currRayDir, i, Math.abs(currRayDir.angleDeg() - playerDir.angleDeg()));
-            else if(rayCaster == 1)
-                castRaySlowAlgo(player, currRayDir, i, Math.abs(currRayDir.angleDeg() - playerDir.angleDeg()));
-
-            currRayDir.rotateDeg(rayStep);
-        }
-    }
-
-    void countFps(float delta) {
-        int fps = (int)(1 / delta);
-        if(fpsCounterInterval >= UPDATE_FPS_INTERVAL) {
-            Gdx.graphics.setTitle("RayCasting - FPS: " + fps);
-            fpsCounterInterval = 0;
+        // The rays of every view are cast in parallel by the selected caster and
+        // everything is drawn afterwards
+        profiler.begin(PROFILE_CAST_RAYS);
+        multiView.castRays(rayCasters.get(rayCaster), gridMap);
+        profiler.end(PROFILE_CAST_RAYS);
+
+        // The floor and ceiling are only shaded above and below the walls that the rays hit
+        profiler.begin(PROFILE_FLOOR_3D);
+        multiView.drawFloorAndCeiling(renderMode == 1, cellSize.x, cellSize.y);
+        if(renderMode == 0)
+            drawFloorAndCeiling3D();
+        profiler.end(PROFILE_FLOOR_3D);
+
+        profiler.begin(PROFILE_RAYS_2D);
+        drawRays2D();
+        profiler.end(PROFILE_RAYS_2D);
+
+        // The walls of the rays are the depth buffer of the sprites
+        profiler.begin(PROFILE_SPRITES_3D);
+        multiView.projectSprites(sprites, renderMode == 1, cellSize.x, SPRITE_MAX_DISTANCE, cellSize.x, cellSize.y);
+        profiler.end(PROFILE_SPRITES_3D);
+
+        // All the columns of the 3D screen, from the hits to the upload or the draw call
+        profiler.begin(PROFILE_SCREEN_3D);
+        if(renderMode == 1) {
+            multiView.drawSoftware(sprites);
+            // All the software columns are written, so upload each frame once
+            drawSoftwareFrame3D();
         }
         else {
-            fpsCounterInterval += delta;
+            // Every column becomes a quad of the wall mesh, followed by the visible parts
+            // of the sprites, back to front, and all the views are submitted in one draw
+            multiView.drawToMesh(wallMesh, sprites);
+            int wallDrawCallsAtStart = game.batch.totalRenderCalls;
+            game.batch.begin();
+            game.batch.setColor(Color.WHITE);
+            wallMesh.draw(game.batch);
+            game.batch.end();
+            wallDrawCallsLastFrame = game.batch.totalRenderCalls - wallDrawCallsAtStart;
         }
-    }
+        profiler.end(PROFILE_SCREEN_3D);
 
-    void castRayDDAAlgo(Vector2 sPos, Vector2 rayDir, int rayIndex, float angleBetweenCameraAndRay) {
-        Vector2 startPos = sPos.cpy();
-
-        // Find angle from direction vector
-        float angle = (float)(Math.atan2(rayDir.y, rayDir.x));
-
-        // Find the tile on which the player is
-        // Using this vector find the grid position of the ray
-        int posX = (int)(startPos.x / cellSize.x);
-        int posY = (int)(startPos.y / cellSize.y);
-
-        // If it goes out of screen for X or Y axis stop going further
-        if(posX < 0) posX = 0; if(posX > mapSize.x - 1) posX = (int)mapSize.x - 1;
-        if(posY < 0) posY = 0; if(posY > mapSize.y - 1) posY = (int)mapSize.y - 1;
-
-        // Create variables that will hold the value of the length from player till
-        // the current position of the ray for both travelling on X and Y axis
-        float currLenDeltaX;
-        float currLenDeltaY;
-
-        // Calculate the step on the length when moving on X and Y axis
-        float stepDeltaX = (float)Math.abs(cellSize.x / Math.cos(angle));
-        float stepDeltaY = (float)Math.abs(cellSize.y / Math.sin(angle));
-
-        // Calculate the initial values (before starting the actual DDA)
-        // If ray's direction vector x value is > 0 then this means
-        // that when travelling on X axis the ray will go to the right
-        // If it is < 0 then it will go to the left
-        if(rayDir.x > 0) {
-            float rightBarrier = cellSize.x * (posX + 1);
-            float deltaX = rightBarrier - startPos.x;
-            currLenDeltaX = deltaX / (float)Math.cos(angle);
-        }
-        else {
-            float leftBarrier = cellSize.x * posX;
-            float deltaX = leftBarrier - startPos.x;
-            currLenDeltaX = deltaX / (float)Math.cos(angle);
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            View3D view = multiView.getView(i);
+            profiler.record(PROFILE_VIEWS[i], view.getFloorNanos() + view.getDrawNanos());
         }
 
-        // Similar way when rayDir.y > 0 then the ray will move down
-        // and when rayDir.y < 0 then the ray will move up
-        if(rayDir.y > 0) {
-            float downBarrier = cellSize.y * (posY + 1);
-            float deltaY = downBarrier - startPos.y;
-            currLenDeltaY = deltaY / (float)Math.sin(angle);
-        }
-        else {
-            float topBarrier = cellSize.y * posY;
-            float deltaY = topBarrier - startPos.y;
-            currLenDeltaY = deltaY / (float)Math.sin(angle);
+        if(profiler.isEnabled()) {
+            profilerOverlay.draw(game.batch, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
         }
 
-        // Boolean variable that indicates that the ray hit a wall
-        boolean hit = false;
-
-        // Boolean variables that indicates if the hit was made
-        // on an X or Y axis wall
-        boolean movedOnXAxis;
-
-        // Vector that will hold the intersection between wall and ray
-        Vector2 rayEndPos = new Vector2();
-
-        // Perpendicular ray distance from player is stored here
-        float perpRayDistance = 0;
-        
-        // Euclidean ray distance from player is stored here
-        float euclRayDistance = 0;
-
-        // Boolean variable that knows if the ray hit a wall on X or Y axis
-        boolean rayHitSideValue = false;
-
-        // Stores the value of the wall that was hit
-        int rayValue = 0;
-
-        // Holds the value of the distance of the ray's position from the edge of cell
-        float rayTexturePosition = 0;
-
-        // Actual DDA starts here
-        while(!hit) {
-            // Always select to move on the direction which has the smallest length
-            if(currLenDeltaX < currLenDeltaY) {
-                // Move delta X
-                currLenDeltaX += stepDeltaX;
-                if(rayDir.x > 0) posX++;
-                else posX--;
-                movedOnXAxis = true;
-            }
-            else {
-                // Move delta Y
-                currLenDeltaY += stepDeltaY;
-                if(rayDir.y > 0) posY++;
-                else posY--;
-                movedOnXAxis = false;
-            }
-
-            // Check for collisions with walls
-            int currCellPos = (int)(posY * mapSize.x + posX);
-
-            if(map[currCellPos] > 0) {
-                hit = true;
-                if(movedOnXAxis) {
-                    // Calculate intersection based on currLenDeltaX
-                    rayEndPos = startPos.cpy().add(rayDir.cpy().scl(currLenDeltaX - stepDeltaX));
-                    euclRayDistance = (currLenDeltaX - stepDeltaX);
-                    perpRayDistance = euclRayDistance *
-                            (float)Math.cos(Math.toRadians(angleBetweenCameraAndRay));
-                    rayHitSideValue = true;
-                }
-                else {
-                    // Calculate intersection based on currLenDeltaY
-                    rayEndPos = startPos.cpy().add(rayDir.cpy().scl(currLenDeltaY - stepDeltaY));
-                    euclRayDistance = (currLenDeltaY - stepDeltaY);
-                    perpRayDistance = euclRayDistance *
-                            (float)Math.cos(Math.toRadians(angleBetweenCameraAndRay));
-                }
+        drawCallsLastFrame = game.batch.totalRenderCalls - drawCallsAtFrameStart;
+        profiler.end(PROFILE_FRAME);
 
-                // Save the type of the wall that was hit
-                rayValue = map[(int)(posY * mapSize.x + posX)];
-            }
+        if(isFirstFrame) {
+            isFirstFrame = false;
+            Gdx.app.log("Startup", String.format("First frame %.1f ms after start",
+                    (System.nanoTime() - game.startNanos) / 1e6));
         }
 
-        // Currently this check is useless because always it hit a wall
-        if(hit) {
-            // Draw line
-            game.batch.begin();
-            game.drawer.setColor(Color.WHITE);
-            game.drawer.line(startPos, rayEndPos);
-            game.batch.end();
+        if(resolutionScaler.update((System.nanoTime() - frameStart) / 1e9f)) {
+            applyResolution();
         }
+    }
 
-        // Draw yellow circles if space bar is clicked
-        if(isDrawingRayIntersections && hit) {
-            game.batch.begin();
-            game.drawer.setColor(Color.YELLOW);
-            game.drawer.circle(rayEndPos.x, rayEndPos.y, cellSize.x / 4);
-            game.batch.end();
+    // Tiles the 3D half of the window with the views and sizes every buffer for
+    // the resolution picked by the scaler, the same scale applies to every view.
+    // The buffers only grow, so going back and forth between resolutions does not allocate
+    void applyResolution() {
+        multiView.layout(viewWidth, 0, viewWidth, viewHeight, resolutionScaler);
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            frameStreams[i].resize(multiView.getView(i).getColumns(), multiView.getView(i).getRows());
         }
-
-        // Draw 3D screen
-        drawScreen3D(rayHitSideValue, perpRayDistance, rayIndex, rayValue, euclRayDistance, rayDir, posX, posY);
-
     }
 
-    void castRaySlowAlgo(Vector2 sPos, Vector2 rayDir, int index, float angleBetweenCameraAndRay) {
-        // Index represents the index of
-        // the current ray that is calculated
-
-        Vector2 startPos = new Vector2(sPos);
-        Vector2 dir = new Vector2(rayDir);
-
-        // Find angle from direction vector
-        float angle = (float)(Math.atan2(dir.y, dir.x));
-
-        // Get the slope of the line that connects the starting
-        // and the ending position of the ray
-        // Line for given x, then y = slope * (x - x0) + y0
-        // where (x0, y0) can be start or end position
-        float slope = dir.y / dir.x;
-
-        // For this delta distance, calculate
-        // delta movement on X axis
-        float deltaX = (float)Math.cos(angle) * SLOW_RAY_CASTER_DELTA_DISTANCE;
-
-        // Perform the checks
-        int i = 0;
-
-        Vector2 intersection = new Vector2();
-
-        boolean hitWall = false;
-
-        // Holds the perpendicular distance of the ray from the camera pane
-        float perpRayDistance = 0;
-
-        // Holds the euclidean distance of the ray from the camera pane
-        float euclRayDistance = 0;
-
-        // Grid current position of the ray
-        int gridX = 0;
-        int gridY = 0;
-
-        // Holds the value of the cell that was hit by the ray (and was a wall)
-        int rayValue = 0;
-
-        while(!hitWall) {
-            // On each step find the current x position of the ray
-            float currX = startPos.x + deltaX * i;
-
-            // Using the line's coordinates constructor
-            // find the current y position of the ray
-            float currY = slope * (currX - startPos.x) + startPos.y;
-
-            // Create a vector for the current position
-            Vector2 point = new Vector2(currX, currY);
-
-            // Using this vector to find the grid position of the ray
-            gridX = (int)(point.x / cellSize.x);
-            gridY = (int)(point.y / cellSize.y);
-
-            // If it goes out of screen for X or Y axis stop going further
-            if(gridX < 0) gridX = 0; if(gridX > mapSize.x - 1) gridX = (int)mapSize.x - 1;
-            if(gridY < 0) gridY = 0; if(gridY > mapSize.y - 1) gridY = (int)mapSize.y - 1;
-
-            int cellPos = (int)(gridY * mapSize.x + gridX);
-            if(cellPos >= 0 && cellPos <= mapSize.x * mapSize.y - 1) {
-                int value = map[cellPos];
-                // If value is 1 then ray hit a wall
-                if(value > 0) {
-                    hitWall = true;
-                    intersection = point;
-                    // Save the map value of the current intersection
-                    rayValue = map[cellPos];
-                }
-                else {
-                    intersection = point;
-                }
-                i++;
+    void countFps(float delta) {
+        int fps = (int)(1 / delta);
+        if(fpsCounterInterval >= UPDATE_FPS_INTERVAL) {
+            // Only this once per interval update creates a new string
+            titleBuilder.setLength(0);
+            long bytesUploaded = 0;
+            for(int i = 0; i < multiView.getViewCount(); i++) {
+                bytesUploaded += frameStreams[i].getBytesUploadedLastFrame();
             }
+            View3D playerView = multiView.getView(0);
+            titleBuilder.append("RayCasting - FPS: ").append(fps).append(" - Upload: ")
+                    .append(bytesUploaded / 1024).append(" KB/frame")
+                    .append(" - Draw calls: ").append(drawCallsLastFrame)
+                    .append(" (walls: ").append(wallDrawCallsLastFrame).append(")")
+                    .append(" - 3D: ").append(playerView.getColumns()).append("x").append(playerView.getRows())
+                    .append(" - Views: ").append(multiView.getViewCount());
+            Gdx.graphics.setTitle(titleBuilder.toString());
+            if(profiler.isEnabled()) profilerOverlay.refresh();
+            fpsCounterInterval = 0;
         }
+        else {
+            fpsCounterInterval += delta;
+        }
+    }
 
-        // We know that ray hit cell at [gridX, gridY];
-        // Find the borders of this cell and check if the intersection is
-        // on up or down border which means that it did not hit a side
-        float pixDelta = 1;
-        float upBorder = cellSize.y * gridY;
-        float downBorder = cellSize.y * (gridY + 1);
-
-        boolean rayHitSideValue = (!(intersection.y > upBorder - pixDelta) || !(intersection.y < upBorder + pixDelta)) &&
-                (!(intersection.y > downBorder - pixDelta) || !(intersection.y < downBorder + pixDelta));
-
-
-        // Store the distance between the starting position
-        // and the intersection on the specific index in the array
-        // In order to fix fish-eye-effect instead of using
-        // the euclidean distance we have to multiply it
-        // by the cosine of the angle between the current ray
-        // and the direction of the camera
-        // Also store the euclidean distance
-        euclRayDistance = intersection.dst(startPos);
-        perpRayDistance = euclRayDistance * (float)Math.cos(Math.toRadians(angleBetweenCameraAndRay));
-
-        // Draw ray
+    // Rays of the player's view
+    void drawRays2D() {
+        RayHits rayHits = multiView.getView(0).hits;
+        int rayCount = multiView.getView(0).rays.count;
         game.batch.begin();
-        game.drawer.setColor(Color.WHITE);
-        game.drawer.line(startPos, intersection);
-        game.batch.end();
+        for(int i = 0; i < rayCount; i++) {
+            // Draw line
+            game.drawer.setColor(Color.WHITE);
+            game.drawer.line(player.x, player.y, rayHits.hitX[i], rayHits.hitY[i]);
 
-        // Draw the ray intersection if wall has been hit
-        if(isDrawingRayIntersections && hitWall) {
-            game.batch.begin();
-            game.drawer.setColor(Color.YELLOW);
-            game.drawer.circle(intersection.x, intersection.y, cellSize.x / 4);
-            game.batch.end();
+            // Draw yellow circles if space bar is clicked
+            if(isDrawingRayIntersections && rayHits.cellValue[i] > 0) {
+                game.drawer.setColor(Color.YELLOW);
+                game.drawer.circle(rayHits.hitX[i], rayHits.hitY[i], cellSize.x / 4);
+            }
         }
-
-        // Draw 3D screen
-        drawScreen3D(rayHitSideValue, perpRayDistance, index, rayValue, euclRayDistance, rayDir, gridX, gridY);
+        game.batch.end();
     }
 
-    void drawScreen3D(boolean rayHitSideValue, float perpRayDistance, int rayIndex, int rayValue, float euclRayDistance, Vector2 rayDir, int rayPosX, int rayPosY) {
-        // Calculate the number of pixels that each column of the 3D contains
-        float pixelsOfEachCol = Gdx.graphics.getWidth() / 2f / NUM_OF_RAYS;
-
-        // If the ray hit the Y-Axis then make the wall a bit darker
-        // This makes the 3D screen looking better, visually
-        float alpha = (rayHitSideValue) ? 0.7f : 1;
-
-        // Calculate the height of the column of the 3D screen
-        // This is calculated by dividing the maximum height of the screen
-        // by the perpendicular distance of the intersection from the camera pane
-        // Also, we multiply this by a final variable, to make the walls higher
-        float rectangleHeight = 30 * Gdx.graphics.getHeight() / perpRayDistance;
-
-        // Offset on the X-Axis of the screen is calculated
-        // (This applies only when both 2D and 3D worlds are drawn
-        float xOffset = Gdx.graphics.getWidth() / 2f;
-
-        // Create the centered rectangle of the wall
-        Rectangle rectangle = new CenteredRectangle(xOffset + rayIndex * pixelsOfEachCol + pixelsOfEachCol / 2,
-                Gdx.graphics.getHeight() / 2f, pixelsOfEachCol, rectangleHeight);
-
-        // Removing 1 because value 0 means that
-        // we do not draw anything and value 1 is the
-        // corresponding value for texture at index 0
-        int textureIndex = rayValue - 1;
-
-        // Calculate where exactly the wall was hit
-        float distanceFromEdgeRatio;
-
-        // Find intersection between ray and wall
-        Vector2 intersection = player.cpy().add(rayDir.cpy().scl(euclRayDistance));
-
-        if(rayHitSideValue) {
-            // Find distance from top
-            float topY = rayPosY * cellSize.y;
-            distanceFromEdgeRatio = (intersection.y - topY) / cellSize.y;
-        }
-        else {
-            // Find distance from right
-            float topX = (rayPosX + 1) * cellSize.x;
-            distanceFromEdgeRatio = (topX - intersection.x) / cellSize.x;
+    void drawFloorAndCeiling3D() {
+        // Every view uploads its own background, they are drawn in one batch
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            frameStreams[i].update(multiView.getView(i).getBackground().getPixels());
         }
 
-        // Calculate X coordinate on the texture
-        int texX = (int)(distanceFromEdgeRatio * TEXTURE_WIDTH);
-
-        TextureRegion wallRegion = new TextureRegion(textures[textureIndex], texX, 0, Gdx.graphics.getWidth() / (2 * NUM_OF_RAYS), 64);
-
         game.batch.begin();
-        game.batch.setColor(alpha, alpha, alpha, 1);
-        game.batch.draw(wallRegion, rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+        game.batch.setColor(floorAndCeilingFilterColor);
+        drawFrameStreams();
         game.batch.end();
-
     }
 
-    void drawFloorAndCeiling3D() {
-        int posX = (int)(player.x / cellSize.x);
-        int posY = (int)(player.y / cellSize.y);
-        int offX = (int)((player.x / cellSize.x - posX) * TEXTURE_WIDTH);
-        int offY = (int)((player.y / cellSize.y - posY) * TEXTURE_HEIGHT);
-
-        for(int y = 0; y < Gdx.graphics.getHeight(); y++) {
-            // Ray direction for left most and right most rays
-            Vector2 rayDir0 = playerDir.cpy().rotateDeg(-FOV / 2);
-            Vector2 rayDir1 = playerDir.cpy().rotateDeg(FOV / 2);
-
-            // Current y position compared to the center of the screen
-            int p = y - Gdx.graphics.getHeight() / 2;
-
-            // Vertical position of the camera
-            float posZ = 0.5f * Gdx.graphics.getHeight();
-
-            // Horizontal distance from the camera to the floor for the current row
-            // 0.5 is the z position exactly in the middle between floor and ceiling
-            float rowDistance = posZ / p;
-
-            // Calculate the real world step vector we have to add for each x (parallel to camera plane)
-            // adding step by step avoids multiplications with a weight in the inner loop
-            float floorStepX = rowDistance * (rayDir1.x - rayDir0.x) / (Gdx.graphics.getWidth() / 2f);
-            float floorStepY = rowDistance * (rayDir1.y - rayDir0.y) / (Gdx.graphics.getWidth() / 2f);
-
-            // Real world coordinates of the leftmost column. This will be updated as we step to the right
-            float floorX = posX + rowDistance * rayDir0.x;
-            float floorY = posY + rowDistance * rayDir0.y;
-
-            for(int x = Gdx.graphics.getWidth() / 2; x < Gdx.graphics.getWidth(); ++x)
-            {
-                // The cell coordinate is simply got from the integer parts of floorX and floorY
-                int cellX = (int)(floorX);
-                int cellY = (int)(floorY);
-
-                if((y >= Gdx.graphics.getHeight() / 2)) { // Drawing ceiling
-                    // Get the texture coordinate from the fractional part
-                    int tx = offX + (int)(TEXTURE_WIDTH * (floorX - cellX)) & (TEXTURE_WIDTH - 1);
-                    int ty = offY + (int)(TEXTURE_HEIGHT * (floorY - cellY)) & (TEXTURE_HEIGHT - 1);
-                    floorAndCeilingPixelsData[y * Gdx.graphics.getWidth() / 2 + x - Gdx.graphics.getWidth() / 2] =
-                            ceilingPixmap.getPixel(tx, ty);
-                }
-                else { // Drawing floor
-                    // Get the texture coordinate from the fractional part
-                    int tx = -offX + (int)(TEXTURE_WIDTH * (floorX - cellX)) & (TEXTURE_WIDTH - 1);
-                    int ty = -offY + (int)(TEXTURE_HEIGHT * (floorY - cellY)) & (TEXTURE_HEIGHT - 1);
-                    floorAndCeilingPixelsData[y * Gdx.graphics.getWidth() / 2 + x - Gdx.graphics.getWidth() / 2] =
-                            floorPixmap.getPixel(tx, ty);
-                }
-
-                floorX += floorStepX;
-                floorY += floorStepY;
-            }
+    void drawSoftwareFrame3D() {
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            frameStreams[i].update(multiView.getView(i).getFrame().getPixels());
         }
 
-        ByteBufferHandler.put_ints(floorAndCeilingByteBuffer, floorAndCeilingPixelsData);
-        backgroundPixmap.setPixels(floorAndCeilingByteBuffer);
-        backgroundTexture = new Texture(backgroundPixmap);
-
+        // Shading is already baked into the texels
         game.batch.begin();
-        game.batch.setColor(floorAndCeilingFilterColor);
-        game.batch.draw(backgroundTexture, Gdx.graphics.getWidth() / 2f, 0);
+        game.batch.setColor(Color.WHITE);
+        drawFrameStreams();
         game.batch.end();
     }
 
-    void drawMap2D() {
-        for(int y = 0; y < mapSize.y; y++) {
-            for(int x = 0; x < mapSize.x; x++) {
-                int cell = map[(int) (y * mapSize.x + x)];
-                game.batch.begin();
-                // If cell has value bigger than 0, draw a color inside it
-                if(cell == 1)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.ORANGE);
-                else if(cell == 2)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.RED);
-                else if(cell == 3)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.PURPLE);
-                else if(cell == 4)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.GRAY);
-                else if(cell == 5)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.BLUE);
-                else if(cell == 6)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.YELLOW);
-                else if(cell == 7)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.BROWN);
-                else if(cell == 8)
-                    game.drawer.filledRectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.MAROON);
-                // Draw cell boundary
-                game.drawer.rectangle(x * cellSize.x, y * cellSize.y, cellSize.x, cellSize.y, Color.DARK_GRAY);
-                game.batch.end();
-            }
+    void drawFrameStreams() {
+        // Stretches the internal resolution of each view over its part of the screen
+        for(int i = 0; i < multiView.getViewCount(); i++) {
+            View3D view = multiView.getView(i);
+            StreamingTexture frameStream = frameStreams[i];
+            game.batch.draw(frameStream.getTexture(), view.getScreenX(), view.getScreenY(),
+                    view.getScreenWidth(), view.getScreenHeight(),
+                    0, 0, frameStream.getWidth(), frameStream.getHeight(), false, false);
         }
     }
 
-    void detectCollisions(Vector2 playerPosition) {
-        // Check if new position is valid
-        // Find the tile that the new position is into
-        // if it is a wall do not let it move
-        Vector2 playerNewPositionCell = new Vector2((float)Math.floor(playerPosition.x / cellSize.x),
-                (float)Math.floor(playerPosition.y / cellSize.y));
-        if(map[(int)(playerNewPositionCell.y * mapSize.x + playerNewPositionCell.x)] == 0) {
-            player = playerPosition;
-        }
-        // If the new position is invalid
-        // Check if only moving left/right is valid
-        else {
-            Vector2 playerPositionCpy = player.cpy();
-            playerPositionCpy.x = playerPosition.x;
-            // Check if position with only x added is valid
-            playerNewPositionCell = new Vector2((float)Math.floor(playerPositionCpy.x / cellSize.x),
-                    (float)Math.floor(playerPositionCpy.y / cellSize.y));
-            if(map[(int)(playerNewPositionCell.y * mapSize.x + playerNewPositionCell.x)] <= 0) {
-                player = playerPositionCpy;
-            }
-            // If new position is invalid and
-            // moving left or right is invalid
-            // Check if only moving up/down is valid
-            else {
-                playerPositionCpy = player.cpy();
-                playerPositionCpy.y = playerPosition.y;
-                // Check if position with only y added is valid
-                playerNewPositionCell = new Vector2((float)Math.floor(playerPositionCpy.x / cellSize.x),
-                        (float)Math.floor(playerPositionCpy.y / cellSize.y));
-                if(map[(int)(playerNewPositionCell.y * mapSize.x + playerNewPositionCell.x)] == 0) {
-                    player = playerPositionCpy;
-                }
-            }
-        }
+    void drawMap2D() {
+        // Only the cells painted since the last frame are redrawn
+        minimap.update();
+
+        game.batch.begin();
+        game.batch.setColor(Color.WHITE);
+        minimap.draw(game.batch);
+        game.batch.end();
     }
 
     void drawPlayer2D() {
         game.batch.begin();
         game.drawer.filledCircle(player, cellSize.x / 4, Color.RED);
+        // Spectators of the views that are shown
+        for(int i = 2; i < multiView.getViewCount(); i++) {
+            game.drawer.filledCircle(spectatorPositions[i], cellSize.x / 4, Color.CYAN);
+        }
         game.batch.end();
     }
 
@@ -660,29 +522,39 @@ public class GameScreen implements Screen {
         game.batch.end();
     }
 
-    void initializeMap() throws IOException {
-        GridSetup gridSetup = new GridSetup(LEVEL_MAP_PATH, (int)mapSize.y, (int)mapSize.x);
-        map = gridSetup.getGrid();
+    void writeProfile() {
+        // Only runs that were profiled leave a file behind
+        if(!profiler.hasSamples()) return;
+        FileHandle file = Gdx.files.local(PROFILE_CSV_FILE);
+        try(Writer writer = file.writer(false, "UTF-8")) {
+            profiler.writeCsv(writer);
+            Gdx.app.log("Profiler", "Wrote " + file.file().getAbsolutePath());
+        } catch (IOException e) {
+            Gdx.app.error("Profiler", "Could not write " + PROFILE_CSV_FILE, e);
+        }
     }
 
-    void loadTextures() {
-        textures = new Texture[NUMBER_OF_TEXTURES];
-        textures[0] = new Texture(Gdx.files.internal("textures/eagle.png"));
-        textures[1] = new Texture(Gdx.files.internal("textures/redbrick.png"));
-        textures[2] = new Texture(Gdx.files.internal("textures/purplestone.png"));
-        textures[3] = new Texture(Gdx.files.internal("textures/greystone.png"));
-        textures[4] = new Texture(Gdx.files.internal("textures/bluestone.png"));
-        textures[5] = new Texture(Gdx.files.internal("textures/mossy.png"));
-        textures[6] = new Texture(Gdx.files.internal("textures/wood.png"));
-        textures[7] = new Texture(Gdx.files.internal("textures/colorstone.png"));
-        textures[8] = new Texture(Gdx.files.internal("textures/pillar.png"));
-        textures[9] = new Texture(Gdx.files.internal("textures/greenlight.png"));
-        textures[10] = new Texture(Gdx.files.internal("textures/barrel.png"));
+    void closeInputRecorder() {
+        if(inputRecorder == null) return;
+        try {
+            inputRecorder.close();
+            Gdx.app.log("Input", "Recorded " + inputRecorder.getFrameCount() + " frames to "
+                    + game.inputRecordFile.getAbsolutePath());
+        } catch (IOException e) {
+            Gdx.app.error("Input", "Could not record to " + game.inputRecordFile, e);
+        }
     }
 
     @Override
     public void resize(int width, int height) {
-
+        // Minimized windows report a size of 0
+        if(width == 0 || height == 0) return;
+        camera.setToOrtho(true, width, height);
+        viewWidth = width / 2;
+        viewHeight = height;
+        // Start again from the full resolution of the new view
+        resolutionScaler.reset();
+        applyResolution();
     }
 
     @Override
@@ -702,12 +574,13 @@ public class GameScreen implements Screen {
 
     @Override
     public void dispose() {
-        for(Texture texture: textures) {
-            texture.dispose();
+        writeProfile();
+        closeInputRecorder();
+        wallMesh.dispose();
+        for(StreamingTexture frameStream: frameStreams) {
+            if(frameStream != null) frameStream.dispose();
         }
-        backgroundPixmap.dispose();
-        backgroundTexture.dispose();
-        ceilingPixmap.dispose();
-        floorPixmap.dispose();
+        minimap.dispose();
+        workerPool.shutdown();
     }
 }
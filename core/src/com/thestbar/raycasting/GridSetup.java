@@ -1,37 +1,23 @@
 package com.thestbar.raycasting;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import com.thestbar.raycasting.map.LevelData;
+import com.thestbar.raycasting.map.LevelTextParser;
+
+import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class GridSetup {
-    private BufferedReader bufferedReader;
     private int[] grid;
 
     public GridSetup(String mapFileName, int gridHeight, int gridWidth) throws IOException {
-        List<String> listOfStrings = new ArrayList<>();
-        bufferedReader = new BufferedReader(new FileReader(mapFileName));
-        String line = bufferedReader.readLine();
-
-        while(line != null) {
-            listOfStrings.add(line);
-            line = bufferedReader.readLine();
+        // The parser finds the size of the level on its own, the expected size is only checked
+        LevelData level = LevelTextParser.parse(new File(mapFileName), 1, 1);
+        if(level.getWidth() != gridWidth || level.getHeight() != gridHeight) {
+            throw new IOException(mapFileName + " is " + level.getWidth() + "x" + level.getHeight()
+                    + ", expected " + gridWidth + "x" + gridHeight);
         }
-
-        bufferedReader.close();
-
         grid = new int[gridHeight * gridWidth];
-        int index = 0;
-
-        for(String s: listOfStrings) {
-            char[] a = s.toCharArray();
-            for(char c: a) {
-                if(c != ',' && c != ' ')
-                    grid[index++] = c - '0';
-            }
-        }
+        level.getCells().get(grid);
     }
 
     public int[] getGrid() {
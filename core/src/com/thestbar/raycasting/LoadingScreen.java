@@ -0,0 +1,94 @@
+package com.thestbar.raycasting;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.ScreenUtils;
+
+import java.io.IOException;
+
+// Shown while the GameLoader works. Each frame it lets the loader do its next
+// upload and draws a progress bar, then hands over to the game screen
+public class LoadingScreen implements Screen {
+    private final RayCasting game;
+    private final GameLoader loader;
+    private final OrthographicCamera camera = new OrthographicCamera();
+    private final BitmapFont font;
+    private final float BAR_WIDTH = 400;
+    private final float BAR_HEIGHT = 20;
+    private boolean isFirstFrame = true;
+
+    public LoadingScreen(RayCasting game, GameLoader loader) {
+        this.game = game;
+        this.loader = loader;
+        this.font = game.skin.getFont("default-font");
+        camera.setToOrtho(false);
+    }
+
+    @Override
+    public void show() {
+
+    }
+
+    @Override
+    public void render(float delta) {
+        GameScreen screen;
+        try {
+            screen = loader.update();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if(screen != null) {
+            game.setScreen(screen);
+            return;
+        }
+
+        ScreenUtils.clear(0, 0, 0, 1);
+        float progress = loader.getProgress();
+        float x = (camera.viewportWidth - BAR_WIDTH) / 2;
+        float y = (camera.viewportHeight - BAR_HEIGHT) / 2;
+
+        game.batch.setProjectionMatrix(camera.combined);
+        game.batch.begin();
+        game.drawer.setColor(Color.DARK_GRAY);
+        game.drawer.filledRectangle(x, y, BAR_WIDTH, BAR_HEIGHT);
+        game.drawer.setColor(Color.WHITE);
+        game.drawer.filledRectangle(x, y, BAR_WIDTH * progress, BAR_HEIGHT);
+        font.draw(game.batch, "Loading " + (int)(progress * 100) + "%", x, y + BAR_HEIGHT * 2.5f);
+        game.batch.end();
+
+        if(isFirstFrame) {
+            isFirstFrame = false;
+            Gdx.app.log("Startup", String.format("Loading screen %.1f ms after start",
+                    (System.nanoTime() - game.startNanos) / 1e6));
+        }
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        if(width == 0 || height == 0) return;
+        camera.setToOrtho(false, width, height);
+    }
+
+    @Override
+    public void pause() {
+
+    }
+
+    @Override
+    public void resume() {
+
+    }
+
+    @Override
+    public void hide() {
+
+    }
+
+    @Override
+    public void dispose() {
+        loader.dispose();
+    }
+}
@@ -11,7 +11,7 @@ import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
-import java.io.IOException;
+import java.io.File;
 
 public class RayCasting extends Game {
     protected PolygonSpriteBatch batch;
@@ -20,11 +20,33 @@ public class RayCasting extends Game {
 	protected ShapeDrawer drawer;
 	protected BitmapFont font;
 	protected Skin skin;
+	// Input trace to write the session to and to play instead of the keyboard and mouse, may be null
+	protected final File inputRecordFile;
+	protected final File inputReplayFile;
+	// Where the files baked on the first run are kept, null for the cache folder of the app's local storage
+	protected final File cacheDirectory;
+	// When create() started, the times to the first frames are measured from here
+	protected long startNanos;
+	private final String LEVEL_MAP_PATH = "./assets/levelMaps/Level3_Map.lvl"; // Contains the Path to current level
+
+	public RayCasting() {
+		this(null, null, null);
+	}
+
+	public RayCasting(File inputRecordFile, File inputReplayFile, File cacheDirectory) {
+		this.inputRecordFile = inputRecordFile;
+		this.inputReplayFile = inputReplayFile;
+		this.cacheDirectory = cacheDirectory;
+	}
 	
 	@Override
 	public void create () {
+		startNanos = System.nanoTime();
+
 		// Initialize sprite batch
-		batch = new PolygonSpriteBatch();
+		// Big enough for the quads of all the wall columns, so the
+		// wall mesh of a frame is drawn without splitting it up
+		batch = new PolygonSpriteBatch(8191);
 
 		// Initialize texture region used in shape drawer
 		// this texture region is just a white pixel, so it can
@@ -48,11 +70,8 @@ public class RayCasting extends Game {
 		// Initialize skin item
 		skin = new Skin(Gdx.files.internal("ui/uiskin.json"));
 
-		try {
-			this.setScreen(new GameScreen(this));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		// The textures and the level load on worker threads while the loading screen is drawn
+		this.setScreen(new LoadingScreen(this, new GameLoader(this, LEVEL_MAP_PATH)));
 	}
 
 	@Override
@@ -62,6 +81,8 @@ public class RayCasting extends Game {
 
 	@Override
 	public void dispose () {
+		// Game only hides the screen on exit, it has resources (and the profile) of its own
+		if(getScreen() != null) getScreen().dispose();
 		whitePixel.dispose();
 		font.dispose();
 		batch.dispose();
@@ -0,0 +1,196 @@
+package com.thestbar.raycasting;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.input.InputFrame;
+import com.thestbar.raycasting.map.DistanceField;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.LevelData;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibilitySet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+// The state of the game that the input changes: the level with its distance
+// field and sprites, and the player. It only reads the InputFrame it is given
+// and never Gdx, so the same input always leads to the same state, with or
+// without a window
+public class World {
+    private final Vector2 player = new Vector2(300, 40);
+    private final Vector2 playerDir = new Vector2(1, 0);
+    private float playerMovementSpeed = 100;
+    private float playerRotationMovementSpeed = 150;
+    private final String levelPath;
+    // Size of a cell in world units, taken from the level when it stores one
+    private final Vector2 cellSize = new Vector2(30, 30);
+    private final GridMap gridMap;
+    // Colors of the cell values on the 2D map, empty for levels that do not store any
+    private final int[] palette;
+    // Empty space around each cell, used by the DDA caster that skips it
+    private final DistanceField distanceField;
+    // Cells that can be seen from each empty cell, baked next to the level,
+    // null when the level has no up to date visibility file
+    private final VisibilitySet visibility;
+    // Billboards scattered over the empty cells of the level
+    private final Sprites sprites = new Sprites();
+    // Cell values of the textures used by sprites: pillar, greenlight and barrel
+    private final int[] SPRITE_TEXTURES = { 9, 10, 11 };
+    private final float SPRITES_PER_EMPTY_CELL = 0.25f;
+    private final long SPRITE_SEED = 42;
+
+    public World(String levelPath) throws IOException {
+        this.levelPath = levelPath;
+        // Binary levels are memory mapped, text levels are parsed, both know their own size
+        LevelData level = LevelData.load(new File(levelPath), cellSize.x, cellSize.y);
+        cellSize.set(level.getCellWidth(), level.getCellHeight());
+        gridMap = level.toGridMap();
+        distanceField = new DistanceField(gridMap);
+        gridMap.addChangeListener(distanceField);
+        palette = level.getPalette();
+        visibility = loadVisibility(new File(levelPath));
+        if(visibility != null) {
+            gridMap.addChangeListener(visibility);
+        }
+        initializeSprites();
+    }
+
+    // The baked sets are only used when they were cast from the cells the level has now
+    private VisibilitySet loadVisibility(File levelFile) throws IOException {
+        File visibilityFile = VisibilitySet.fileFor(levelFile);
+        if(!VisibilitySet.isUpToDate(visibilityFile, gridMap, VisibilitySet.checksum(gridMap))) return null;
+        return VisibilitySet.read(visibilityFile, gridMap);
+    }
+
+    void initializeSprites() {
+        // Same sprites on every run, at random spots inside the empty cells
+        Random random = new Random(SPRITE_SEED);
+        sprites.clear();
+        for(int y = 0; y < gridMap.getHeight(); y++) {
+            for(int x = 0; x < gridMap.getWidth(); x++) {
+                if(gridMap.get(x, y) != 0 || random.nextFloat() >= SPRITES_PER_EMPTY_CELL) continue;
+                sprites.add((x + random.nextFloat()) * cellSize.x, (y + random.nextFloat()) * cellSize.y,
+                        SPRITE_TEXTURES[random.nextInt(SPRITE_TEXTURES.length)]);
+            }
+        }
+    }
+
+    // Applies the painting and the movement of one frame, then publishes the
+    // changed cells of the frame to the listeners of the map
+    public void update(InputFrame input) {
+        float deltaTime = input.delta;
+
+        int cellX = (int)Math.floor(input.mouseX / cellSize.x);
+        int cellY = (int)Math.floor(input.mouseY / cellSize.y);
+
+        // Paint with right mouse button "solid" tiles
+        if(input.isHeld(InputFrame.PAINT) && gridMap.isInside(cellX, cellY) && gridMap.get(cellX, cellY) != 1) {
+            gridMap.set(cellX, cellY, 1);
+        }
+
+        // Start from player's current position
+        float newX = player.x;
+        float newY = player.y;
+        float step = playerMovementSpeed * deltaTime;
+
+        // Move "player" position
+        // Behind, left and right of the player are the direction
+        // vector rotated by 180, -90 and 90 degrees
+        if(input.isHeld(InputFrame.MOVE_FORWARD)) {
+            newX += playerDir.x * step;
+            newY += playerDir.y * step;
+        }
+        else if(input.isHeld(InputFrame.MOVE_BACKWARD)) {
+            newX -= playerDir.x * step;
+            newY -= playerDir.y * step;
+        }
+        if(input.isHeld(InputFrame.TURN_LEFT)) {
+            playerDir.rotateDeg(-deltaTime * playerRotationMovementSpeed);
+        }
+        else if(input.isHeld(InputFrame.TURN_RIGHT)) {
+            playerDir.rotateDeg(deltaTime * playerRotationMovementSpeed);
+        }
+        if(input.isHeld(InputFrame.STRAFE_LEFT)) {
+            newX += playerDir.y * step;
+            newY -= playerDir.x * step;
+        }
+        else if(input.isHeld(InputFrame.STRAFE_RIGHT)) {
+            newX -= playerDir.y * step;
+            newY += playerDir.x * step;
+        }
+
+        detectCollisions(newX, newY);
+
+        // Edits of the frame, from painting or from anything else that changed
+        // the map since the last update, reach the distance field and the rest here
+        gridMap.publishChanges();
+    }
+
+    void detectCollisions(float newX, float newY) {
+        // Check if new position is valid
+        // Find the tile that the new position is into
+        // if it is a wall do not let it move
+        if(isEmptyCell(newX, newY)) {
+            player.set(newX, newY);
+        }
+        // If the new position is invalid
+        // Check if only moving left/right is valid
+        else if(isEmptyCell(newX, player.y)) {
+            player.x = newX;
+        }
+        // If new position is invalid and
+        // moving left or right is invalid
+        // Check if only moving up/down is valid
+        else if(isEmptyCell(player.x, newY)) {
+            player.y = newY;
+        }
+    }
+
+    boolean isEmptyCell(float x, float y) {
+        int cellX = (int)Math.floor(x / cellSize.x);
+        int cellY = (int)Math.floor(y / cellSize.y);
+        return gridMap.isInside(cellX, cellY) && gridMap.get(cellX, cellY) == 0;
+    }
+
+    // Puts the player somewhere else, used to start a replay where its recording started
+    public void setPlayer(float x, float y, float dirX, float dirY) {
+        player.set(x, y);
+        playerDir.set(dirX, dirY);
+    }
+
+    public Vector2 getPlayer() {
+        return player;
+    }
+
+    public Vector2 getPlayerDir() {
+        return playerDir;
+    }
+
+    public Vector2 getCellSize() {
+        return cellSize;
+    }
+
+    public String getLevelPath() {
+        return levelPath;
+    }
+
+    public GridMap getGridMap() {
+        return gridMap;
+    }
+
+    public int[] getPalette() {
+        return palette;
+    }
+
+    public DistanceField getDistanceField() {
+        return distanceField;
+    }
+
+    public Sprites getSprites() {
+        return sprites;
+    }
+
+    public VisibilitySet getVisibility() {
+        return visibility;
+    }
+}
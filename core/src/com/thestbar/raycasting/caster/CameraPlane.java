@@ -0,0 +1,76 @@
+package com.thestbar.raycasting.caster;
+
+import com.badlogic.gdx.math.Vector2;
+
+// Camera made of a direction vector and a plane perpendicular to it. The
+// ray of a column goes from the camera through its point on the plane, so
+// the columns are evenly spaced on the screen instead of by angle, and the
+// distance along the direction vector is the perpendicular (fish-eye free)
+// distance. Everything that only depends on the FOV and the number of
+// columns is kept in per column tables, which are rebuilt only when one of
+// them changes, so a frame needs no trigonometry at all
+public class CameraPlane {
+    // Unit direction the camera looks at
+    public float dirX;
+    public float dirY;
+    // Half of the camera plane, from the direction vector to the right edge of the screen
+    public float planeX;
+    public float planeY;
+
+    private int columns = -1;
+    private float fov = Float.NaN;
+    // tan(fov / 2), the length of the half plane for a unit direction
+    private float planeLength;
+    // Position of each column's center on the plane, from -1 (left edge) to 1 (right edge)
+    private float[] planeOffset = new float[0];
+    // 1 / length of each column's ray direction, which is also the cosine of
+    // the angle between the ray and the direction vector
+    private float[] inverseLength = new float[0];
+
+    public void set(Vector2 direction, float fov, int columns) {
+        if(columns != this.columns || fov != this.fov) {
+            buildTables(fov, columns);
+        }
+        dirX = direction.x;
+        dirY = direction.y;
+        // Perpendicular of the direction, on the side that the rays sweep towards
+        planeX = -dirY * planeLength;
+        planeY = dirX * planeLength;
+    }
+
+    private void buildTables(float fov, int columns) {
+        if(planeOffset.length < columns) {
+            planeOffset = new float[columns];
+            inverseLength = new float[columns];
+        }
+        planeLength = (float)Math.tan(Math.toRadians(fov / 2));
+        for(int i = 0; i < columns; i++) {
+            planeOffset[i] = 2f * (i + 0.5f) / columns - 1;
+            float offset = planeOffset[i] * planeLength;
+            inverseLength[i] = (float)(1 / Math.sqrt(1 + offset * offset));
+        }
+        this.columns = columns;
+        this.fov = fov;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public float getFov() {
+        return fov;
+    }
+
+    // tan(fov / 2), half the width of the view at a distance of 1
+    public float getPlaneLength() {
+        return planeLength;
+    }
+
+    public float getPlaneOffset(int column) {
+        return planeOffset[column];
+    }
+
+    public float getInverseLength(int column) {
+        return inverseLength[column];
+    }
+}
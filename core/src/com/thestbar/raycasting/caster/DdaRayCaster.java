@@ -0,0 +1,210 @@
+package com.thestbar.raycasting.caster;
+
+import com.thestbar.raycasting.map.DistanceField;
+import com.thestbar.raycasting.map.GridMap;
+
+// Digital Differential Analyzer: jumps from grid line to grid line,
+// so each step of the ray enters exactly one new cell
+// With a DistanceField it skips the empty space around the ray: when every
+// cell within r cells of the ray's cell is empty, all the grid lines that
+// keep the ray inside that square are crossed at once. The lengths of the
+// crossings are computed from their count, the same way for single steps and
+// for jumps, so the hits are exactly the ones of the plain DDA. Rays stop
+// without a wall past Rays.maxDistance
+public class DdaRayCaster implements RayCaster {
+    // Jumps over fewer cells than this are not worth the extra work
+    private static final int MIN_SKIP_RADIUS = 2;
+
+    private final DistanceField distanceField;
+
+    public DdaRayCaster() {
+        this(null);
+    }
+
+    public DdaRayCaster(DistanceField distanceField) {
+        this.distanceField = distanceField;
+    }
+
+    @Override
+    public String getName() {
+        return distanceField == null ? "DDA" : "DDA + empty space skipping";
+    }
+
+    @Override
+    public void cast(GridMap map, float originX, float originY, Rays rays, int fromColumn, int toColumn, RayHits hits) {
+        if(distanceField != null && distanceField.getMap() != map) {
+            throw new IllegalArgumentException("The distance field was built for another map");
+        }
+        for(int i = fromColumn; i < toColumn; i++) {
+            castRay(map, originX, originY, rays.dirX[i], rays.dirY[i], rays.correction[i], rays.maxDistance, i, hits);
+        }
+    }
+
+    private void castRay(GridMap map, float startX, float startY, float rayDirX, float rayDirY,
+                         float correction, float maxDistance, int column, RayHits hits) {
+        float cellWidth = map.getCellWidth();
+        float cellHeight = map.getCellHeight();
+
+        // Find the tile on which the player is
+        int posX = (int)(startX / cellWidth);
+        int posY = (int)(startY / cellHeight);
+
+        // If it goes out of screen for X or Y axis stop going further
+        if(posX < 0) posX = 0; if(posX > map.getWidth() - 1) posX = map.getWidth() - 1;
+        if(posY < 0) posY = 0; if(posY > map.getHeight() - 1) posY = map.getHeight() - 1;
+
+        // Create variables that will hold the value of the length from player till
+        // the current position of the ray for both travelling on X and Y axis
+        float currLenDeltaX;
+        float currLenDeltaY;
+
+        // Calculate the step on the length when moving on X and Y axis
+        // The direction is a unit vector, so its components are the cosine and sine of the ray's angle
+        float stepDeltaX = Math.abs(cellWidth / rayDirX);
+        float stepDeltaY = Math.abs(cellHeight / rayDirY);
+
+        // Calculate the initial values (before starting the actual DDA)
+        // If ray's direction vector x value is > 0 then this means
+        // that when travelling on X axis the ray will go to the right
+        // If it is < 0 then it will go to the left
+        if(rayDirX > 0) {
+            float rightBarrier = cellWidth * (posX + 1);
+            float deltaX = rightBarrier - startX;
+            currLenDeltaX = deltaX / rayDirX;
+        }
+        else if(rayDirX < 0) {
+            float leftBarrier = cellWidth * posX;
+            float deltaX = leftBarrier - startX;
+            currLenDeltaX = deltaX / rayDirX;
+        }
+        else {
+            // A ray parallel to the Y axis never crosses a vertical grid line
+            currLenDeltaX = Float.POSITIVE_INFINITY;
+        }
+
+        // Similar way when rayDir.y > 0 then the ray will move down
+        // and when rayDir.y < 0 then the ray will move up
+        if(rayDirY > 0) {
+            float downBarrier = cellHeight * (posY + 1);
+            float deltaY = downBarrier - startY;
+            currLenDeltaY = deltaY / rayDirY;
+        }
+        else if(rayDirY < 0) {
+            float topBarrier = cellHeight * posY;
+            float deltaY = topBarrier - startY;
+            currLenDeltaY = deltaY / rayDirY;
+        }
+        else {
+            currLenDeltaY = Float.POSITIVE_INFINITY;
+        }
+
+        // Lengths of the first grid line crossing on each axis, the k-th
+        // crossing after it is at first + k * step
+        float firstLenDeltaX = currLenDeltaX;
+        float firstLenDeltaY = currLenDeltaY;
+        int crossedX = 0;
+        int crossedY = 0;
+        int cellStepX = rayDirX > 0 ? 1 : -1;
+        int cellStepY = rayDirY > 0 ? 1 : -1;
+
+        // Boolean variables that indicates if the hit was made
+        // on an X or Y axis wall
+        boolean movedOnXAxis;
+
+        // Euclidean ray distance from player is stored here
+        float euclRayDistance;
+
+        // Length of the ray at the largest perpendicular distance that can be seen
+        float maxLength = maxDistance / correction;
+
+        // Stores the value of the wall that was hit
+        int rayValue;
+
+        // Actual DDA starts here
+        while(true) {
+            if(distanceField != null) {
+                // Every cell within radius of the current (empty) cell is empty
+                int radius = distanceField.get(posX, posY) - 1;
+                if(radius >= MIN_SKIP_RADIUS) {
+                    // Take every crossing shorter than the limit, that is at most radius on each axis.
+                    // The axis that sets the limit takes exactly radius crossings
+                    float limitX = crossingLength(firstLenDeltaX, stepDeltaX, crossedX + radius);
+                    float limitY = crossingLength(firstLenDeltaY, stepDeltaY, crossedY + radius);
+                    // A jump past the maximum length would stop the ray at another crossing than
+                    // the single steps do, so the last cells before it are stepped one by one
+                    if(Math.min(limitX, limitY) <= maxLength) {
+                        int newCrossedX;
+                        int newCrossedY;
+                        if(limitX <= limitY) {
+                            newCrossedX = crossedX + radius;
+                            newCrossedY = crossingsBefore(limitX, firstLenDeltaY, stepDeltaY, crossedY, radius);
+                        }
+                        else {
+                            newCrossedX = crossingsBefore(limitY, firstLenDeltaX, stepDeltaX, crossedX, radius);
+                            newCrossedY = crossedY + radius;
+                        }
+                        posX += (newCrossedX - crossedX) * cellStepX;
+                        posY += (newCrossedY - crossedY) * cellStepY;
+                        crossedX = newCrossedX;
+                        crossedY = newCrossedY;
+                        currLenDeltaX = crossingLength(firstLenDeltaX, stepDeltaX, crossedX);
+                        currLenDeltaY = crossingLength(firstLenDeltaY, stepDeltaY, crossedY);
+                    }
+                }
+            }
+
+            // Always select to move on the direction which has the smallest length
+            if(currLenDeltaX < currLenDeltaY) {
+                // Move delta X
+                euclRayDistance = currLenDeltaX;
+                crossedX++;
+                currLenDeltaX = crossingLength(firstLenDeltaX, stepDeltaX, crossedX);
+                posX += cellStepX;
+                movedOnXAxis = true;
+            }
+            else {
+                // Move delta Y
+                euclRayDistance = currLenDeltaY;
+                crossedY++;
+                currLenDeltaY = crossingLength(firstLenDeltaY, stepDeltaY, crossedY);
+                posY += cellStepY;
+                movedOnXAxis = false;
+            }
+
+            // A map that is not closed by walls lets the ray escape, and
+            // a wall past the maximum distance is the same as no wall
+            if(!map.isInside(posX, posY) || euclRayDistance > maxLength) {
+                rayValue = 0;
+                break;
+            }
+
+            // Check for collisions with walls
+            rayValue = map.get(posX, posY);
+            if(rayValue > 0) {
+                break;
+            }
+        }
+
+        hits.record(column, startX, startY, rayDirX, rayDirY, euclRayDistance, correction,
+                movedOnXAxis, posX, posY, rayValue, cellWidth, cellHeight);
+    }
+
+    // Length of the ray at its k-th grid line crossing on one axis. The first
+    // one is returned as it is, since the step is infinite along an axis the ray never crosses
+    private static float crossingLength(float first, float step, int k) {
+        return k == 0 ? first : first + k * step;
+    }
+
+    // Number of crossings on one axis, out of the first (crossed + radius),
+    // that are shorter than limit. Lengths grow with k, so it is estimated
+    // and then corrected with the same expression the single steps use
+    private static int crossingsBefore(float limit, float first, float step, int crossed, int radius) {
+        int max = crossed + radius;
+        // Lengths below the limit are first + k * step for k < (limit - first) / step
+        float estimate = (limit - first) / step;
+        int k = estimate > max ? max : (estimate > crossed ? (int)estimate : crossed);
+        while(k > crossed && crossingLength(first, step, k - 1) >= limit) k--;
+        while(k < max && crossingLength(first, step, k) < limit) k++;
+        return k;
+    }
+}
@@ -0,0 +1,117 @@
+package com.thestbar.raycasting.caster;
+
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.util.ParallelBands;
+import com.thestbar.raycasting.util.WorkerPool;
+
+// Splits the columns of a frame into bands and casts the bands in parallel
+// on the worker pool. A frame of several cameras is cast as one batch, the
+// columns of all the cameras are split into bands together, so they share a
+// single hand off to the pool and the threads balance across the cameras.
+// Casting a frame does not allocate
+public class RayCastScheduler {
+    // Bands smaller than this are not worth the scheduling cost
+    private static final int MIN_COLUMNS_PER_BAND = 16;
+    // More bands than threads, so a slow band does not leave the other threads idle
+    private static final int BANDS_PER_THREAD = 4;
+
+    private final ParallelBands bands;
+    private int bandCount;
+
+    // Parameters of the frame that is currently cast, one entry per camera
+    private RayCaster caster;
+    private GridMap map;
+    private int viewCount;
+    private float[] originX;
+    private float[] originY;
+    private Rays[] rays;
+    private RayHits[] hits;
+    // First column of each camera among the columns of the batch, and the column count of the batch
+    private int[] viewStart = new int[1];
+    private int totalColumns;
+    // What a single camera frame is cast with
+    private final float[] singleOriginX = new float[1];
+    private final float[] singleOriginY = new float[1];
+    private final Rays[] singleRays = new Rays[1];
+    private final RayHits[] singleHits = new RayHits[1];
+
+    public RayCastScheduler(WorkerPool pool) {
+        bands = new ParallelBands(pool) {
+            @Override
+            protected void runBand(int band) {
+                int fromColumn = (int)((long)totalColumns * band / bandCount);
+                int toColumn = (int)((long)totalColumns * (band + 1) / bandCount);
+                castColumns(fromColumn, toColumn);
+            }
+        };
+    }
+
+    // Casts every ray of rays and blocks until all the hits are written
+    public void cast(RayCaster caster, GridMap map, float originX, float originY, Rays rays, RayHits hits) {
+        singleOriginX[0] = originX;
+        singleOriginY[0] = originY;
+        singleRays[0] = rays;
+        singleHits[0] = hits;
+        cast(caster, map, 1, singleOriginX, singleOriginY, singleRays, singleHits);
+        singleRays[0] = null;
+        singleHits[0] = null;
+    }
+
+    // Casts the rays of viewCount cameras, camera i casts rays[i] from
+    // (originX[i], originY[i]) into hits[i]. Blocks until all the hits are written
+    public void cast(RayCaster caster, GridMap map, int viewCount, float[] originX, float[] originY,
+                     Rays[] rays, RayHits[] hits) {
+        if(viewStart.length < viewCount) {
+            viewStart = new int[viewCount];
+        }
+        int columns = 0;
+        for(int view = 0; view < viewCount; view++) {
+            hits[view].ensureCapacity(rays[view].count);
+            viewStart[view] = columns;
+            columns += rays[view].count;
+        }
+
+        this.caster = caster;
+        this.map = map;
+        this.viewCount = viewCount;
+        this.originX = originX;
+        this.originY = originY;
+        this.rays = rays;
+        this.hits = hits;
+        this.totalColumns = columns;
+
+        int maxBands = bands.getParallelism() * BANDS_PER_THREAD;
+        bandCount = Math.min(maxBands, Math.max(1, columns / MIN_COLUMNS_PER_BAND));
+        // Not worth handing a single band to the pool
+        if(bandCount == 1) {
+            castColumns(0, columns);
+        }
+        else {
+            bands.run(bandCount);
+        }
+
+        // Do not keep the frame's objects reachable between frames
+        this.caster = null;
+        this.map = null;
+        this.originX = null;
+        this.originY = null;
+        this.rays = null;
+        this.hits = null;
+    }
+
+    // Casts columns [fromColumn, toColumn) of the batch, a range can span several cameras
+    private void castColumns(int fromColumn, int toColumn) {
+        for(int view = 0; view < viewCount; view++) {
+            int start = viewStart[view];
+            int from = Math.max(fromColumn - start, 0);
+            int to = Math.min(toColumn - start, rays[view].count);
+            if(from < to) {
+                caster.cast(map, originX[view], originY[view], rays[view], from, to, hits[view]);
+            }
+        }
+    }
+
+    public int getParallelism() {
+        return bands.getParallelism();
+    }
+}
@@ -0,0 +1,14 @@
+package com.thestbar.raycasting.caster;
+
+import com.thestbar.raycasting.map.GridMap;
+
+// Pure ray casting logic. An implementation reads the map and the ray
+// directions of columns [fromColumn, toColumn) and writes one hit record
+// per column into hits. Implementations must not draw anything and must
+// not keep per call state, so that different column ranges can be cast
+// at the same time from different threads
+public interface RayCaster {
+    String getName();
+
+    void cast(GridMap map, float originX, float originY, Rays rays, int fromColumn, int toColumn, RayHits hits);
+}
@@ -0,0 +1,25 @@
+package com.thestbar.raycasting.caster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Ray casters that can be selected at runtime, in registration order
+public class RayCasterRegistry {
+    private final List<RayCaster> casters = new ArrayList<>();
+
+    public void register(RayCaster caster) {
+        casters.add(caster);
+    }
+
+    public RayCaster get(int index) {
+        return casters.get(index);
+    }
+
+    public int size() {
+        return casters.size();
+    }
+
+    public int next(int index) {
+        return (index + 1) % casters.size();
+    }
+}
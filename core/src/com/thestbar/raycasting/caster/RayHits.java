@@ -0,0 +1,65 @@
+package com.thestbar.raycasting.caster;
+
+// Hit records of one frame, stored as flat primitive arrays indexed by column
+public class RayHits {
+    // Perpendicular distance from the camera pane
+    public float[] distance = new float[0];
+    // Euclidean distance from the ray's origin
+    public float[] euclDistance = new float[0];
+    // True when the ray hit a wall while moving on the X axis
+    public boolean[] side = new boolean[0];
+    // Value of the cell that was hit, 0 when the ray left the map without hitting a wall
+    public int[] cellValue = new int[0];
+    // Horizontal position of the hit on the wall's texture, in [0, 1)
+    public float[] textureU = new float[0];
+    // Grid cell and world position of the hit
+    public int[] cellX = new int[0];
+    public int[] cellY = new int[0];
+    public float[] hitX = new float[0];
+    public float[] hitY = new float[0];
+
+    public void ensureCapacity(int count) {
+        if(distance.length < count) {
+            distance = new float[count];
+            euclDistance = new float[count];
+            side = new boolean[count];
+            cellValue = new int[count];
+            textureU = new float[count];
+            cellX = new int[count];
+            cellY = new int[count];
+            hitX = new float[count];
+            hitY = new float[count];
+        }
+    }
+
+    void record(int column, float originX, float originY, float rayDirX, float rayDirY, float euclRayDistance,
+                float correction, boolean rayHitSideValue, int posX, int posY, int value,
+                float cellWidth, float cellHeight) {
+        // Find intersection between ray and wall
+        float intersectionX = originX + rayDirX * euclRayDistance;
+        float intersectionY = originY + rayDirY * euclRayDistance;
+
+        // Calculate where exactly the wall was hit
+        float distanceFromEdgeRatio;
+        if(rayHitSideValue) {
+            // Find distance from top
+            float topY = posY * cellHeight;
+            distanceFromEdgeRatio = (intersectionY - topY) / cellHeight;
+        }
+        else {
+            // Find distance from right
+            float topX = (posX + 1) * cellWidth;
+            distanceFromEdgeRatio = (topX - intersectionX) / cellWidth;
+        }
+
+        distance[column] = euclRayDistance * correction;
+        euclDistance[column] = euclRayDistance;
+        side[column] = rayHitSideValue;
+        cellValue[column] = value;
+        textureU[column] = distanceFromEdgeRatio;
+        cellX[column] = posX;
+        cellY[column] = posY;
+        hitX[column] = intersectionX;
+        hitY[column] = intersectionY;
+    }
+}
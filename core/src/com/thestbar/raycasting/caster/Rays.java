@@ -0,0 +1,37 @@
+package com.thestbar.raycasting.caster;
+
+// Direction of every ray of the frame plus the factor that turns the
+// euclidean distance of a hit into the perpendicular (fish-eye free) distance
+public class Rays {
+    public int count;
+    public float[] dirX = new float[0];
+    public float[] dirY = new float[0];
+    public float[] correction = new float[0];
+    // Perpendicular distance past which nothing can be seen, a ray that gets
+    // there stops and records no wall, like a ray that leaves the map
+    public float maxDistance = Float.POSITIVE_INFINITY;
+
+    public void ensureCapacity(int count) {
+        if(dirX.length < count) {
+            dirX = new float[count];
+            dirY = new float[count];
+            correction = new float[count];
+        }
+    }
+
+    // One ray per column of the camera, from the left most column to the right most one
+    public void fan(CameraPlane camera) {
+        int count = camera.getColumns();
+        ensureCapacity(count);
+        this.count = count;
+
+        for(int i = 0; i < count; i++) {
+            // Direction through the column's point on the camera plane, scaled to unit length
+            float offset = camera.getPlaneOffset(i);
+            float inverseLength = camera.getInverseLength(i);
+            dirX[i] = (camera.dirX + camera.planeX * offset) * inverseLength;
+            dirY[i] = (camera.dirY + camera.planeY * offset) * inverseLength;
+            correction[i] = inverseLength;
+        }
+    }
+}
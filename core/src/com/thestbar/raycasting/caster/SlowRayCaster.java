@@ -0,0 +1,105 @@
+package com.thestbar.raycasting.caster;
+
+import com.thestbar.raycasting.map.GridMap;
+
+// Moves each ray forward by a fixed small distance until it
+// is inside a wall cell or leaves the map
+public class SlowRayCaster implements RayCaster {
+    private final float deltaDistance;
+
+    public SlowRayCaster(float deltaDistance) {
+        this.deltaDistance = deltaDistance;
+    }
+
+    @Override
+    public String getName() {
+        return "Slow";
+    }
+
+    @Override
+    public void cast(GridMap map, float originX, float originY, Rays rays, int fromColumn, int toColumn, RayHits hits) {
+        for(int i = fromColumn; i < toColumn; i++) {
+            castRay(map, originX, originY, rays.dirX[i], rays.dirY[i], rays.correction[i], rays.maxDistance, i, hits);
+        }
+    }
+
+    private void castRay(GridMap map, float startX, float startY, float dirX, float dirY,
+                         float correction, float maxDistance, int column, RayHits hits) {
+        float cellWidth = map.getCellWidth();
+        float cellHeight = map.getCellHeight();
+
+        // Get the slope of the line that connects the starting
+        // and the ending position of the ray
+        // Line for given x, then y = slope * (x - x0) + y0
+        // where (x0, y0) can be start or end position
+        float slope = dirY / dirX;
+
+        // For this delta distance, calculate
+        // delta movement on X axis (the direction is a unit vector, dirX is the cosine of its angle)
+        float deltaX = dirX * deltaDistance;
+
+        // Upper bound for the number of steps, so a ray that never
+        // reaches a wall can not keep a worker thread busy forever,
+        float mapDiagonal = map.getWidth() * cellWidth + map.getHeight() * cellHeight;
+        // and none that goes past the maximum distance either
+        float maxLength = Math.min(mapDiagonal, maxDistance / correction);
+        int maxSteps = (int)(maxLength / deltaDistance) + 1;
+
+        float intersectionX = startX;
+        float intersectionY = startY;
+
+        // Grid current position of the ray
+        int gridX = 0;
+        int gridY = 0;
+
+        // Holds the value of the cell that was hit by the ray (and was a wall)
+        int rayValue = 0;
+
+        for(int i = 0; i < maxSteps; i++) {
+            // On each step find the current x position of the ray
+            float currX = startX + deltaX * i;
+
+            // Using the line's coordinates constructor
+            // find the current y position of the ray
+            float currY = slope * (currX - startX) + startY;
+
+            // Find the grid position of the ray
+            gridX = (int)(currX / cellWidth);
+            gridY = (int)(currY / cellHeight);
+
+            // If it goes out of screen for X or Y axis stop going further
+            if(gridX < 0) gridX = 0; if(gridX > map.getWidth() - 1) gridX = map.getWidth() - 1;
+            if(gridY < 0) gridY = 0; if(gridY > map.getHeight() - 1) gridY = map.getHeight() - 1;
+
+            intersectionX = currX;
+            intersectionY = currY;
+
+            // If value is bigger than 0 then ray hit a wall
+            int value = map.get(gridX, gridY);
+            if(value > 0) {
+                rayValue = value;
+                break;
+            }
+        }
+
+        // We know that ray hit cell at [gridX, gridY];
+        // Find the borders of this cell and check if the intersection is
+        // on up or down border which means that it did not hit a side
+        float pixDelta = 1;
+        float upBorder = cellHeight * gridY;
+        float downBorder = cellHeight * (gridY + 1);
+
+        boolean rayHitSideValue = (!(intersectionY > upBorder - pixDelta) || !(intersectionY < upBorder + pixDelta)) &&
+                (!(intersectionY > downBorder - pixDelta) || !(intersectionY < downBorder + pixDelta));
+
+        // Store the euclidean distance between the starting position and the
+        // intersection. The perpendicular distance that fixes the fish-eye-effect
+        // is derived from it using the correction of the ray
+        float dx = intersectionX - startX;
+        float dy = intersectionY - startY;
+        float euclRayDistance = (float)Math.sqrt(dx * dx + dy * dy);
+
+        hits.record(column, startX, startY, dirX, dirY, euclRayDistance, correction,
+                rayHitSideValue, gridX, gridY, rayValue, cellWidth, cellHeight);
+    }
+}
@@ -0,0 +1,34 @@
+package com.thestbar.raycasting.input;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+
+// Live input from Gdx.input, with the key bindings of the game
+public class GdxInputSource implements InputSource {
+    @Override
+    public boolean poll(float delta, InputFrame frame) {
+        int held = 0;
+        if(Gdx.input.isKeyPressed(Input.Keys.W)) held |= InputFrame.MOVE_FORWARD;
+        if(Gdx.input.isKeyPressed(Input.Keys.S)) held |= InputFrame.MOVE_BACKWARD;
+        if(Gdx.input.isKeyPressed(Input.Keys.A)) held |= InputFrame.TURN_LEFT;
+        if(Gdx.input.isKeyPressed(Input.Keys.D)) held |= InputFrame.TURN_RIGHT;
+        if(Gdx.input.isKeyPressed(Input.Keys.LEFT)) held |= InputFrame.STRAFE_LEFT;
+        if(Gdx.input.isKeyPressed(Input.Keys.RIGHT)) held |= InputFrame.STRAFE_RIGHT;
+        if(Gdx.input.isTouched()) held |= InputFrame.PAINT;
+
+        int pressed = 0;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.SPACE)) pressed |= InputFrame.TOGGLE_RAY_INTERSECTIONS;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.R)) pressed |= InputFrame.NEXT_RAY_CASTER;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.F)) pressed |= InputFrame.TOGGLE_RENDER_MODE;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.P)) pressed |= InputFrame.TOGGLE_PROFILER;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.V)) pressed |= InputFrame.NEXT_VIEW_COUNT;
+        if(Gdx.input.isKeyJustPressed(Input.Keys.G)) pressed |= InputFrame.TOGGLE_FOG;
+
+        frame.delta = delta;
+        frame.held = held;
+        frame.pressed = pressed;
+        frame.mouseX = Gdx.input.getX();
+        frame.mouseY = Gdx.input.getY();
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package com.thestbar.raycasting.input;
+
+// Everything the game reads from the input during one frame: the frame's
+// delta time, the held keys, the keys pressed on this frame and the mouse.
+// Keys are game actions rather than key codes, so a frame can be stored,
+// replayed and used without a window
+public class InputFrame {
+    // Held keys
+    public static final int MOVE_FORWARD = 1;
+    public static final int MOVE_BACKWARD = 1 << 1;
+    public static final int TURN_LEFT = 1 << 2;
+    public static final int TURN_RIGHT = 1 << 3;
+    public static final int STRAFE_LEFT = 1 << 4;
+    public static final int STRAFE_RIGHT = 1 << 5;
+    public static final int PAINT = 1 << 6;
+    // Keys pressed on this frame
+    public static final int TOGGLE_RAY_INTERSECTIONS = 1;
+    public static final int NEXT_RAY_CASTER = 1 << 1;
+    public static final int TOGGLE_RENDER_MODE = 1 << 2;
+    public static final int TOGGLE_PROFILER = 1 << 3;
+    public static final int NEXT_VIEW_COUNT = 1 << 4;
+    public static final int TOGGLE_FOG = 1 << 5;
+
+    public float delta;
+    public int held;
+    public int pressed;
+    // Mouse position in world units, the 2D map is drawn one unit per pixel
+    public int mouseX;
+    public int mouseY;
+
+    public boolean isHeld(int key) {
+        return (held & key) != 0;
+    }
+
+    public boolean wasPressed(int key) {
+        return (pressed & key) != 0;
+    }
+
+    public void set(InputFrame frame) {
+        delta = frame.delta;
+        held = frame.held;
+        pressed = frame.pressed;
+        mouseX = frame.mouseX;
+        mouseY = frame.mouseY;
+    }
+}
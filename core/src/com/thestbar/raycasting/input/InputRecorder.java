@@ -0,0 +1,65 @@
+package com.thestbar.raycasting.input;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// Passes the input of another source through and writes every frame of it
+// to an input trace, together with the level and the player's start, so
+// the session can be replayed frame by frame later
+public class InputRecorder implements InputSource, Closeable {
+    private final InputSource source;
+    private final DataOutputStream output;
+    private IOException error;
+    private int frameCount = 0;
+
+    public InputRecorder(InputSource source, File file, String levelPath,
+                         float startX, float startY, float startDirX, float startDirY) throws IOException {
+        this.source = source;
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        output.writeInt(InputTrace.MAGIC);
+        output.writeInt(InputTrace.VERSION);
+        output.writeUTF(levelPath);
+        output.writeFloat(startX);
+        output.writeFloat(startY);
+        output.writeFloat(startDirX);
+        output.writeFloat(startDirY);
+    }
+
+    @Override
+    public boolean poll(float delta, InputFrame frame) {
+        if(!source.poll(delta, frame)) return false;
+        // The frame loop can not handle an exception, the first one is kept for close()
+        if(error == null) {
+            try {
+                output.writeFloat(frame.delta);
+                output.writeByte(frame.held);
+                output.writeByte(frame.pressed);
+                output.writeShort(clampToShort(frame.mouseX));
+                output.writeShort(clampToShort(frame.mouseY));
+                frameCount++;
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        return true;
+    }
+
+    private static int clampToShort(int value) {
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    // Flushes the trace, throws the first error that happened while recording
+    @Override
+    public void close() throws IOException {
+        output.close();
+        if(error != null) throw error;
+    }
+}
@@ -0,0 +1,98 @@
+package com.thestbar.raycasting.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Plays an input trace back, one recorded frame per poll(). The recorded
+// delta replaces the measured one, so the game goes through exactly the
+// same states no matter how fast the frames are rendered. The frames are
+// kept as the raw bytes of the file and decoded when they are played
+public class InputReplay implements InputSource {
+    private final String levelPath;
+    private final float startX;
+    private final float startY;
+    private final float startDirX;
+    private final float startDirY;
+    private final ByteBuffer frames;
+    private final int frameCount;
+    private int nextFrame = 0;
+
+    public InputReplay(File file) throws IOException {
+        byte[] bytes = new byte[(int)file.length()];
+        try(DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            input.readFully(bytes);
+        }
+
+        ByteArrayInputStream header = new ByteArrayInputStream(bytes);
+        DataInputStream input = new DataInputStream(header);
+        if(bytes.length < 8 || input.readInt() != InputTrace.MAGIC) {
+            throw new IOException(file + " is not an input trace");
+        }
+        int version = input.readInt();
+        if(version != InputTrace.VERSION) {
+            throw new IOException(file + " has input trace version " + version + ", expected " + InputTrace.VERSION);
+        }
+        levelPath = input.readUTF();
+        startX = input.readFloat();
+        startY = input.readFloat();
+        startDirX = input.readFloat();
+        startDirY = input.readFloat();
+        int headerSize = bytes.length - header.available();
+
+        if((bytes.length - headerSize) % InputTrace.FRAME_SIZE != 0) {
+            throw new IOException(file + " ends in the middle of a frame");
+        }
+        frameCount = (bytes.length - headerSize) / InputTrace.FRAME_SIZE;
+        frames = ByteBuffer.wrap(bytes, headerSize, bytes.length - headerSize).slice();
+    }
+
+    @Override
+    public boolean poll(float delta, InputFrame frame) {
+        if(nextFrame == frameCount) return false;
+        int offset = nextFrame * InputTrace.FRAME_SIZE;
+        frame.delta = frames.getFloat(offset);
+        frame.held = frames.get(offset + 4) & 0xff;
+        frame.pressed = frames.get(offset + 5) & 0xff;
+        frame.mouseX = frames.getShort(offset + 6);
+        frame.mouseY = frames.getShort(offset + 8);
+        nextFrame++;
+        return true;
+    }
+
+    // Starts again from the first frame
+    public void rewind() {
+        nextFrame = 0;
+    }
+
+    public boolean isFinished() {
+        return nextFrame == frameCount;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public String getLevelPath() {
+        return levelPath;
+    }
+
+    public float getStartX() {
+        return startX;
+    }
+
+    public float getStartY() {
+        return startY;
+    }
+
+    public float getStartDirX() {
+        return startDirX;
+    }
+
+    public float getStartDirY() {
+        return startDirY;
+    }
+}
@@ -0,0 +1,9 @@
+package com.thestbar.raycasting.input;
+
+// Where the input of each frame comes from, the keyboard and mouse or a recorded trace
+public interface InputSource {
+    // Fills frame with the input of the next frame, delta is the time the
+    // backend measured and may be replaced by a recorded one. Returns false
+    // when there is no more input, the frame is left unchanged then
+    boolean poll(float delta, InputFrame frame);
+}
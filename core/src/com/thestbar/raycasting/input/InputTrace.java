@@ -0,0 +1,16 @@
+package com.thestbar.raycasting.input;
+
+// Input trace file format, written by InputRecorder and read by InputReplay.
+// Everything is big endian:
+//   magic (0x52434954, 'RCIT'), version, level path (modified UTF-8),
+//   player start x, y, direction x, y (floats), then one record per frame:
+//   delta (float), held keys (byte), pressed keys (byte), mouse x, mouse y (shorts)
+// A frame takes 10 bytes, so an hour at 60 FPS is about 2 MB
+public final class InputTrace {
+    public static final int MAGIC = 0x52434954;
+    public static final int VERSION = 1;
+    public static final int FRAME_SIZE = 4 + 1 + 1 + 2 + 2;
+
+    private InputTrace() {
+    }
+}
@@ -0,0 +1,183 @@
+package com.thestbar.raycasting.map;
+
+import java.util.Arrays;
+
+// For every cell of a GridMap the Chebyshev distance, in cells, to the
+// closest wall or to the outside of the map, capped at MAX_DISTANCE. A cell
+// with distance d has only empty cells within d - 1 cells of it in every
+// direction, which lets a ray jump over them without looking at each one.
+// It is stored in the same 64x64 chunks as the map, chunks far from any wall
+// all hold MAX_DISTANCE and share one array. update() must be called after
+// every change of a cell, it only recomputes the cells the change can reach.
+// As a listener of its map it does that for each published change rectangle
+public class DistanceField implements MapChangeListener {
+    public static final int MAX_DISTANCE = 32;
+
+    private static final int CHUNK_SHIFT = GridMap.CHUNK_SHIFT;
+    private static final int CHUNK_SIZE = GridMap.CHUNK_SIZE;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+    private final GridMap map;
+    private final int chunksX;
+    private final int chunksY;
+    private final byte[][] chunks;
+    private final boolean[] ownedChunks;
+    private final byte[] openChunk = new byte[CHUNK_CELLS];
+    // Distances of the window around the cells being recomputed
+    private final int[] window;
+
+    public DistanceField(GridMap map) {
+        this.map = map;
+        this.chunksX = (map.getWidth() + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunksY = (map.getHeight() + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new byte[chunksX * chunksY][];
+        this.ownedChunks = new boolean[chunks.length];
+        // Big enough for the area that a change of up to a chunk reaches, and the MAX_DISTANCE around it
+        int windowSide = CHUNK_SIZE + 4 * MAX_DISTANCE;
+        this.window = new int[windowSide * windowSide];
+        Arrays.fill(openChunk, (byte)MAX_DISTANCE);
+        rebuild();
+    }
+
+    // Recomputes the whole field, for when most of the map changed at once
+    public void rebuild() {
+        for(int chunkY = 0; chunkY < chunksY; chunkY++) {
+            for(int chunkX = 0; chunkX < chunksX; chunkX++) {
+                int chunkIndex = chunkY * chunksX + chunkX;
+                chunks[chunkIndex] = openChunk;
+                ownedChunks[chunkIndex] = false;
+                if(isOpenArea(chunkX, chunkY)) continue;
+
+                int x0 = chunkX << CHUNK_SHIFT;
+                int y0 = chunkY << CHUNK_SHIFT;
+                recompute(x0, y0, Math.min(x0 + CHUNK_SIZE, map.getWidth()), Math.min(y0 + CHUNK_SIZE, map.getHeight()));
+                shareIfUniform(chunkIndex);
+            }
+        }
+    }
+
+    // Called whenever the cell at (x, y) of the map changes value
+    public void update(int x, int y) {
+        update(x, y, x + 1, y + 1);
+    }
+
+    // Called when any of the cells in [x0, x1) x [y0, y1) changed value
+    public void update(int x0, int y0, int x1, int y1) {
+        // In pieces of at most a chunk, so that the window of each one fits
+        for(int pieceY = y0; pieceY < y1; pieceY += CHUNK_SIZE) {
+            for(int pieceX = x0; pieceX < x1; pieceX += CHUNK_SIZE) {
+                // Only the cells closer than MAX_DISTANCE can see the changed cells
+                recompute(Math.max(0, pieceX - MAX_DISTANCE), Math.max(0, pieceY - MAX_DISTANCE),
+                        Math.min(map.getWidth(), Math.min(x1, pieceX + CHUNK_SIZE) + MAX_DISTANCE),
+                        Math.min(map.getHeight(), Math.min(y1, pieceY + CHUNK_SIZE) + MAX_DISTANCE));
+            }
+        }
+    }
+
+    @Override
+    public void cellsChanged(GridMap map, int x0, int y0, int x1, int y1) {
+        update(x0, y0, x1, y1);
+    }
+
+    public int get(int x, int y) {
+        byte[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)];
+        return chunk[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+    }
+
+    public GridMap getMap() {
+        return map;
+    }
+
+    // True when no wall and no map edge is within MAX_DISTANCE of the chunk,
+    // so every one of its cells is at MAX_DISTANCE. Only looks at whole chunks
+    private boolean isOpenArea(int chunkX, int chunkY) {
+        if(chunkX == 0 || chunkY == 0 || chunkX == chunksX - 1 || chunkY == chunksY - 1) return false;
+        for(int y = chunkY - 1; y <= chunkY + 1; y++) {
+            for(int x = chunkX - 1; x <= chunkX + 1; x++) {
+                if(!map.isUniformChunk(x, y) || map.get(x << CHUNK_SHIFT, y << CHUNK_SHIFT) != 0) return false;
+            }
+        }
+        return true;
+    }
+
+    // Exact distances of the cells in [x0, x1) x [y0, y1). The closest wall of
+    // any of them is at most MAX_DISTANCE away, so a window that is MAX_DISTANCE
+    // bigger on each side holds it, together with the shortest path to it
+    private void recompute(int x0, int y0, int x1, int y1) {
+        int wx0 = x0 - MAX_DISTANCE;
+        int wy0 = y0 - MAX_DISTANCE;
+        int windowWidth = x1 - x0 + 2 * MAX_DISTANCE;
+        int windowHeight = y1 - y0 + 2 * MAX_DISTANCE;
+        int[] window = this.window;
+
+        for(int y = 0; y < windowHeight; y++) {
+            for(int x = 0; x < windowWidth; x++) {
+                int mapX = wx0 + x;
+                int mapY = wy0 + y;
+                // Outside of the map counts as a wall, so a jump never leaves the map
+                boolean wall = !map.isInside(mapX, mapY) || map.get(mapX, mapY) != 0;
+                window[y * windowWidth + x] = wall ? 0 : MAX_DISTANCE;
+            }
+        }
+
+        // Two pass distance transform, with the 8 neighbours it is exact for Chebyshev distance
+        for(int y = 0; y < windowHeight; y++) {
+            for(int x = 0; x < windowWidth; x++) {
+                int i = y * windowWidth + x;
+                int d = window[i];
+                if(d == 0) continue;
+                if(x > 0) d = Math.min(d, window[i - 1] + 1);
+                if(y > 0) {
+                    d = Math.min(d, window[i - windowWidth] + 1);
+                    if(x > 0) d = Math.min(d, window[i - windowWidth - 1] + 1);
+                    if(x < windowWidth - 1) d = Math.min(d, window[i - windowWidth + 1] + 1);
+                }
+                window[i] = d;
+            }
+        }
+        for(int y = windowHeight - 1; y >= 0; y--) {
+            for(int x = windowWidth - 1; x >= 0; x--) {
+                int i = y * windowWidth + x;
+                int d = window[i];
+                if(d == 0) continue;
+                if(x < windowWidth - 1) d = Math.min(d, window[i + 1] + 1);
+                if(y < windowHeight - 1) {
+                    d = Math.min(d, window[i + windowWidth] + 1);
+                    if(x > 0) d = Math.min(d, window[i + windowWidth - 1] + 1);
+                    if(x < windowWidth - 1) d = Math.min(d, window[i + windowWidth + 1] + 1);
+                }
+                window[i] = d;
+            }
+        }
+
+        for(int y = y0; y < y1; y++) {
+            for(int x = x0; x < x1; x++) {
+                set(x, y, window[(y - wy0) * windowWidth + (x - wx0)]);
+            }
+        }
+    }
+
+    private void set(int x, int y, int distance) {
+        int chunkIndex = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        int cellIndex = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+        byte[] chunk = chunks[chunkIndex];
+        if(chunk[cellIndex] == distance) return;
+        // Copy on write, the open chunk is shared
+        if(!ownedChunks[chunkIndex]) {
+            chunk = chunk.clone();
+            chunks[chunkIndex] = chunk;
+            ownedChunks[chunkIndex] = true;
+        }
+        chunk[cellIndex] = (byte)distance;
+    }
+
+    private void shareIfUniform(int chunkIndex) {
+        byte[] chunk = chunks[chunkIndex];
+        for(byte distance: chunk) {
+            if(distance != MAX_DISTANCE) return;
+        }
+        chunks[chunkIndex] = openChunk;
+        ownedChunks[chunkIndex] = false;
+    }
+}
@@ -0,0 +1,249 @@
+package com.thestbar.raycasting.map;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Grid of cell values where 0 is empty space and every
+// value bigger than 0 is a wall that uses texture (value - 1)
+// The cells are stored in chunks of 64x64. A chunk where every cell has the
+// same value (all empty, all the same wall) is one array shared by all such
+// chunks, so memory grows with the detail of the map and not with its area.
+// A shared chunk gets its own copy the first time one of its cells changes.
+// Every change is also recorded as the bounding box of the changed cells of
+// its chunk, publishChanges() hands those boxes to the listeners once per
+// frame. Recording is a few compares, so thousands of edits in a frame cost
+// neither allocations nor more than one rectangle per chunk
+public class GridMap {
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+    private final int width;
+    private final int height;
+    private final float cellWidth;
+    private final float cellHeight;
+    private final int chunksX;
+    private final int chunksY;
+    // Row major chunks, each one row major cells, index with ((y & 63) << 6) | (x & 63)
+    private final int[][] chunks;
+    // False for the chunks that are one of the shared uniform arrays
+    private final boolean[] ownedChunks;
+    private final Map<Integer, int[]> uniformChunks = new HashMap<>();
+    private int ownedChunkCount = 0;
+    // Chunks with changes that were not published yet, and the bounds of
+    // the changed cells in each chunk, dirtyMaxX is -1 for a clean chunk
+    private final int[] dirtyChunks;
+    private int dirtyChunkCount = 0;
+    private final int[] dirtyMinX;
+    private final int[] dirtyMinY;
+    private final int[] dirtyMaxX;
+    private final int[] dirtyMaxY;
+    private final ArrayList<MapChangeListener> listeners = new ArrayList<>();
+
+    // Map where every cell is empty
+    public GridMap(int width, int height, float cellWidth, float cellHeight) {
+        this.width = width;
+        this.height = height;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunksY = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new int[chunksX * chunksY][];
+        this.ownedChunks = new boolean[chunks.length];
+        this.dirtyChunks = new int[chunks.length];
+        this.dirtyMinX = new int[chunks.length];
+        this.dirtyMinY = new int[chunks.length];
+        this.dirtyMaxX = new int[chunks.length];
+        this.dirtyMaxY = new int[chunks.length];
+        Arrays.fill(dirtyMaxX, -1);
+        int[] empty = uniformChunk(0);
+        for(int i = 0; i < chunks.length; i++) {
+            chunks[i] = empty;
+        }
+    }
+
+    // Row major cells, index with (y * width + x)
+    public GridMap(int[] cells, int width, int height, float cellWidth, float cellHeight) {
+        this(IntBuffer.wrap(cells), width, height, cellWidth, cellHeight);
+    }
+
+    // Row major cells starting at the position of the buffer, which is left unchanged
+    public GridMap(IntBuffer cells, int width, int height, float cellWidth, float cellHeight) {
+        this(width, height, cellWidth, cellHeight);
+        IntBuffer source = cells.duplicate();
+        int start = source.position();
+        int[] scratch = new int[CHUNK_CELLS];
+
+        for(int chunkY = 0; chunkY < chunksY; chunkY++) {
+            for(int chunkX = 0; chunkX < chunksX; chunkX++) {
+                int x0 = chunkX << CHUNK_SHIFT;
+                int y0 = chunkY << CHUNK_SHIFT;
+                int columns = Math.min(CHUNK_SIZE, width - x0);
+                int rows = Math.min(CHUNK_SIZE, height - y0);
+                int first = source.get(start + y0 * width + x0);
+                // Cells past the right or bottom edge of the map are never read,
+                // they repeat the first value so that they do not break uniformity
+                if(columns < CHUNK_SIZE || rows < CHUNK_SIZE) {
+                    Arrays.fill(scratch, first);
+                }
+
+                boolean uniform = true;
+                for(int row = 0; row < rows; row++) {
+                    source.position(start + (y0 + row) * width + x0);
+                    source.get(scratch, row << CHUNK_SHIFT, columns);
+                    for(int column = 0; uniform && column < columns; column++) {
+                        uniform = scratch[(row << CHUNK_SHIFT) | column] == first;
+                    }
+                }
+
+                int chunkIndex = chunkY * chunksX + chunkX;
+                if(uniform) {
+                    chunks[chunkIndex] = uniformChunk(first);
+                }
+                else {
+                    chunks[chunkIndex] = scratch;
+                    ownedChunks[chunkIndex] = true;
+                    ownedChunkCount++;
+                    scratch = new int[CHUNK_CELLS];
+                }
+            }
+        }
+    }
+
+    private int[] uniformChunk(int value) {
+        int[] chunk = uniformChunks.get(value);
+        if(chunk == null) {
+            chunk = new int[CHUNK_CELLS];
+            Arrays.fill(chunk, value);
+            uniformChunks.put(value, chunk);
+        }
+        return chunk;
+    }
+
+    public int get(int x, int y) {
+        // Integer only addressing, the chunk from the high bits and the cell from the low bits
+        int[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT)];
+        return chunk[((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK)];
+    }
+
+    public void set(int x, int y, int value) {
+        int chunkIndex = (y >> CHUNK_SHIFT) * chunksX + (x >> CHUNK_SHIFT);
+        int cellIndex = ((y & CHUNK_MASK) << CHUNK_SHIFT) | (x & CHUNK_MASK);
+        int[] chunk = chunks[chunkIndex];
+        if(chunk[cellIndex] == value) return;
+        // Copy on write, the shared array is used by other chunks too
+        if(!ownedChunks[chunkIndex]) {
+            chunk = chunk.clone();
+            chunks[chunkIndex] = chunk;
+            ownedChunks[chunkIndex] = true;
+            ownedChunkCount++;
+        }
+        chunk[cellIndex] = value;
+        markDirty(chunkIndex, x, y);
+    }
+
+    private void markDirty(int chunkIndex, int x, int y) {
+        if(dirtyMaxX[chunkIndex] < 0) {
+            dirtyChunks[dirtyChunkCount++] = chunkIndex;
+            dirtyMinX[chunkIndex] = x;
+            dirtyMinY[chunkIndex] = y;
+            dirtyMaxX[chunkIndex] = x;
+            dirtyMaxY[chunkIndex] = y;
+            return;
+        }
+        if(x < dirtyMinX[chunkIndex]) dirtyMinX[chunkIndex] = x;
+        if(x > dirtyMaxX[chunkIndex]) dirtyMaxX[chunkIndex] = x;
+        if(y < dirtyMinY[chunkIndex]) dirtyMinY[chunkIndex] = y;
+        if(y > dirtyMaxY[chunkIndex]) dirtyMaxY[chunkIndex] = y;
+    }
+
+    public void addChangeListener(MapChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(MapChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Tells the listeners about every change since the last call, one rectangle
+    // per changed chunk. Cells that listeners change in turn wait for the next call
+    public void publishChanges() {
+        int count = dirtyChunkCount;
+        for(int i = 0; i < count; i++) {
+            int chunkIndex = dirtyChunks[i];
+            int x0 = dirtyMinX[chunkIndex];
+            int y0 = dirtyMinY[chunkIndex];
+            int x1 = dirtyMaxX[chunkIndex] + 1;
+            int y1 = dirtyMaxY[chunkIndex] + 1;
+            dirtyMaxX[chunkIndex] = -1;
+            for(int l = 0; l < listeners.size(); l++) {
+                listeners.get(l).cellsChanged(this, x0, y0, x1, y1);
+            }
+        }
+        System.arraycopy(dirtyChunks, count, dirtyChunks, 0, dirtyChunkCount - count);
+        dirtyChunkCount -= count;
+    }
+
+    // True when cells changed since the last publishChanges()
+    public boolean hasChanges() {
+        return dirtyChunkCount > 0;
+    }
+
+    public boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    // Copies the cells into a row major array, index with (y * width + x)
+    public int[] copyCells() {
+        int[] cells = new int[width * height];
+        for(int y = 0; y < height; y++) {
+            for(int chunkX = 0; chunkX < chunksX; chunkX++) {
+                int x0 = chunkX << CHUNK_SHIFT;
+                int[] chunk = chunks[(y >> CHUNK_SHIFT) * chunksX + chunkX];
+                System.arraycopy(chunk, (y & CHUNK_MASK) << CHUNK_SHIFT, cells, y * width + x0,
+                        Math.min(CHUNK_SIZE, width - x0));
+            }
+        }
+        return cells;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getCellWidth() {
+        return cellWidth;
+    }
+
+    public float getCellHeight() {
+        return cellHeight;
+    }
+
+    // True when the chunk is one of the shared arrays, so all of its cells have one value
+    public boolean isUniformChunk(int chunkX, int chunkY) {
+        return !ownedChunks[chunkY * chunksX + chunkX];
+    }
+
+    public int getChunkCount() {
+        return chunks.length;
+    }
+
+    // Chunks with cells of their own, the rest share one array per value
+    public int getOwnedChunkCount() {
+        return ownedChunkCount;
+    }
+
+    // Approximate heap size of the cells, shared arrays counted once
+    public long getCellMemoryBytes() {
+        long arrays = ownedChunkCount + uniformChunks.size();
+        return arrays * CHUNK_CELLS * 4L + chunks.length * 8L;
+    }
+}
@@ -0,0 +1,41 @@
+package com.thestbar.raycasting.map;
+
+import java.io.File;
+import java.io.IOException;
+
+// Converts legacy text levels to the binary level format, next to the originals:
+//   LevelConverter [--cell-size 30] assets/levelMaps/Level1_Map.txt ...
+// The binary levels get the cell size and the default 2D map palette stored in their header
+public final class LevelConverter {
+    private static final float DEFAULT_CELL_SIZE = 30;
+
+    private LevelConverter() {
+    }
+
+    public static File convert(File textFile, float cellSize) throws IOException {
+        LevelData text = LevelTextParser.parse(textFile, cellSize, cellSize);
+        LevelData level = new LevelData(text.getWidth(), text.getHeight(), cellSize, cellSize,
+                LevelData.defaultPalette(), text.getCells());
+        File binaryFile = LevelFile.binaryFileFor(textFile);
+        LevelFile.write(level, binaryFile);
+        return binaryFile;
+    }
+
+    public static void main(String[] args) throws IOException {
+        float cellSize = DEFAULT_CELL_SIZE;
+        int converted = 0;
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("--cell-size") && i + 1 < args.length) {
+                cellSize = Float.parseFloat(args[++i]);
+                continue;
+            }
+            File binaryFile = convert(new File(args[i]), cellSize);
+            System.out.println(args[i] + " -> " + binaryFile.getPath());
+            converted++;
+        }
+        if(converted == 0) {
+            System.err.println("Usage: LevelConverter [--cell-size size] level.txt...");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.thestbar.raycasting.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+// A level as it comes out of a level file: its size, the size of a cell
+// in world units, the color of each cell value on the 2D map and the cells
+// themselves. The cells are a view on the file when it was memory mapped,
+// so nothing is copied until a GridMap is made out of them
+public class LevelData {
+    private final int width;
+    private final int height;
+    private final float cellWidth;
+    private final float cellHeight;
+    // RGBA8888 color of each cell value, may be empty for the legacy text levels
+    private final int[] palette;
+    private final IntBuffer cells;
+
+    public LevelData(int width, int height, float cellWidth, float cellHeight, int[] palette, IntBuffer cells) {
+        if(width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid level size " + width + "x" + height);
+        }
+        if(cells.remaining() != (long)width * height) {
+            throw new IllegalArgumentException("Level " + width + "x" + height + " has " + cells.remaining() + " cells");
+        }
+        this.width = width;
+        this.height = height;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.palette = palette;
+        this.cells = cells;
+    }
+
+    // Palette of the 2D map for levels that do not store one, indexed by cell
+    // value: clear, orange, red, purple, gray, blue, yellow, brown and maroon
+    public static int[] defaultPalette() {
+        return new int[] { 0x00000000, 0xffa500ff, 0xff0000ff, 0xa020f0ff, 0x7f7f7fff,
+                0x0000ffff, 0xffff00ff, 0x8b4513ff, 0xb03060ff };
+    }
+
+    // Loads a binary level (.lvl) or a legacy text level (any other extension),
+    // the cell size is only used for text levels since they do not store one
+    public static LevelData load(File file, float cellWidth, float cellHeight) throws IOException {
+        if(file.getName().endsWith(LevelFile.EXTENSION)) {
+            return LevelFile.read(file);
+        }
+        return LevelTextParser.parse(file, cellWidth, cellHeight);
+    }
+
+    // Mutable grid with the cells of this level, the cells are copied
+    // chunk by chunk straight out of the parsed array or the mapped file
+    public GridMap toGridMap() {
+        return new GridMap(cells, width, height, cellWidth, cellHeight);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float getCellWidth() {
+        return cellWidth;
+    }
+
+    public float getCellHeight() {
+        return cellHeight;
+    }
+
+    public int[] getPalette() {
+        return palette;
+    }
+
+    // Row major cells, index with (y * width + x)
+    public IntBuffer getCells() {
+        return cells.duplicate();
+    }
+}
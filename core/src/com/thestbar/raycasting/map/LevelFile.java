@@ -0,0 +1,97 @@
+package com.thestbar.raycasting.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Binary level format. Everything is little endian, the byte order of
+// the desktop and Android CPUs, so copying the cells is a plain memory copy.
+// All fields are 4 bytes wide:
+//   magic (0x52434C56, 'RCLV'), version, width, height, cell width (float), cell height (float),
+//   palette size, palette colors (RGBA8888), width * height cell values (row major)
+// Reading maps the file into memory, the cells are used straight from the
+// mapping, so even a 4096x4096 level loads without parsing or copying
+public final class LevelFile {
+    public static final String EXTENSION = ".lvl";
+    public static final int MAGIC = 0x52434C56;
+    public static final int VERSION = 1;
+    // Magic, version, width, height, cell width, cell height and palette size
+    private static final int HEADER_SIZE = 7 * 4;
+
+    private LevelFile() {
+    }
+
+    public static LevelData read(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException(file + " is not a level file");
+        }
+        int version = buffer.getInt();
+        if(version != VERSION) {
+            throw new IOException(file + " has level format version " + version + ", expected " + VERSION);
+        }
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        float cellWidth = buffer.getFloat();
+        float cellHeight = buffer.getFloat();
+        int paletteSize = buffer.getInt();
+        if(width <= 0 || height <= 0 || paletteSize < 0) {
+            throw new IOException(file + " has an invalid header");
+        }
+
+        long expectedSize = HEADER_SIZE + 4L * paletteSize + 4L * width * height;
+        if(buffer.capacity() != expectedSize) {
+            throw new IOException(file + " is " + buffer.capacity() + " bytes, expected " + expectedSize);
+        }
+
+        int[] palette = new int[paletteSize];
+        buffer.asIntBuffer().get(palette);
+        buffer.position(HEADER_SIZE + 4 * paletteSize);
+        IntBuffer cells = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        return new LevelData(width, height, cellWidth, cellHeight, palette, cells);
+    }
+
+    public static void write(LevelData level, File file) throws IOException {
+        int[] palette = level.getPalette();
+        IntBuffer cells = level.getCells();
+        long size = HEADER_SIZE + 4L * palette.length + 4L * cells.remaining();
+
+        try(RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(size);
+            MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(level.getWidth());
+            buffer.putInt(level.getHeight());
+            buffer.putFloat(level.getCellWidth());
+            buffer.putFloat(level.getCellHeight());
+            buffer.putInt(palette.length);
+            for(int color: palette) {
+                buffer.putInt(color);
+            }
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(cells);
+            buffer.force();
+        }
+    }
+
+    // Same file with the binary level extension, so Level1_Map.txt becomes Level1_Map.lvl
+    public static File binaryFileFor(File textFile) {
+        String name = textFile.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return new File(textFile.getParentFile(), baseName + EXTENSION);
+    }
+}
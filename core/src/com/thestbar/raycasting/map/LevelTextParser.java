@@ -0,0 +1,105 @@
+package com.thestbar.raycasting.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+// Streaming parser of the legacy text levels in assets/levelMaps. Each line
+// is a row of cell values separated by commas (and optionally spaces).
+// Values may have any number of digits, the width of the level is the
+// number of values on the first line and its height the number of lines.
+// The file is read in big chunks and parsed byte by byte, without creating
+// a String per line or per value
+public final class LevelTextParser {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private LevelTextParser() {
+    }
+
+    public static LevelData parse(File file, float cellWidth, float cellHeight) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        int[] cells;
+        int count = 0;
+        int width = -1;
+        int height = 0;
+        int rowCount = 0;
+        int value = 0;
+        boolean inValue = false;
+        int line = 1;
+
+        try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            // Text levels take about two bytes per cell, which gives a good first guess of the cell count
+            cells = new int[(int)Math.max(16, Math.min(Integer.MAX_VALUE - 8, channel.size() / 2 + 1))];
+
+            boolean endOfFile = false;
+            while(!endOfFile) {
+                chunk.clear();
+                endOfFile = channel.read(chunk) < 0;
+                chunk.flip();
+                byte[] bytes = chunk.array();
+                int limit = endOfFile ? 1 : chunk.limit();
+
+                for(int i = 0; i < limit; i++) {
+                    // A virtual line break at the end of the file closes the last row
+                    int c = endOfFile ? '\n' : bytes[i];
+                    if(c >= '0' && c <= '9') {
+                        int digit = c - '0';
+                        // Checked before it wraps, a wrapped value can come back positive
+                        if(value > (Integer.MAX_VALUE - digit) / 10) {
+                            throw new IOException(file + ":" + line + " cell value is too big");
+                        }
+                        value = value * 10 + digit;
+                        inValue = true;
+                        continue;
+                    }
+
+                    if(inValue) {
+                        if(count == cells.length) {
+                            int[] grown = new int[cells.length * 2];
+                            System.arraycopy(cells, 0, grown, 0, count);
+                            cells = grown;
+                        }
+                        cells[count++] = value;
+                        rowCount++;
+                        value = 0;
+                        inValue = false;
+                    }
+
+                    if(c == '\n') {
+                        if(rowCount > 0) {
+                            if(width == -1) {
+                                width = rowCount;
+                            }
+                            else if(rowCount != width) {
+                                throw new IOException(file + ":" + line + " has " + rowCount
+                                        + " cells, expected " + width);
+                            }
+                            height++;
+                            rowCount = 0;
+                        }
+                        line++;
+                    }
+                    else if(c != ',' && c != ' ' && c != '\t' && c != '\r') {
+                        throw new IOException(file + ":" + line + " unexpected character '" + (char)c + "'");
+                    }
+                }
+            }
+        }
+
+        if(height == 0) {
+            throw new IOException(file + " contains no cells");
+        }
+
+        // Trimmed so the grid map can use the array as it is
+        if(count != cells.length) {
+            int[] trimmed = new int[count];
+            System.arraycopy(cells, 0, trimmed, 0, count);
+            cells = trimmed;
+        }
+        return new LevelData(width, height, cellWidth, cellHeight, new int[0], IntBuffer.wrap(cells));
+    }
+}
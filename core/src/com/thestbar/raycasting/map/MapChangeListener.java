@@ -0,0 +1,11 @@
+package com.thestbar.raycasting.map;
+
+// Something derived from a GridMap that follows its changes, like the
+// distance field or the 2D map image. It is told about them in batches,
+// see GridMap.publishChanges()
+public interface MapChangeListener {
+    // Some of the cells in [x0, x1) x [y0, y1) changed value. The rectangle
+    // never crosses a chunk border, a batch that touched several chunks
+    // arrives as one rectangle per chunk
+    void cellsChanged(GridMap map, int x0, int y0, int x1, int y1);
+}
@@ -0,0 +1,42 @@
+package com.thestbar.raycasting.map;
+
+// Billboard objects of a level, stored as flat primitive arrays indexed by
+// sprite so that thousands of them cost no more than a few arrays
+public class Sprites {
+    public int count;
+    // World position of the center of each sprite
+    public float[] x = new float[0];
+    public float[] y = new float[0];
+    // Texture of each sprite, numbered like the cell values, so value 1 is texture index 0
+    public int[] texture = new int[0];
+
+    public void ensureCapacity(int count) {
+        if(x.length < count) {
+            int capacity = Math.max(count, x.length * 2);
+            x = grow(x, capacity);
+            y = grow(y, capacity);
+            int[] grownTexture = new int[capacity];
+            System.arraycopy(texture, 0, grownTexture, 0, this.count);
+            texture = grownTexture;
+        }
+    }
+
+    // Returns the index of the new sprite
+    public int add(float x, float y, int texture) {
+        ensureCapacity(count + 1);
+        this.x[count] = x;
+        this.y[count] = y;
+        this.texture[count] = texture;
+        return count++;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    private float[] grow(float[] values, int capacity) {
+        float[] grown = new float[capacity];
+        System.arraycopy(values, 0, grown, 0, count);
+        return grown;
+    }
+}
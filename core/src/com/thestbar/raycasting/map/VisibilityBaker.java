@@ -0,0 +1,54 @@
+package com.thestbar.raycasting.map;
+
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.io.File;
+import java.io.IOException;
+
+// Bakes the visibility sets of levels next to them, see VisibilitySet:
+//   VisibilityBaker [--max-distance 72] assets/levelMaps/Level1_Map.lvl ...
+// The cells of each level are cast on all the cores
+public final class VisibilityBaker {
+    private static final float DEFAULT_CELL_SIZE = 30;
+
+    private VisibilityBaker() {
+    }
+
+    public static File bake(File levelFile, int maxDistance, WorkerPool pool) throws IOException {
+        GridMap map = LevelData.load(levelFile, DEFAULT_CELL_SIZE, DEFAULT_CELL_SIZE).toGridMap();
+        long start = System.nanoTime();
+        VisibilitySet visibility = VisibilitySet.compute(map, maxDistance, pool);
+        long elapsed = System.nanoTime() - start;
+        File visibilityFile = VisibilitySet.fileFor(levelFile);
+        visibility.write(visibilityFile);
+
+        // A plain bitset of every cell per set, what the run length encoding is compared to
+        long bitsetBytes = (long)visibility.getSetCount() * ((map.getWidth() * map.getHeight() + 7) / 8);
+        System.out.printf("%s -> %s: %d sets in %.1f ms on %d threads, %d bytes (%d as bitsets)%n",
+                levelFile.getPath(), visibilityFile.getPath(), visibility.getSetCount(), elapsed / 1e6,
+                pool.getParallelism(), visibility.getEncodedBytes(), bitsetBytes);
+        return visibilityFile;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxDistance = VisibilitySet.DEFAULT_MAX_DISTANCE;
+        int baked = 0;
+        WorkerPool pool = new WorkerPool();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                if(args[i].equals("--max-distance") && i + 1 < args.length) {
+                    maxDistance = Integer.parseInt(args[++i]);
+                    continue;
+                }
+                bake(new File(args[i]), maxDistance, pool);
+                baked++;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        if(baked == 0) {
+            System.err.println("Usage: VisibilityBaker [--max-distance cells] level.lvl...");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.thestbar.raycasting.map;
+
+import com.thestbar.raycasting.util.ParallelBands;
+import com.thestbar.raycasting.util.WorkerPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Potentially visible set (PVS) of a level: for every empty cell the cells
+// that can be seen from anywhere inside it, at most maxDistance cells away.
+// It is cast from a grid of points over each cell, its corners and edges
+// included since the narrowest views pass next to them, and widened by one
+// cell, so a cell that slips between two rays is still in the set. That is
+// sampling, not a proof: a cell seen only through a gap narrower than the
+// rays and the widening can be missing. VisibilityCheck tests the sets against
+// dense fans of rays on the bundled levels and a generated one. Each set is
+// run length encoded, as varints of the gap before each run of visible cells
+// (counted row major over the map) and of its length, runs never cross rows.
+// Runs instead of a bitset per cell, since visible cells come in runs along the
+// rows: the sets of the bundled levels are 2 times smaller than bitsets and
+// those of bigger levels more than 10 (VisibilityBaker prints both), and the
+// sorted runs let a lookup stop at the first run past the cells it asks for.
+// VisibilityBaker builds the sets offline, in parallel over the rows of the
+// level, and saves them next to the level with the extension .pvs. Little endian:
+//   magic (0x52435056, 'RCPV'), version, width, height, max distance,
+//   the CRC32 of the cells of the level (8 bytes), then the size in bytes of
+//   the set of every cell (-1 for walls), then the sets one after the other
+// As a listener of its map, the sets that contain a changed cell are marked
+// stale, they count everything as visible until refreshStale() casts them
+// again. A cell that is not in a set can not change what that cell sees.
+// A set cast again goes into the array its cell already has when it fits, and
+// a cell keeps its array while it is a wall, so painting the same cells over
+// and over stops allocating once the arrays have grown
+public class VisibilitySet implements MapChangeListener {
+    public static final String EXTENSION = ".pvs";
+    public static final int MAGIC = 0x52435056;
+    public static final int VERSION = 1;
+    // A bit more than the 2000 units sprites are drawn up to, in cells of 30 units
+    public static final int DEFAULT_MAX_DISTANCE = 72;
+    // Magic, version, width, height, max distance and the checksum
+    private static final int HEADER_SIZE = 5 * 4 + 8;
+    // Rays start from SAMPLES x SAMPLES points spread over the cell, from edge to edge
+    private static final int SAMPLES = 4;
+    // Rays per point for each cell of maxDistance, so neighbouring rays are
+    // half a cell apart at the farthest cells
+    private static final float RAYS_PER_CELL_OF_DISTANCE = (float)(4 * Math.PI);
+    // Extra bytes of the array of a set that is cast again, about two more runs
+    private static final int REFRESH_SLACK = 8;
+
+    private final GridMap map;
+    private final int width;
+    private final int height;
+    private final int maxDistance;
+    // Encoded set of every cell, in the first setSizes[cell] bytes of its array.
+    // The size is -1 for walls, which may still keep the array of an earlier set
+    private final byte[][] sets;
+    private final int[] setSizes;
+    // Cells whose set may be wrong since a change of the map, in the order they became stale
+    private final boolean[] stale;
+    // True while the cell has an entry in staleQueue. A cell that turns into a
+    // wall keeps its entry, so a cell is never queued twice and the queue,
+    // one entry per cell, can not overflow however often cells change
+    private final boolean[] queued;
+    private final int[] staleQueue;
+    private int staleHead = 0;
+    private int staleCount = 0;
+    // Changes whenever a set changes or becomes stale, VisibleCells compares it
+    private int version = 0;
+    // Directions of the rays, shared by all the threads
+    private final float[] rayDirX;
+    private final float[] rayDirY;
+    // Scratch of the render thread, for refreshStale()
+    private CellCaster refreshCaster;
+
+    private VisibilitySet(GridMap map, int maxDistance, byte[][] sets) {
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.maxDistance = maxDistance;
+        this.sets = sets;
+        this.setSizes = new int[sets.length];
+        for(int i = 0; i < sets.length; i++) {
+            setSizes[i] = sets[i] != null ? sets[i].length : -1;
+        }
+        this.stale = new boolean[sets.length];
+        this.queued = new boolean[sets.length];
+        this.staleQueue = new int[sets.length];
+        int rays = (int)Math.ceil(RAYS_PER_CELL_OF_DISTANCE * maxDistance);
+        rayDirX = new float[rays];
+        rayDirY = new float[rays];
+        for(int i = 0; i < rays; i++) {
+            double angle = 2 * Math.PI * (i + 0.5) / rays;
+            rayDirX[i] = (float)Math.cos(angle);
+            rayDirY[i] = (float)Math.sin(angle);
+        }
+    }
+
+    // Casts the set of every empty cell of the map, the rows of cells in parallel on the pool
+    public static VisibilitySet compute(final GridMap map, int maxDistance, WorkerPool pool) {
+        final VisibilitySet visibility = new VisibilitySet(map, maxDistance, new byte[map.getWidth() * map.getHeight()][]);
+        // One scratch per thread, each band is a whole row of cells
+        final ThreadLocal<CellCaster> casters = new ThreadLocal<CellCaster>() {
+            @Override
+            protected CellCaster initialValue() {
+                return visibility.new CellCaster();
+            }
+        };
+        new ParallelBands(pool) {
+            @Override
+            protected void runBand(int y) {
+                CellCaster caster = casters.get();
+                for(int x = 0; x < map.getWidth(); x++) {
+                    if(map.get(x, y) == 0) {
+                        caster.cast(x, y);
+                        visibility.store(y * map.getWidth() + x, caster, 0);
+                    }
+                }
+            }
+        }.run(map.getHeight());
+        return visibility;
+    }
+
+    // The file the sets of a level are saved to, the level file with the extension .pvs
+    public static File fileFor(File levelFile) {
+        String name = levelFile.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return new File(levelFile.getParentFile(), baseName + EXTENSION);
+    }
+
+    // CRC32 of the cells of the map, tells whether a file was baked for this version of the level
+    public static long checksum(GridMap map) {
+        CRC32 crc = new CRC32();
+        ByteBuffer row = ByteBuffer.allocate(4 * map.getWidth()).order(ByteOrder.LITTLE_ENDIAN);
+        for(int y = 0; y < map.getHeight(); y++) {
+            row.clear();
+            for(int x = 0; x < map.getWidth(); x++) {
+                row.putInt(map.get(x, y));
+            }
+            crc.update(row.array(), 0, row.position());
+        }
+        return crc.getValue();
+    }
+
+    // True when the file exists and was baked from a level with exactly these cells
+    public static boolean isUpToDate(File file, GridMap map, long levelChecksum) {
+        if(!file.isFile()) return false;
+        try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            if(input.length() < HEADER_SIZE) return false;
+            byte[] bytes = new byte[HEADER_SIZE];
+            input.readFully(bytes);
+            ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == map.getWidth()
+                    && header.getInt(12) == map.getHeight() && header.getInt(16) > 0
+                    && header.getLong(20) == levelChecksum;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Reads the sets of the map, check isUpToDate() first
+    public static VisibilitySet read(File file, GridMap map) throws IOException {
+        MappedByteBuffer buffer;
+        try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(file + " is not a visibility file of version " + VERSION);
+        }
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int maxDistance = buffer.getInt();
+        buffer.getLong();
+        if(width != map.getWidth() || height != map.getHeight() || maxDistance <= 0) {
+            throw new IOException(file + " is for a " + width + "x" + height + " level, not "
+                    + map.getWidth() + "x" + map.getHeight());
+        }
+        if(buffer.remaining() < 4L * width * height) {
+            throw new IOException(file + " is truncated");
+        }
+
+        int[] sizes = new int[width * height];
+        buffer.asIntBuffer().get(sizes);
+        buffer.position(buffer.position() + 4 * sizes.length);
+        byte[][] sets = new byte[sizes.length][];
+        for(int i = 0; i < sizes.length; i++) {
+            if(sizes[i] < 0) continue;
+            if(buffer.remaining() < sizes[i]) {
+                throw new IOException(file + " is truncated");
+            }
+            sets[i] = new byte[sizes[i]];
+            buffer.get(sets[i]);
+        }
+        return new VisibilitySet(map, maxDistance, sets);
+    }
+
+    public void write(File file) throws IOException {
+        long size = HEADER_SIZE + 4L * sets.length + getEncodedBytes();
+
+        try(RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(size);
+            MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            buffer.putInt(maxDistance);
+            buffer.putLong(checksum(map));
+            for(int setSize: setSizes) {
+                buffer.putInt(setSize);
+            }
+            for(int i = 0; i < sets.length; i++) {
+                if(setSizes[i] >= 0) buffer.put(sets[i], 0, setSizes[i]);
+            }
+            buffer.force();
+        }
+    }
+
+    // Decodes the set of the cell (cellX, cellY) into out, unless out already holds it
+    public void select(int cellX, int cellY, VisibleCells out) {
+        int cell = map.isInside(cellX, cellY) ? cellY * width + cellX : -1;
+        if(out.source == this && out.sourceCell == cell && out.sourceVersion == version) return;
+
+        out.prepare(this, cell, version, map);
+        if(cell < 0 || setSizes[cell] < 0 || stale[cell]) return;
+        out.setKnown(true);
+        byte[] set = sets[cell];
+        int size = setSizes[cell];
+        int position = 0;
+        int index = 0;
+        while(position < size) {
+            int gap = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = set[position++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            } while(b < 0);
+            int length = 0;
+            shift = 0;
+            do {
+                b = set[position++];
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while(b < 0);
+            index += gap;
+            out.addRun(index, length);
+            index += length;
+        }
+    }
+
+    // True when the cell (x, y) is in the set of the cell (fromX, fromY), or
+    // when that set is not known. For tools and checks, select() is the fast path
+    public boolean isVisible(int fromX, int fromY, int x, int y) {
+        int cell = fromY * width + fromX;
+        if(setSizes[cell] < 0 || stale[cell]) return true;
+        return intersects(cell, x, y, x + 1, y + 1);
+    }
+
+    @Override
+    public void cellsChanged(GridMap map, int x0, int y0, int x1, int y1) {
+        // The changed cells themselves, walls have no set and new empty cells need one
+        for(int y = y0; y < y1; y++) {
+            for(int x = x0; x < x1; x++) {
+                int cell = y * width + x;
+                if(map.get(x, y) != 0) {
+                    setSizes[cell] = -1;
+                    stale[cell] = false;
+                }
+                else if(setSizes[cell] < 0) {
+                    markStale(cell);
+                }
+            }
+        }
+        // Cells farther away can not see the change, the closer ones only if it is in their set
+        int fromX = Math.max(0, x0 - maxDistance - 1);
+        int fromY = Math.max(0, y0 - maxDistance - 1);
+        int toX = Math.min(width, x1 + maxDistance + 1);
+        int toY = Math.min(height, y1 + maxDistance + 1);
+        for(int y = fromY; y < toY; y++) {
+            for(int x = fromX; x < toX; x++) {
+                int cell = y * width + x;
+                if(setSizes[cell] >= 0 && !stale[cell] && intersects(cell, x0, y0, x1, y1)) {
+                    markStale(cell);
+                }
+            }
+        }
+        version++;
+    }
+
+    private void markStale(int cell) {
+        if(stale[cell]) return;
+        stale[cell] = true;
+        if(queued[cell]) return;
+        queued[cell] = true;
+        staleQueue[(staleHead + staleCount) % staleQueue.length] = cell;
+        staleCount++;
+    }
+
+    // Casts stale sets again, oldest first, until the budget is used up. At
+    // least one set is cast per call, returns the number of sets that were cast
+    public int refreshStale(long budgetNanos) {
+        if(staleCount == 0) return 0;
+        if(refreshCaster == null) refreshCaster = new CellCaster();
+        long start = System.nanoTime();
+        int refreshed = 0;
+        do {
+            int cell = staleQueue[staleHead];
+            staleHead = (staleHead + 1) % staleQueue.length;
+            staleCount--;
+            queued[cell] = false;
+            // Turned into a wall after it became stale
+            if(!stale[cell]) continue;
+            refreshCaster.cast(cell % width, cell / width);
+            store(cell, refreshCaster, REFRESH_SLACK);
+            stale[cell] = false;
+            refreshed++;
+        } while(staleCount > 0 && System.nanoTime() - start < budgetNanos);
+        version++;
+        return refreshed;
+    }
+
+    // Copies the set the caster encoded last into the cell. A new array gets
+    // slack extra bytes, painting next to a cell can split its runs and grow it
+    private void store(int cell, CellCaster caster, int slack) {
+        int size = caster.encodedSize;
+        if(sets[cell] == null || sets[cell].length < size) {
+            sets[cell] = new byte[size + slack];
+        }
+        System.arraycopy(caster.encoded, 0, sets[cell], 0, size);
+        setSizes[cell] = size;
+    }
+
+    // True when any run of the set of the cell overlaps the cells [x0, x1) x [y0, y1)
+    private boolean intersects(int cell, int x0, int y0, int x1, int y1) {
+        byte[] set = sets[cell];
+        int size = setSizes[cell];
+        int position = 0;
+        int index = 0;
+        int last = (y1 - 1) * width + x1;
+        while(position < size) {
+            int gap = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = set[position++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            } while(b < 0);
+            int length = 0;
+            shift = 0;
+            do {
+                b = set[position++];
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while(b < 0);
+            index += gap;
+            // Runs are sorted, the rest of them is past the rectangle
+            if(index >= last) return false;
+            int y = index / width;
+            int runX0 = index - y * width;
+            if(y >= y0 && y < y1 && runX0 < x1 && runX0 + length > x0) return true;
+            index += length;
+        }
+        return false;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public int getStaleCount() {
+        return staleCount;
+    }
+
+    // Size of all the encoded sets
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for(int setSize: setSizes) {
+            if(setSize >= 0) bytes += setSize;
+        }
+        return bytes;
+    }
+
+    // Cells that have a set
+    public int getSetCount() {
+        int count = 0;
+        for(int setSize: setSizes) {
+            if(setSize >= 0) count++;
+        }
+        return count;
+    }
+
+    // Casts and encodes the set of one cell. Not thread safe, every thread needs its own
+    private class CellCaster {
+        // Cells seen in the window of maxDistance + 1 around the cell, before and after widening
+        private final int side = 2 * maxDistance + 3;
+        private final boolean[] seen = new boolean[side * side];
+        private final boolean[] widened = new boolean[side * side];
+        private byte[] encoded = new byte[256];
+        private int encodedSize;
+
+        // Leaves the set in the first encodedSize bytes of encoded
+        void cast(int cellX, int cellY) {
+            int originX = cellX - maxDistance - 1;
+            int originY = cellY - maxDistance - 1;
+            Arrays.fill(seen, false);
+            Arrays.fill(widened, false);
+
+            for(int sy = 0; sy < SAMPLES; sy++) {
+                for(int sx = 0; sx < SAMPLES; sx++) {
+                    float pointX = cellX + (float)sx / (SAMPLES - 1);
+                    float pointY = cellY + (float)sy / (SAMPLES - 1);
+                    for(int ray = 0; ray < rayDirX.length; ray++) {
+                        castRay(cellX, cellY, pointX, pointY, rayDirX[ray], rayDirY[ray], originX, originY);
+                    }
+                }
+            }
+
+            // Every neighbour of a seen cell, a cell between two rays is next to one that a ray reached
+            for(int y = 1; y < side - 1; y++) {
+                for(int x = 1; x < side - 1; x++) {
+                    if(!seen[y * side + x]) continue;
+                    for(int dy = -1; dy <= 1; dy++) {
+                        for(int dx = -1; dx <= 1; dx++) {
+                            widened[(y + dy) * side + x + dx] = true;
+                        }
+                    }
+                }
+            }
+
+            // Runs of each row, inside the map
+            encodedSize = 0;
+            int previousEnd = 0;
+            for(int y = Math.max(0, originY); y < Math.min(height, originY + side); y++) {
+                int x = Math.max(0, originX);
+                int rowEnd = Math.min(width, originX + side);
+                while(x < rowEnd) {
+                    if(!widened[(y - originY) * side + x - originX]) {
+                        x++;
+                        continue;
+                    }
+                    int runStart = x;
+                    while(x < rowEnd && widened[(y - originY) * side + x - originX]) {
+                        x++;
+                    }
+                    int index = y * width + runStart;
+                    writeVarint(index - previousEnd);
+                    writeVarint(x - runStart);
+                    previousEnd = index + x - runStart;
+                }
+            }
+        }
+
+        // Grid DDA in cell units, marks every cell the ray enters up to and including the first wall
+        private void castRay(int cellX, int cellY, float pointX, float pointY, float dirX, float dirY,
+                             int originX, int originY) {
+            int mapX = cellX;
+            int mapY = cellY;
+            float deltaX = dirX == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dirX);
+            float deltaY = dirY == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dirY);
+            int stepX = dirX < 0 ? -1 : 1;
+            int stepY = dirY < 0 ? -1 : 1;
+            float sideDistX = dirX < 0 ? (pointX - mapX) * deltaX : (mapX + 1 - pointX) * deltaX;
+            float sideDistY = dirY < 0 ? (pointY - mapY) * deltaY : (mapY + 1 - pointY) * deltaY;
+            seen[(mapY - originY) * side + mapX - originX] = true;
+
+            while(true) {
+                if(sideDistX < sideDistY) {
+                    sideDistX += deltaX;
+                    mapX += stepX;
+                }
+                else {
+                    sideDistY += deltaY;
+                    mapY += stepY;
+                }
+                if(Math.abs(mapX - cellX) > maxDistance || Math.abs(mapY - cellY) > maxDistance
+                        || !map.isInside(mapX, mapY)) return;
+                seen[(mapY - originY) * side + mapX - originX] = true;
+                if(map.get(mapX, mapY) != 0) return;
+            }
+        }
+
+        private void writeVarint(int value) {
+            if(encodedSize + 5 > encoded.length) {
+                encoded = Arrays.copyOf(encoded, encoded.length * 2);
+            }
+            while(value >= 0x80) {
+                encoded[encodedSize++] = (byte)(value | 0x80);
+                value >>>= 7;
+            }
+            encoded[encodedSize++] = (byte)value;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.thestbar.raycasting.map;
+
+// The set of one cell of a VisibilitySet, decoded into one bit per cell of
+// the map so that looking up a cell is a shift and a mask. It only decodes
+// again when the camera moves to another cell or the sets changed, so most
+// frames reuse it as it is. When the cell has no valid set (a stale one, or
+// the camera is inside a wall) every cell counts as visible
+public class VisibleCells {
+    private long[] bits = new long[0];
+    private int width;
+    private int height;
+    private float inverseCellWidth;
+    private float inverseCellHeight;
+    private boolean known;
+    // What the bits were decoded from, see VisibilitySet.select()
+    VisibilitySet source;
+    int sourceCell = -1;
+    int sourceVersion = -1;
+
+    void prepare(VisibilitySet source, int cell, int version, GridMap map) {
+        this.source = source;
+        this.sourceCell = cell;
+        this.sourceVersion = version;
+        width = map.getWidth();
+        height = map.getHeight();
+        inverseCellWidth = 1 / map.getCellWidth();
+        inverseCellHeight = 1 / map.getCellHeight();
+        int words = (width * height + 63) >>> 6;
+        if(bits.length < words) {
+            bits = new long[words];
+        }
+        for(int i = 0; i < words; i++) {
+            bits[i] = 0;
+        }
+        known = false;
+    }
+
+    void addRun(int index, int length) {
+        for(int i = index; i < index + length; i++) {
+            bits[i >>> 6] |= 1L << i;
+        }
+    }
+
+    void setKnown(boolean known) {
+        this.known = known;
+    }
+
+    // False only when the cell at (x, y) can not be seen
+    public boolean contains(int x, int y) {
+        if(!known || x < 0 || y < 0 || x >= width || y >= height) return true;
+        int index = y * width + x;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Same for the cell that the world position (x, y) is in
+    public boolean containsPoint(float x, float y) {
+        // Outside the map, where casting to int would round towards the first cells
+        if(x < 0 || y < 0) return true;
+        return contains((int)(x * inverseCellWidth), (int)(y * inverseCellHeight));
+    }
+
+    // True when the bits come from a valid set, otherwise nothing is culled
+    public boolean isKnown() {
+        return known;
+    }
+}
@@ -0,0 +1,111 @@
+package com.thestbar.raycasting.profile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Named timing scopes of the frame loop. Each scope keeps one histogram for
+// the whole run and one for the current interval, which the overlay shows and
+// then resets. Scopes are registered once and addressed by index, and while
+// the profiler is disabled begin() and end() return after a single field read
+public class FrameProfiler {
+    private final List<String> names = new ArrayList<>();
+    private final List<LatencyHistogram> totals = new ArrayList<>();
+    private final List<LatencyHistogram> intervals = new ArrayList<>();
+    // Start times of the open scopes, indexed by scope
+    private long[] startTimes = new long[0];
+    private volatile boolean enabled = false;
+
+    // Returns the index to pass to begin() and end()
+    public int register(String name) {
+        names.add(name);
+        totals.add(new LatencyHistogram());
+        intervals.add(new LatencyHistogram());
+        long[] grown = new long[names.size()];
+        System.arraycopy(startTimes, 0, grown, 0, startTimes.length);
+        startTimes = grown;
+        return names.size() - 1;
+    }
+
+    // begin() and end() of one scope must be called from the same thread
+    public void begin(int scope) {
+        if(!enabled) return;
+        startTimes[scope] = System.nanoTime();
+    }
+
+    public void end(int scope) {
+        if(!enabled) return;
+        long start = startTimes[scope];
+        // The scope was opened before the profiler was enabled
+        if(start == 0) return;
+        record(scope, System.nanoTime() - start);
+        startTimes[scope] = 0;
+    }
+
+    // For durations measured somewhere else, for example on a worker thread
+    public void record(int scope, long nanos) {
+        if(!enabled) return;
+        totals.get(scope).record(nanos);
+        intervals.get(scope).record(nanos);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if(!enabled) {
+            for(int i = 0; i < startTimes.length; i++) {
+                startTimes[i] = 0;
+            }
+        }
+        this.enabled = enabled;
+    }
+
+    public int getScopeCount() {
+        return names.size();
+    }
+
+    public String getName(int scope) {
+        return names.get(scope);
+    }
+
+    public LatencyHistogram getTotal(int scope) {
+        return totals.get(scope);
+    }
+
+    public LatencyHistogram getInterval(int scope) {
+        return intervals.get(scope);
+    }
+
+    // Called from the frame loop, indexed so no iterator is allocated
+    public void resetIntervals() {
+        for(int i = 0; i < intervals.size(); i++) {
+            intervals.get(i).reset();
+        }
+    }
+
+    public boolean hasSamples() {
+        for(LatencyHistogram histogram: totals) {
+            if(histogram.getCount() > 0) return true;
+        }
+        return false;
+    }
+
+    // One line per scope with the statistics of the whole run, in microseconds
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("scope,count,mean_us,p50_us,p99_us,max_us\n");
+        for(int i = 0; i < names.size(); i++) {
+            LatencyHistogram histogram = totals.get(i);
+            writer.write(names.get(i) + "," + histogram.getCount() + "," + micros(histogram.getMean()) + ","
+                    + micros(histogram.percentile(0.5)) + "," + micros(histogram.percentile(0.99)) + ","
+                    + micros(histogram.getMax()) + "\n");
+        }
+        writer.flush();
+    }
+
+    private static String micros(long nanos) {
+        return String.valueOf(nanos / 1000.0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.thestbar.raycasting.profile;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of durations in nanoseconds. Every power of two is
+// split in 16 buckets, so a percentile is off by at most 1/16 of its value.
+// Recording is a couple of atomic operations and never locks or allocates,
+// so any thread can record into it while another one reads it
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Durations up to 2^40 ns (about 18 minutes) get their own bucket, longer ones land in the last
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if(nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long currentMax = max.get();
+        while(nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        if(nanos < SUB_BUCKETS) return (int)nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if(exponent > MAX_EXPONENT) return BUCKET_COUNT - 1;
+        int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest duration that falls in the bucket
+    static long highestValueOf(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    // Duration that the given fraction (0.5 for the median) of the recordings does not exceed
+    public long percentile(double fraction) {
+        long total = count.get();
+        if(total == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(fraction * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if(seen >= rank) return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMean() {
+        long total = count.get();
+        return total == 0 ? 0 : sum.get() / total;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Recordings made by other threads while resetting may be partly lost
+    public void reset() {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+}
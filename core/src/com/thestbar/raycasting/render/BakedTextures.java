@@ -0,0 +1,69 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Textures as they come out of a texel file: decoded RGBA8888 texels,
+// usually a view on the memory mapped file, so nothing is decoded or copied
+// until a Pixmap for the GL upload or the TexelCache of the CPU renderers is
+// made out of them
+public class BakedTextures {
+    private final int count;
+    private final int width;
+    private final int height;
+    // R, G, B, A bytes of every texture, row major, one texture after the other
+    private final ByteBuffer texels;
+
+    public BakedTextures(int count, int width, int height, ByteBuffer texels) {
+        if(texels.remaining() != 4L * count * width * height) {
+            throw new IllegalArgumentException(count + " textures of " + width + "x" + height + " do not fit in "
+                    + texels.remaining() + " bytes");
+        }
+        this.count = count;
+        this.width = width;
+        this.height = height;
+        this.texels = texels;
+    }
+
+    // Bytes of one texture, laid out like the pixels of an RGBA8888 Pixmap
+    public ByteBuffer getTexels(int index) {
+        int textureSize = 4 * width * height;
+        ByteBuffer texture = texels.duplicate();
+        texture.position(texels.position() + index * textureSize);
+        texture.limit(texture.position() + textureSize);
+        return texture.slice();
+    }
+
+    // Pixmap for the GL upload, the texels are copied in bulk into its pixels
+    public Pixmap toPixmap(int index) {
+        Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        ByteBuffer pixels = pixmap.getPixels();
+        pixels.clear();
+        pixels.put(getTexels(index));
+        pixels.clear();
+        return pixmap;
+    }
+
+    // Same texels as TexelCache.fromPixmaps() gives for the PNGs the file was baked from
+    public TexelCache toTexelCache() {
+        int[][] rowMajorTexels = new int[count][width * height];
+        for(int i = 0; i < count; i++) {
+            getTexels(i).order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(rowMajorTexels[i]);
+        }
+        return new TexelCache(width, height, rowMajorTexels);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
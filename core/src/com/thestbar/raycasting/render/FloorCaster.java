@@ -0,0 +1,310 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.util.ParallelBands;
+import com.thestbar.raycasting.util.WorkerPool;
+
+// Casts the textured floor and ceiling of the 3D view into an int[] of
+// RGBA8888 pixels. The horizontal distance of every row only depends on
+// the resolution, so it is kept in a table that is rebuilt only when the
+// resolution changes. Each floor row is filled in the same pass as the
+// ceiling row that mirrors it, and the rows are split in bands that are
+// filled in parallel. The rays of the left and right edge come from the same
+// camera plane as the wall rays, so the floor meets the walls at every column.
+// When the walls of the frame are known the pixels they cover are skipped,
+// each row only shades the spans of columns where its wall ends before it.
+// With a FogTable the rows are fogged by their distance, and rows past the
+// end of the fog are filled with its color without sampling the textures
+public class FloorCaster {
+    // Bands smaller than this are not worth the scheduling cost
+    private static final int MIN_ROWS_PER_BAND = 16;
+
+    private final int textureWidth;
+    private final int textureHeight;
+    private final ParallelBands bands;
+    private int bandCount;
+    private int pairCount;
+
+    // Per row tables
+    private int tableWidth = -1;
+    private int tableHeight = -1;
+    private float[] rowDistance = new float[0];
+
+    // Per column number of row pairs around the center that are hidden behind
+    // a wall, only used by the next cast() and only if it has occludedColumns columns
+    private int[] coveredPairs = new int[0];
+    private int occludedColumns = -1;
+
+    // Parameters of the frame that is currently cast
+    private float rayDir0X;
+    private float rayDir0Y;
+    private float rayDir1X;
+    private float rayDir1Y;
+    private int[] pixels;
+    private int width;
+    private int height;
+    private int posX;
+    private int posY;
+    private int offX;
+    private int offY;
+    private int[] floorTexels;
+    private int[] ceilingTexels;
+    // Fog of the rows, null when there is none, and what turns a row distance into a fog distance
+    private FogTable fog;
+    private float fogDistanceScale;
+
+    public FloorCaster(WorkerPool pool, int textureWidth, int textureHeight) {
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+        bands = new ParallelBands(pool) {
+            @Override
+            protected void runBand(int band) {
+                castRows((int)((long)pairCount * band / bandCount), (int)((long)pairCount * (band + 1) / bandCount));
+            }
+        };
+    }
+
+    // Makes the next cast() skip the pixels that the walls of the hits cover. The walls
+    // are vertically centered and wallHeightScale * height / distance rows tall
+    public void occludeWithWalls(RayHits hits, int columns, int height, float wallHeightScale) {
+        if(coveredPairs.length < columns) {
+            coveredPairs = new int[columns];
+        }
+        for(int x = 0; x < columns; x++) {
+            if(hits.cellValue[x] <= 0) {
+                coveredPairs[x] = 0;
+                continue;
+            }
+            // One row less than the half height, so that rounding of the wall
+            // edges or upscaling never uncovers a pixel that was skipped
+            float halfWallHeight = wallHeightScale * height / hits.distance[x] / 2;
+            coveredPairs[x] = (int)Math.max(0, Math.min(height, halfWallHeight - 1));
+        }
+        occludedColumns = columns;
+    }
+
+    // Fogs the rows of the next casts by their distance, null turns the fog off. A wall
+    // d units away is wallHeightScale * height / d rows tall, so its foot is on the row
+    // whose distance is d / wallHeightScale: with the scale of the walls, the floor at
+    // the foot of a wall gets the same fog as the wall, whatever the size of the cells
+    public void setFog(FogTable fog, float wallHeightScale) {
+        this.fog = fog;
+        this.fogDistanceScale = wallHeightScale;
+    }
+
+    // The rays of the left and right edge go through the edges of the camera plane. They are
+    // not unit vectors, a row distance along them is the perpendicular distance
+    public void cast(int[] pixels, int width, int height, Vector2 player, CameraPlane camera,
+                     float cellWidth, float cellHeight, int[] floorTexels, int[] ceilingTexels) {
+        cast(pixels, width, height, player, camera.dirX - camera.planeX, camera.dirY - camera.planeY,
+                camera.dirX + camera.planeX, camera.dirY + camera.planeY, cellWidth, cellHeight,
+                floorTexels, ceilingTexels);
+    }
+
+    // Casts between any two edge rays. Before the camera plane the edges were the
+    // direction rotated by half the FOV, unit vectors that are cos(fov / 2) times as
+    // long as the edges of the plane, so that floor was 1 / cos(fov / 2) times larger
+    public void cast(int[] pixels, int width, int height, Vector2 player,
+                     float rayDir0X, float rayDir0Y, float rayDir1X, float rayDir1Y,
+                     float cellWidth, float cellHeight, int[] floorTexels, int[] ceilingTexels) {
+        if(width != tableWidth || height != tableHeight) {
+            buildTables(width, height);
+        }
+        // Walls of another resolution do not match the columns, shade every pixel then
+        if(occludedColumns != width) {
+            if(coveredPairs.length < width) {
+                coveredPairs = new int[width];
+            }
+            for(int x = 0; x < width; x++) {
+                coveredPairs[x] = 0;
+            }
+        }
+        occludedColumns = -1;
+
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.floorTexels = floorTexels;
+        this.ceilingTexels = ceilingTexels;
+
+        posX = (int)(player.x / cellWidth);
+        posY = (int)(player.y / cellHeight);
+        offX = (int)((player.x / cellWidth - posX) * textureWidth);
+        offY = (int)((player.y / cellHeight - posY) * textureHeight);
+
+        // Ray direction for left most and right most rays
+        this.rayDir0X = rayDir0X;
+        this.rayDir0Y = rayDir0Y;
+        this.rayDir1X = rayDir1X;
+        this.rayDir1Y = rayDir1Y;
+
+        // Row pair k holds ceiling row (height / 2 + k) and floor row (height / 2 - k)
+        pairCount = Math.max(height - height / 2, height / 2 + 1);
+        bandCount = Math.min(bands.getParallelism() * 4, Math.max(1, pairCount / MIN_ROWS_PER_BAND));
+        bands.run(bandCount);
+
+        this.pixels = null;
+        this.floorTexels = null;
+        this.ceilingTexels = null;
+    }
+
+    private void buildTables(int width, int height) {
+        if(rowDistance.length < height) {
+            rowDistance = new float[height];
+        }
+
+        // Vertical position of the camera
+        float posZ = 0.5f * height;
+
+        for(int y = 0; y < height; y++) {
+            // Current y position compared to the center of the screen
+            int p = y - height / 2;
+
+            // Horizontal distance from the camera to the floor for the current row
+            // 0.5 is the z position exactly in the middle between floor and ceiling
+            rowDistance[y] = posZ / p;
+        }
+
+        tableWidth = width;
+        tableHeight = height;
+    }
+
+    private void castRows(int fromPair, int toPair) {
+        int half = height / 2;
+        int[] covered = coveredPairs;
+        for(int k = fromPair; k < toPair; k++) {
+            int ceilingY = half + k;
+            int floorY = half - k;
+            boolean hasCeiling = ceilingY < height;
+            boolean hasFloor = k > 0 && floorY >= 0;
+            // Both rows of the pair are as far away, the floor row's distance is the negative one
+            int fogOffset = fog != null
+                    ? fog.offset(Math.abs(rowDistance[hasCeiling ? ceilingY : floorY]) * fogDistanceScale, false) : 0;
+            boolean opaque = fog != null && fog.isOpaque(fogOffset);
+
+            // Walls are centered, so the same columns are hidden in both rows of the pair
+            int x = 0;
+            while(x < width) {
+                if(covered[x] > k) {
+                    x++;
+                    continue;
+                }
+                int from = x;
+                while(x < width && covered[x] <= k) {
+                    x++;
+                }
+
+                if(opaque) {
+                    if(hasCeiling) fillRow(ceilingY, from, x);
+                    if(hasFloor) fillRow(floorY, from, x);
+                }
+                else if(hasCeiling && hasFloor) {
+                    castRowPair(ceilingY, floorY, from, x, fogOffset);
+                }
+                else if(hasCeiling) {
+                    castRow(ceilingY, ceilingTexels, offX, offY, from, x, fogOffset);
+                }
+                else if(hasFloor) {
+                    castRow(floorY, floorTexels, -offX, -offY, from, x, fogOffset);
+                }
+            }
+        }
+    }
+
+    // Columns [from, to) of a row that is too far away to see anything but the fog
+    private void fillRow(int y, int from, int to) {
+        int color = fog.getFogColor();
+        int row = y * width;
+        for(int x = from; x < to; x++) {
+            pixels[row + x] = color;
+        }
+    }
+
+    // Fills columns [from, to) of a ceiling and a floor row in one pass
+    private void castRowPair(int ceilingY, int floorY, int from, int to, int fogOffset) {
+        float ceilingDistance = rowDistance[ceilingY];
+        float floorDistance = rowDistance[floorY];
+
+        // Calculate the real world step vector we have to add for each x (parallel to camera plane)
+        // adding step by step avoids multiplications with a weight in the inner loop
+        float ceilingStepX = ceilingDistance * (rayDir1X - rayDir0X) / (float)width;
+        float ceilingStepY = ceilingDistance * (rayDir1Y - rayDir0Y) / (float)width;
+        float floorStepX = floorDistance * (rayDir1X - rayDir0X) / (float)width;
+        float floorStepY = floorDistance * (rayDir1Y - rayDir0Y) / (float)width;
+
+        // Real world coordinates of the first column. This will be updated as we step to the right
+        float ceilingWorldX = posX + ceilingDistance * rayDir0X;
+        float ceilingWorldY = posY + ceilingDistance * rayDir0Y;
+        float floorWorldX = posX + floorDistance * rayDir0X;
+        float floorWorldY = posY + floorDistance * rayDir0Y;
+        // The horizon row is infinitely far away, 0 * infinity would make its coordinates NaN
+        if(from > 0) {
+            ceilingWorldX += from * ceilingStepX;
+            ceilingWorldY += from * ceilingStepY;
+            floorWorldX += from * floorStepX;
+            floorWorldY += from * floorStepY;
+        }
+
+        int[] out = pixels;
+        int[] ceiling = ceilingTexels;
+        int[] floor = floorTexels;
+        int texW = textureWidth;
+        int texH = textureHeight;
+        int ceilingRow = ceilingY * width;
+        int floorRow = floorY * width;
+        FogTable fog = this.fog;
+        boolean shaded = fog != null && !fog.isClear(fogOffset);
+
+        for(int x = from; x < to; x++) {
+            // The cell coordinate is simply got from the integer parts of the coordinates
+            int cellX = (int)(ceilingWorldX);
+            int cellY = (int)(ceilingWorldY);
+            // Get the texture coordinate from the fractional part
+            int tx = offX + (int)(texW * (ceilingWorldX - cellX)) & (texW - 1);
+            int ty = offY + (int)(texH * (ceilingWorldY - cellY)) & (texH - 1);
+            int color = ceiling[ty * texW + tx];
+            out[ceilingRow + x] = shaded ? fog.shade(color, fogOffset) : color;
+
+            cellX = (int)(floorWorldX);
+            cellY = (int)(floorWorldY);
+            tx = -offX + (int)(texW * (floorWorldX - cellX)) & (texW - 1);
+            ty = -offY + (int)(texH * (floorWorldY - cellY)) & (texH - 1);
+            color = floor[ty * texW + tx];
+            out[floorRow + x] = shaded ? fog.shade(color, fogOffset) : color;
+
+            ceilingWorldX += ceilingStepX;
+            ceilingWorldY += ceilingStepY;
+            floorWorldX += floorStepX;
+            floorWorldY += floorStepY;
+        }
+    }
+
+    private void castRow(int y, int[] texels, int signedOffX, int signedOffY, int from, int to, int fogOffset) {
+        float distance = rowDistance[y];
+        float stepX = distance * (rayDir1X - rayDir0X) / (float)width;
+        float stepY = distance * (rayDir1Y - rayDir0Y) / (float)width;
+        float worldX = posX + distance * rayDir0X;
+        float worldY = posY + distance * rayDir0Y;
+        if(from > 0) {
+            worldX += from * stepX;
+            worldY += from * stepY;
+        }
+        int row = y * width;
+        FogTable fog = this.fog;
+        boolean shaded = fog != null && !fog.isClear(fogOffset);
+
+        for(int x = from; x < to; x++) {
+            int cellX = (int)(worldX);
+            int cellY = (int)(worldY);
+            int tx = signedOffX + (int)(textureWidth * (worldX - cellX)) & (textureWidth - 1);
+            int ty = signedOffY + (int)(textureHeight * (worldY - cellY)) & (textureHeight - 1);
+            int color = texels[ty * textureWidth + tx];
+            pixels[row + x] = shaded ? fog.shade(color, fogOffset) : color;
+
+            worldX += stepX;
+            worldY += stepY;
+        }
+    }
+}
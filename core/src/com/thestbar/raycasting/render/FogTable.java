@@ -0,0 +1,82 @@
+package com.thestbar.raycasting.render;
+
+// Distance fog and side darkening of the software frame as lookup tables.
+// Distances are quantised into LEVELS levels, from clear up to fogStart to
+// nothing but the fog color from fogEnd on. For every level, with and
+// without the side darkening, there is one table per color channel that
+// maps the 256 values of the channel to the shaded value, already shifted
+// into its place in RGBA8888. Shading a pixel is then three lookups and two
+// ORs. All the pixels of a wall column, of a sprite column and of a floor or
+// ceiling row share the same distance, so they all read the same 3 KB of
+// the tables. Distances are perpendicular ones, in world units
+public class FogTable {
+    public static final int LEVELS = 64;
+    private static final int CHANNELS = 3;
+    private static final int TABLE_SIZE = 256;
+    // Tables of one level, side darkened ones come after the plain ones
+    private static final int LEVEL_SIZE = CHANNELS * TABLE_SIZE;
+    private static final int SIDE_OFFSET = LEVELS * LEVEL_SIZE;
+
+    private final float fogStart;
+    private final float fogEnd;
+    private final float levelsPerUnit;
+    private final int fogColor;
+    private final int[] table = new int[2 * LEVELS * LEVEL_SIZE];
+
+    public FogTable(float fogStart, float fogEnd, int fogColor, float sideShade) {
+        if(fogEnd <= fogStart) {
+            throw new IllegalArgumentException("The fog has to end after it starts, got " + fogStart + " to " + fogEnd);
+        }
+        this.fogStart = fogStart;
+        this.fogEnd = fogEnd;
+        this.levelsPerUnit = (LEVELS - 1) / (fogEnd - fogStart);
+        this.fogColor = fogColor | 0xff;
+
+        for(int level = 0; level < LEVELS; level++) {
+            // Share of the texel's own color, the rest is fog
+            float visible = 1 - (float)level / (LEVELS - 1);
+            for(int channel = 0; channel < CHANNELS; channel++) {
+                int shift = 24 - 8 * channel;
+                float fog = ((fogColor >>> shift) & 0xff) * (1 - visible);
+                int plain = level * LEVEL_SIZE + channel * TABLE_SIZE;
+                for(int value = 0; value < TABLE_SIZE; value++) {
+                    table[plain + value] = Math.round(value * visible + fog) << shift;
+                    table[SIDE_OFFSET + plain + value] = Math.round(value * sideShade * visible + fog) << shift;
+                }
+            }
+        }
+    }
+
+    // Start of the tables for a distance, side darkened or not, see shade()
+    public int offset(float distance, boolean side) {
+        int level = distance <= fogStart ? 0 : (int)((distance - fogStart) * levelsPerUnit + 0.5f);
+        if(level > LEVELS - 1) level = LEVELS - 1;
+        return level * LEVEL_SIZE + (side ? SIDE_OFFSET : 0);
+    }
+
+    public int shade(int rgba, int offset) {
+        return table[offset + (rgba >>> 24)]
+                | table[offset + TABLE_SIZE + ((rgba >>> 16) & 0xff)]
+                | table[offset + 2 * TABLE_SIZE + ((rgba >>> 8) & 0xff)]
+                | (rgba & 0xff);
+    }
+
+    // True when the tables at offset leave the plain colors as they are
+    public boolean isClear(int offset) {
+        return offset == 0;
+    }
+
+    // True when the tables at offset turn every color into the fog color, then nothing needs to be sampled
+    public boolean isOpaque(int offset) {
+        return offset % SIDE_OFFSET == (LEVELS - 1) * LEVEL_SIZE;
+    }
+
+    public int getFogColor() {
+        return fogColor;
+    }
+
+    // Nothing can be seen past this distance, rays can stop there
+    public float getFogEnd() {
+        return fogEnd;
+    }
+}
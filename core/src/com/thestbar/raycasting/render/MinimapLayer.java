@@ -0,0 +1,150 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.utils.Disposable;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.MapChangeListener;
+
+// Off-screen image of the 2D map. It is built once, afterwards only the
+// cells that changed are repainted and uploaded, and drawing it costs a
+// single batch.draw() no matter how big the map is. The image is painted on
+// the thread that creates the layer, which does not have to be the render
+// thread, upload() then creates the texture on the render thread
+public class MinimapLayer implements Disposable, MapChangeListener {
+    // Largest side of the off-screen image, big maps get fewer pixels per cell
+    private static final int MAX_LAYER_SIZE = 2048;
+    // Above this many changed cells in one frame a full upload is cheaper
+    private static final int MAX_INCREMENTAL_CELLS = 64;
+    // Cell boundaries are only drawn when a cell is at least this big
+    private static final int MIN_CELL_PIXELS_FOR_BORDER = 4;
+
+    private final GridMap map;
+    private final int[] palette;
+    private final int borderColor;
+    private final int cellPixels;
+    private final Pixmap layerPixmap;
+    private final Pixmap cellPixmap;
+    private Texture layerTexture;
+
+    // Cells waiting to be repainted, the flags keep a cell from being queued twice
+    private final boolean[] dirtyFlags;
+    private final int[] dirtyCells = new int[MAX_INCREMENTAL_CELLS];
+    private int dirtyCount = 0;
+    private boolean fullRebuild = false;
+
+    // The palette holds the RGBA8888 color of each cell value, like LevelData.defaultPalette()
+    public MinimapLayer(GridMap map, int[] palette, Color borderColor) {
+        this.map = map;
+        this.palette = palette;
+        this.borderColor = Color.rgba8888(borderColor);
+
+        int largestSide = Math.max(map.getWidth(), map.getHeight());
+        cellPixels = Math.max(1, Math.min((int)map.getCellWidth(), MAX_LAYER_SIZE / largestSide));
+
+        layerPixmap = new Pixmap(map.getWidth() * cellPixels, map.getHeight() * cellPixels, Pixmap.Format.RGBA8888);
+        layerPixmap.setBlending(Pixmap.Blending.None);
+        cellPixmap = new Pixmap(cellPixels, cellPixels, Pixmap.Format.RGBA8888);
+        cellPixmap.setBlending(Pixmap.Blending.None);
+        dirtyFlags = new boolean[map.getWidth() * map.getHeight()];
+
+        for(int y = 0; y < map.getHeight(); y++) {
+            for(int x = 0; x < map.getWidth(); x++) {
+                paintCell(cellPixmap, x, y);
+                layerPixmap.drawPixmap(cellPixmap, x * cellPixels, y * cellPixels);
+            }
+        }
+    }
+
+    // Creates the texture of the painted image, must be called on the render thread before update() and draw()
+    public void upload() {
+        if(layerTexture == null) layerTexture = new Texture(layerPixmap);
+    }
+
+    // Called whenever a cell of the map changes value
+    public void markDirty(int x, int y) {
+        if(fullRebuild) return;
+        int index = y * map.getWidth() + x;
+        if(dirtyFlags[index]) return;
+        if(dirtyCount == dirtyCells.length) {
+            fullRebuild = true;
+            return;
+        }
+        dirtyFlags[index] = true;
+        dirtyCells[dirtyCount++] = index;
+    }
+
+    @Override
+    public void cellsChanged(GridMap map, int x0, int y0, int x1, int y1) {
+        // A rectangle with more cells than fit in the queue is repainted with the rest of the map
+        if((x1 - x0) * (y1 - y0) > MAX_INCREMENTAL_CELLS - dirtyCount) {
+            fullRebuild = true;
+            return;
+        }
+        for(int y = y0; y < y1; y++) {
+            for(int x = x0; x < x1; x++) {
+                markDirty(x, y);
+            }
+        }
+    }
+
+    // Repaints and uploads the cells that changed since the last call. Before
+    // upload() only the image is repainted, upload() sends all of it anyway
+    public void update() {
+        if(fullRebuild) {
+            for(int y = 0; y < map.getHeight(); y++) {
+                for(int x = 0; x < map.getWidth(); x++) {
+                    paintCell(cellPixmap, x, y);
+                    layerPixmap.drawPixmap(cellPixmap, x * cellPixels, y * cellPixels);
+                }
+            }
+            if(layerTexture != null) layerTexture.draw(layerPixmap, 0, 0);
+        }
+        else {
+            for(int i = 0; i < dirtyCount; i++) {
+                int x = dirtyCells[i] % map.getWidth();
+                int y = dirtyCells[i] / map.getWidth();
+                paintCell(cellPixmap, x, y);
+                layerPixmap.drawPixmap(cellPixmap, x * cellPixels, y * cellPixels);
+                // Only the pixels of this cell are uploaded
+                if(layerTexture != null) layerTexture.draw(cellPixmap, x * cellPixels, y * cellPixels);
+            }
+        }
+
+        for(int i = 0; i < dirtyCount; i++) {
+            dirtyFlags[dirtyCells[i]] = false;
+        }
+        dirtyCount = 0;
+        fullRebuild = false;
+    }
+
+    // Draws the whole layer over the map area, the batch must be drawing already
+    public void draw(Batch batch) {
+        float width = map.getWidth() * map.getCellWidth();
+        float height = map.getHeight() * map.getCellHeight();
+        // Flipped on Y because pixmap rows go down like the map rows
+        batch.draw(layerTexture, 0, 0, width, height, 0, 0,
+                layerTexture.getWidth(), layerTexture.getHeight(), false, true);
+    }
+
+    private void paintCell(Pixmap target, int x, int y) {
+        int value = map.get(x, y);
+        int color = value >= 0 && value < palette.length ? palette[value] : palette[0];
+        target.setColor(color);
+        target.fill();
+        if(cellPixels >= MIN_CELL_PIXELS_FOR_BORDER) {
+            // Draw cell boundary
+            target.setColor(borderColor);
+            target.drawRectangle(0, 0, cellPixels, cellPixels);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if(layerTexture != null) layerTexture.dispose();
+        layerPixmap.dispose();
+        cellPixmap.dispose();
+    }
+}
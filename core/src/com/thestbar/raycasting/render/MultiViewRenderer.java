@@ -0,0 +1,248 @@
+package com.thestbar.raycasting.render;
+
+import com.thestbar.raycasting.caster.RayCastScheduler;
+import com.thestbar.raycasting.caster.RayCaster;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.GridMap;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibilitySet;
+import com.thestbar.raycasting.map.VisibleCells;
+import com.thestbar.raycasting.util.ParallelBands;
+import com.thestbar.raycasting.util.WorkerPool;
+
+// Renders the 3D view of up to MAX_VIEWS cameras in one frame, for split
+// screen and spectator views. The views share the map, the caster with its
+// acceleration structures, the baked textures, the fog tables and the worker
+// threads, which are all set up once instead of every frame, and only keep
+// what depends on their camera (see View3D). What a frame needs that does not
+// depend on where a camera looks is done once per frame: the visibility set of
+// each cell with a camera is decoded once, and the sprites in the cells it can
+// see are found once for all the views in that cell. The rays of all the views
+// are cast as one batch, the floor of each view is split over all the threads,
+// and the sprites and walls, which are drawn on one thread per view, run for
+// all the views at the same time. Split screen views share the pixels of one
+// frame, so more of them only add their per view work. Full size views do not
+// grow sub-linearly: nearly all of a frame is drawing pixels that only one
+// camera sees, so on one core N of them cost about N frames, and only spare
+// cores let them overlap. MultiViewBenchmark measures both
+public class MultiViewRenderer {
+    public static final int MAX_VIEWS = 4;
+
+    private final WorkerPool pool;
+    private final RayCastScheduler scheduler;
+    private final ParallelBands viewBands;
+    private final View3D[] views = new View3D[MAX_VIEWS];
+    private int viewCount = 0;
+    private final float fov;
+    private final float wallHeightScale;
+    private final int textureWidth;
+    private final int textureHeight;
+    // Textures of the first view, the other views share them
+    private final TexelCache texelCache;
+    private final int[] floorTexels;
+    private final int[] ceilingTexels;
+    private final float flatTint;
+    // Visibility sets of the level, null when it has none
+    private VisibilitySet visibility;
+    // Fog of every view, null when there is none
+    private FogTable fog;
+
+    // Sprite culling that only depends on the cell a camera is in, done once per frame for
+    // every cell with a camera: its visibility set and, when several views are in the cell,
+    // the sprites in the cells of the set. Each view uses the entry of the first view in its cell
+    private final VisibleCells[] visibleCells = new VisibleCells[MAX_VIEWS];
+    private final VisibleSprites[] visibleSprites = new VisibleSprites[MAX_VIEWS];
+    private final int[] viewCellX = new int[MAX_VIEWS];
+    private final int[] viewCellY = new int[MAX_VIEWS];
+    private final int[] cellEntry = new int[MAX_VIEWS];
+    private final int[] entryViews = new int[MAX_VIEWS];
+
+    // Inputs of the batch cast, one entry per view
+    private final float[] originX = new float[MAX_VIEWS];
+    private final float[] originY = new float[MAX_VIEWS];
+    private final Rays[] rays = new Rays[MAX_VIEWS];
+    private final RayHits[] hits = new RayHits[MAX_VIEWS];
+
+    // Parameters of the per view pass that is currently running
+    private static final int PASS_PROJECT_SPRITES = 0;
+    private static final int PASS_DRAW_SOFTWARE = 1;
+    private int pass;
+    private Sprites sprites;
+    private boolean software;
+    private float spriteWidth;
+    private float spriteMaxDistance;
+
+    public MultiViewRenderer(WorkerPool pool, TexelCache texelCache, int textureWidth, int textureHeight,
+                             int[] floorTexels, int[] ceilingTexels, float flatTint, float fov, float wallHeightScale) {
+        this.pool = pool;
+        this.texelCache = texelCache;
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+        this.floorTexels = floorTexels;
+        this.ceilingTexels = ceilingTexels;
+        this.flatTint = flatTint;
+        this.fov = fov;
+        this.wallHeightScale = wallHeightScale;
+        scheduler = new RayCastScheduler(pool);
+        viewBands = new ParallelBands(pool) {
+            @Override
+            protected void runBand(int view) {
+                if(pass == PASS_PROJECT_SPRITES)
+                    projectSprites(view);
+                else
+                    views[view].drawSoftware(sprites, MultiViewRenderer.this.wallHeightScale,
+                            MultiViewRenderer.this.textureWidth);
+            }
+        };
+        setViewCount(1);
+    }
+
+    // Views are created the first time they are used and kept afterwards,
+    // so switching between view counts only allocates once
+    public void setViewCount(int count) {
+        if(count < 1 || count > MAX_VIEWS) {
+            throw new IllegalArgumentException("View count must be between 1 and " + MAX_VIEWS + ", got " + count);
+        }
+        for(int i = 0; i < count; i++) {
+            if(views[i] != null) continue;
+            views[i] = new View3D(pool, textureWidth, textureHeight);
+            SoftwareRenderer renderer = views[i].getSoftwareRenderer();
+            if(i == 0) {
+                renderer.setWallTextures(texelCache);
+                renderer.setFlatTextures(floorTexels, ceilingTexels, flatTint);
+            }
+            else {
+                renderer.shareTextures(views[0].getSoftwareRenderer());
+            }
+            views[i].setFog(fog, wallHeightScale);
+            visibleCells[i] = new VisibleCells();
+            visibleSprites[i] = new VisibleSprites();
+            rays[i] = views[i].rays;
+            hits[i] = views[i].hits;
+        }
+        viewCount = count;
+    }
+
+    // Tiles the screen area with the views in a grid that is as square as
+    // possible, and renders each of them at the resolution the scaler picks for its tile
+    public void layout(int x, int y, int width, int height, ResolutionScaler scaler) {
+        int gridRows = (int)Math.ceil(Math.sqrt(viewCount));
+        int gridColumns = (viewCount + gridRows - 1) / gridRows;
+        for(int i = 0; i < viewCount; i++) {
+            int row = i / gridColumns;
+            int column = i % gridColumns;
+            int x0 = x + width * column / gridColumns;
+            int x1 = x + width * (column + 1) / gridColumns;
+            int y0 = y + height * row / gridRows;
+            int y1 = y + height * (row + 1) / gridRows;
+            views[i].setScreenArea(x0, y0, x1 - x0, y1 - y0);
+            views[i].setResolution(scaler.getColumns(x1 - x0), scaler.getRows(y1 - y0));
+        }
+    }
+
+    // Aims every view along its direction and casts the rays of all of them as one batch
+    public void castRays(RayCaster caster, GridMap map) {
+        for(int i = 0; i < viewCount; i++) {
+            View3D view = views[i];
+            view.aim(fov);
+            originX[i] = view.position.x;
+            originY[i] = view.position.y;
+        }
+        scheduler.cast(caster, map, viewCount, originX, originY, rays, hits);
+    }
+
+    // Floor and ceiling of every view, each one split over all the threads
+    public void drawFloorAndCeiling(boolean software, float cellWidth, float cellHeight) {
+        for(int i = 0; i < viewCount; i++) {
+            views[i].drawFloorAndCeiling(software, wallHeightScale, cellWidth, cellHeight, floorTexels, ceilingTexels);
+        }
+    }
+
+    // Fogs every view by distance, null turns the fog off. The tables are only read, so the views share them
+    public void setFog(FogTable fog) {
+        this.fog = fog;
+        for(View3D view: views) {
+            if(view != null) view.setFog(fog, wallHeightScale);
+        }
+    }
+
+    // Sprites are culled with the visibility sets of the level before anything else, null turns that off
+    public void setVisibility(VisibilitySet visibility) {
+        this.visibility = visibility;
+    }
+
+    // Culls and sorts the sprites of every view, the views in parallel. The cell
+    // size finds the cell of each camera in the visibility sets, the sprites in
+    // the cells it can see are found once for all the views in that cell
+    public void projectSprites(Sprites sprites, boolean software, float spriteWidth, float maxDistance,
+                               float cellWidth, float cellHeight) {
+        for(int i = 0; i < viewCount; i++) {
+            entryViews[i] = 0;
+        }
+        for(int i = 0; i < viewCount; i++) {
+            viewCellX[i] = (int)Math.floor(views[i].position.x / cellWidth);
+            viewCellY[i] = (int)Math.floor(views[i].position.y / cellHeight);
+            int entry = i;
+            for(int j = 0; j < i; j++) {
+                if(viewCellX[j] == viewCellX[i] && viewCellY[j] == viewCellY[i]) {
+                    entry = cellEntry[j];
+                    break;
+                }
+            }
+            cellEntry[i] = entry;
+            entryViews[entry]++;
+        }
+        for(int i = 0; i < viewCount; i++) {
+            if(cellEntry[i] != i || visibility == null) continue;
+            visibility.select(viewCellX[i], viewCellY[i], visibleCells[i]);
+            // A view alone in its cell tests the cells of the sprites in front of it only
+            if(entryViews[i] > 1) visibleSprites[i].select(sprites, visibleCells[i]);
+        }
+
+        this.sprites = sprites;
+        this.software = software;
+        this.spriteWidth = spriteWidth;
+        this.spriteMaxDistance = maxDistance;
+        pass = PASS_PROJECT_SPRITES;
+        viewBands.run(viewCount);
+        this.sprites = null;
+    }
+
+    private void projectSprites(int view) {
+        int entry = cellEntry[view];
+        VisibleCells visible = visibility != null && entryViews[entry] == 1 ? visibleCells[entry] : null;
+        VisibleSprites candidates = visibility != null && entryViews[entry] > 1 ? visibleSprites[entry] : null;
+        views[view].projectSprites(sprites, visible, candidates, software, spriteWidth, wallHeightScale,
+                spriteMaxDistance);
+    }
+
+    // Draws the walls and sprites of every view into its software frame, the views in parallel
+    public void drawSoftware(Sprites sprites) {
+        this.sprites = sprites;
+        pass = PASS_DRAW_SOFTWARE;
+        viewBands.run(viewCount);
+        this.sprites = null;
+    }
+
+    // Replaces the contents of the mesh with the walls and sprites of every view,
+    // so the walls of all the views are still a single draw
+    public void drawToMesh(WallMesh mesh, Sprites sprites) {
+        int quads = 0;
+        for(int i = 0; i < viewCount; i++) {
+            quads += views[i].getMeshQuadCount();
+        }
+        mesh.begin(quads);
+        for(int i = 0; i < viewCount; i++) {
+            views[i].addToMesh(mesh, sprites, wallHeightScale, textureWidth);
+        }
+    }
+
+    public int getViewCount() {
+        return viewCount;
+    }
+
+    public View3D getView(int index) {
+        return views[index];
+    }
+}
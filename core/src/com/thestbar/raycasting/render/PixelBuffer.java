@@ -0,0 +1,43 @@
+package com.thestbar.raycasting.render;
+
+import java.util.Arrays;
+
+// Plain int[] RGBA8888 image that lives entirely on the CPU.
+// Row 0 is the first row of the buffer, the same layout that
+// Pixmap.setPixels() expects when the ints are written big endian
+public class PixelBuffer {
+    private int width;
+    private int height;
+    private int[] pixels;
+
+    public PixelBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    public void resize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        // Only grow the backing array, smaller sizes reuse the old one
+        if(pixels.length < width * height) {
+            pixels = new int[width * height];
+        }
+    }
+
+    public void clear(int color) {
+        Arrays.fill(pixels, 0, width * height, color);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,62 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.math.Matrix4;
+import com.thestbar.raycasting.profile.FrameProfiler;
+import com.thestbar.raycasting.profile.LatencyHistogram;
+
+// Table of the profiler scopes (p50, p99 and max of the last interval)
+// drawn in the top left corner of the screen. The text is rebuilt once per
+// interval, in between the same text is drawn again
+public class ProfilerOverlay {
+    private static final float MARGIN = 10;
+
+    private final FrameProfiler profiler;
+    private final BitmapFont font;
+    // Y-up projection of its own, the game camera is flipped and would draw the text upside down
+    private final Matrix4 projection = new Matrix4();
+    private final Matrix4 previousProjection = new Matrix4();
+    private final StringBuilder text = new StringBuilder();
+
+    public ProfilerOverlay(FrameProfiler profiler, BitmapFont font) {
+        this.profiler = profiler;
+        this.font = font;
+    }
+
+    // Takes the statistics of the interval that just ended and starts a new one
+    public void refresh() {
+        text.setLength(0);
+        text.append("scope              p50 us   p99 us   max us\n");
+        for(int i = 0; i < profiler.getScopeCount(); i++) {
+            LatencyHistogram histogram = profiler.getInterval(i);
+            String name = profiler.getName(i);
+            text.append(name);
+            for(int pad = name.length(); pad < 18; pad++) text.append(' ');
+            appendMicros(histogram.percentile(0.5));
+            appendMicros(histogram.percentile(0.99));
+            appendMicros(histogram.getMax());
+            text.append('\n');
+        }
+        profiler.resetIntervals();
+    }
+
+    private void appendMicros(long nanos) {
+        long micros = nanos / 1000;
+        int digits = String.valueOf(micros).length();
+        for(int pad = digits; pad < 9; pad++) text.append(' ');
+        text.append(micros);
+    }
+
+    public void draw(Batch batch, float screenWidth, float screenHeight) {
+        previousProjection.set(batch.getProjectionMatrix());
+        projection.setToOrtho2D(0, 0, screenWidth, screenHeight);
+        batch.setProjectionMatrix(projection);
+        batch.begin();
+        batch.setColor(Color.WHITE);
+        font.draw(batch, text, MARGIN, screenHeight - MARGIN);
+        batch.end();
+        batch.setProjectionMatrix(previousProjection);
+    }
+}
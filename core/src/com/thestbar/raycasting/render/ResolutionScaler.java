@@ -0,0 +1,81 @@
+package com.thestbar.raycasting.render;
+
+// Picks the internal resolution of the 3D view from the time the last frames
+// took, so that a frame stays within a time budget. Columns and rows are
+// scaled by the same factor, a multiple of 1 / SCALE_STEPS of the view size,
+// so only a handful of sizes ever occur and the buffers sized for the
+// biggest one are reused by all the others. It lowers the resolution as soon
+// as the smoothed frame time is over the budget, and raises it one step at a
+// time once there is enough headroom, which keeps it from oscillating
+public class ResolutionScaler {
+    public static final int SCALE_STEPS = 16;
+    // Weight of the newest frame in the smoothed frame time
+    private static final float SMOOTHING = 0.1f;
+    // Only scale up while the frame time is below this fraction of the budget
+    private static final float UPSCALE_HEADROOM = 0.75f;
+    // Frames to wait after a change, so the smoothed time reflects the new resolution
+    private static final int SETTLE_FRAMES = 20;
+
+    private final float budgetSeconds;
+    private final int minStep;
+    private final int maxStep;
+    private int step;
+    private float averageSeconds = -1;
+    private int framesSinceChange = 0;
+
+    public ResolutionScaler(float budgetMillis, float minScale, float maxScale) {
+        if(budgetMillis <= 0 || minScale <= 0 || minScale > maxScale) {
+            throw new IllegalArgumentException("Invalid budget " + budgetMillis + " ms or scale range ["
+                    + minScale + ", " + maxScale + "]");
+        }
+        this.budgetSeconds = budgetMillis / 1000;
+        this.minStep = Math.max(1, Math.round(minScale * SCALE_STEPS));
+        this.maxStep = Math.max(minStep, Math.round(maxScale * SCALE_STEPS));
+        this.step = maxStep;
+    }
+
+    // Feeds the time the last frame took, returns true when the resolution changed
+    public boolean update(float frameSeconds) {
+        averageSeconds = averageSeconds < 0 ? frameSeconds
+                : averageSeconds + (frameSeconds - averageSeconds) * SMOOTHING;
+        if(++framesSinceChange < SETTLE_FRAMES) return false;
+
+        int target = step;
+        if(averageSeconds > budgetSeconds) {
+            // The cost of the view grows with its pixel count, the square of the scale
+            target = Math.min(step - 1, (int)(step * Math.sqrt(budgetSeconds / averageSeconds)));
+        }
+        else if(averageSeconds < budgetSeconds * UPSCALE_HEADROOM) {
+            target = step + 1;
+        }
+        target = Math.max(minStep, Math.min(maxStep, target));
+        if(target == step) return false;
+
+        step = target;
+        framesSinceChange = 0;
+        return true;
+    }
+
+    // Goes back to the highest resolution, for when the view changed size
+    public void reset() {
+        step = maxStep;
+        averageSeconds = -1;
+        framesSinceChange = 0;
+    }
+
+    public int getColumns(int viewWidth) {
+        return Math.max(1, viewWidth * step / SCALE_STEPS);
+    }
+
+    public int getRows(int viewHeight) {
+        return Math.max(1, viewHeight * step / SCALE_STEPS);
+    }
+
+    public float getScale() {
+        return (float)step / SCALE_STEPS;
+    }
+
+    public float getAverageMillis() {
+        return Math.max(0, averageSeconds) * 1000;
+    }
+}
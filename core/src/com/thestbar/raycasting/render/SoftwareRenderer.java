@@ -0,0 +1,202 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+
+// Renders the 3D view (walls, floor and ceiling) as texels inside a
+// single PixelBuffer. Nothing in here touches OpenGL or Gdx.graphics,
+// so it works the same way on a machine without a GPU. The owner of the
+// renderer is responsible for uploading the buffer once per frame.
+// Without a FogTable the side darkening is baked into a copy of the wall
+// texels, with one every pixel is shaded by the distance of its column.
+// Wall columns sample the level of the mip chain that fits their height
+public class SoftwareRenderer {
+    // Same darkening that the sprite batch path applies with batch.setColor()
+    public static final float SIDE_SHADE = 0.7f;
+
+    private final PixelBuffer pixelBuffer;
+    private final int textureWidth;
+    private final int textureHeight;
+    // Column major wall texels indexed by mip level and cell value, plain and side shaded
+    private int[][][] wallTexels;
+    private int[][][] sideWallTexels;
+    private TexelCache texelCache;
+    // Without mipmaps every wall column samples level 0
+    private boolean mipmaps = true;
+    private int[] floorTexels;
+    private int[] ceilingTexels;
+    private final FloorCaster floorCaster;
+    // Distance fog and side darkening, null when there is no fog
+    private FogTable fog;
+
+    public SoftwareRenderer(int width, int height, int textureWidth, int textureHeight, FloorCaster floorCaster) {
+        this.pixelBuffer = new PixelBuffer(width, height);
+        this.floorCaster = floorCaster;
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+    }
+
+    // Changes the resolution the 3D view is rendered at, the buffer only grows
+    public void resize(int width, int height) {
+        pixelBuffer.resize(width, height);
+    }
+
+    public void setWallTextures(TexelCache texelCache) {
+        this.texelCache = texelCache;
+        int count = texelCache.getTextureCount();
+        int levels = texelCache.getMipLevels();
+        wallTexels = new int[levels][count + 1][];
+        sideWallTexels = new int[levels][count + 1][];
+        for(int level = 0; level < levels; level++) {
+            for(int value = 1; value <= count; value++) {
+                wallTexels[level][value] = texelCache.getWallTexels(value, level);
+                // Bake the side darkening once instead of shading each pixel
+                sideWallTexels[level][value] = shade(wallTexels[level][value], SIDE_SHADE);
+            }
+        }
+    }
+
+    public void setMipmaps(boolean mipmaps) {
+        this.mipmaps = mipmaps;
+    }
+
+    public void setFlatTextures(int[] floor, int[] ceiling, float tint) {
+        floorTexels = shade(floor, tint);
+        ceilingTexels = shade(ceiling, tint);
+    }
+
+    // Uses the textures another renderer already baked, the texels are only read, so they can be shared
+    public void shareTextures(SoftwareRenderer source) {
+        texelCache = source.texelCache;
+        wallTexels = source.wallTexels;
+        sideWallTexels = source.sideWallTexels;
+        floorTexels = source.floorTexels;
+        ceilingTexels = source.ceilingTexels;
+    }
+
+    // Also fogs the floor and the ceiling, null turns the fog off. The wall height
+    // scale the walls are drawn with matches the floor fog to the wall fog
+    public void setFog(FogTable fog, float wallHeightScale) {
+        this.fog = fog;
+        floorCaster.setFog(fog, wallHeightScale);
+    }
+
+    public void drawFloorAndCeiling(Vector2 player, CameraPlane camera, float cellWidth, float cellHeight) {
+        floorCaster.cast(pixelBuffer.getPixels(), pixelBuffer.getWidth(), pixelBuffer.getHeight(),
+                player, camera, cellWidth, cellHeight, floorTexels, ceilingTexels);
+    }
+
+    // Draws one textured wall strip of the given cell value covering columns
+    // [x0, x1) of the buffer, vertically centered and wallHeight pixels tall.
+    // The distance of the wall picks its fog
+    public void drawWallColumn(int x0, int x1, float wallHeight, boolean sideHit, int cellValue, int texX,
+                               float distance) {
+        int width = pixelBuffer.getWidth();
+        int height = pixelBuffer.getHeight();
+        int[] pixels = pixelBuffer.getPixels();
+        FogTable fog = this.fog;
+        int fogOffset = fog != null ? fog.offset(distance, sideHit) : 0;
+        // The level that is about as tall as the strip, the fog tables darken the sides themselves
+        int level = mipmaps ? texelCache.getMipLevel(wallHeight) : 0;
+        int[] texels = sideHit && fog == null ? sideWallTexels[level][cellValue] : wallTexels[level][cellValue];
+        int levelHeight = textureHeight >> level;
+
+        if(x0 < 0) x0 = 0;
+        if(x1 > width) x1 = width;
+        if(texX < 0) texX = 0;
+        if(texX > textureWidth - 1) texX = textureWidth - 1;
+        texX >>= level;
+
+        float top = height / 2f - wallHeight / 2;
+        int startY = Math.max(0, (int)Math.ceil(top));
+        int endY = Math.min(height, (int)Math.ceil(top + wallHeight));
+
+        // Step on the texture for each pixel of the wall strip
+        float texStep = levelHeight / wallHeight;
+        float texPos = (startY - top) * texStep;
+        // The whole strip is one contiguous column of the texture
+        int columnStart = texX * levelHeight;
+
+        // A wall lost in the fog is only its color, and a clear one is not shaded at all
+        boolean opaque = fog != null && fog.isOpaque(fogOffset);
+        boolean shaded = fog != null && !fog.isClear(fogOffset);
+
+        for(int y = startY; y < endY; y++) {
+            int color;
+            if(opaque) {
+                color = fog.getFogColor();
+            }
+            else {
+                int texY = (int)texPos;
+                if(texY > levelHeight - 1) texY = levelHeight - 1;
+                color = texels[columnStart + texY];
+                if(shaded) color = fog.shade(color, fogOffset);
+            }
+            int rowStart = y * width;
+            for(int x = x0; x < x1; x++) {
+                pixels[rowStart + x] = color;
+            }
+            texPos += texStep;
+        }
+    }
+
+    // Draws one column x of a sprite, vertically centered and spriteHeight pixels tall.
+    // Texels of WallMesh.SPRITE_KEY_COLOR are transparent. The buffer is shown with its
+    // last row at the top, so the texture is read from its last row up to keep the sprite upright.
+    // The distance of the sprite picks its fog
+    public void drawSpriteColumn(int x, float spriteHeight, int cellValue, int texX, float distance) {
+        int width = pixelBuffer.getWidth();
+        int height = pixelBuffer.getHeight();
+        int[] pixels = pixelBuffer.getPixels();
+        // Sprites keep level 0, averaging would blend the key color into the edges
+        int[] texels = wallTexels[0][cellValue];
+        FogTable fog = this.fog;
+        int fogOffset = fog != null ? fog.offset(distance, false) : 0;
+        boolean shaded = fog != null && !fog.isClear(fogOffset);
+
+        if(x < 0 || x >= width) return;
+        if(texX < 0) texX = 0;
+        if(texX > textureWidth - 1) texX = textureWidth - 1;
+
+        float top = height / 2f - spriteHeight / 2;
+        int startY = Math.max(0, (int)Math.ceil(top));
+        int endY = Math.min(height, (int)Math.ceil(top + spriteHeight));
+
+        float texStep = textureHeight / spriteHeight;
+        float texPos = (startY - top) * texStep;
+        int columnEnd = texX * textureHeight + textureHeight - 1;
+
+        for(int y = startY; y < endY; y++) {
+            int texY = (int)texPos;
+            if(texY > textureHeight - 1) texY = textureHeight - 1;
+            int color = texels[columnEnd - texY];
+            if(color != WallMesh.SPRITE_KEY_COLOR) {
+                pixels[y * width + x] = shaded ? fog.shade(color, fogOffset) : color;
+            }
+            texPos += texStep;
+        }
+    }
+
+    public PixelBuffer getPixelBuffer() {
+        return pixelBuffer;
+    }
+
+    public FloorCaster getFloorCaster() {
+        return floorCaster;
+    }
+
+    static int[] shade(int[] texels, float factor) {
+        int[] shaded = new int[texels.length];
+        for(int i = 0; i < texels.length; i++) {
+            shaded[i] = shade(texels[i], factor);
+        }
+        return shaded;
+    }
+
+    static int shade(int rgba, float factor) {
+        int r = (int)(((rgba >>> 24) & 0xff) * factor);
+        int g = (int)(((rgba >>> 16) & 0xff) * factor);
+        int b = (int)(((rgba >>> 8) & 0xff) * factor);
+        return (r << 24) | (g << 16) | (b << 8) | (rgba & 0xff);
+    }
+}
@@ -0,0 +1,280 @@
+package com.thestbar.raycasting.render;
+
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibleCells;
+
+// Billboard sprites of the 3D view. The wall pass leaves the perpendicular
+// distance of every column in a depth buffer. Each frame the sprites are
+// moved into camera space, the ones behind the camera, too far away, outside
+// of the FOV or behind the walls of every column they cover are dropped, and
+// the rest is sorted back to front. Drawing then only touches the columns
+// where a sprite is closer than the wall. Everything lives in primitive
+// arrays that only grow, so a frame with thousands of sprites does not allocate
+public class SpriteRenderer {
+    // Sprites closer than this to the camera plane are not drawn
+    private static final float NEAR_PLANE = 1f;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+
+    // Perpendicular distance of the wall in every column, infinite where the ray hit nothing
+    private float[] depthBuffer = new float[0];
+    private int columns;
+
+    // Sprites that survived the culling, back to front after project()
+    private int visibleCount;
+    private int[] visibleSprite = new int[0];
+    private float[] visibleDepth = new float[0];
+    // Left edge and width of the sprite in columns, height in rows
+    private float[] visibleLeft = new float[0];
+    private float[] visibleWidth = new float[0];
+    private float[] visibleHeight = new float[0];
+    // Range [first, last) of columns that the sprite covers
+    private int[] visibleFirst = new int[0];
+    private int[] visibleLast = new int[0];
+
+    // Candidates of the current frame in the order they were found, and the radix sort scratch
+    private int candidateCount;
+    private int[] candidateSprite = new int[0];
+    private float[] candidateDepth = new float[0];
+    private float[] candidateLeft = new float[0];
+    private float[] candidateWidth = new float[0];
+    private float[] candidateHeight = new float[0];
+    private int[] candidateFirst = new int[0];
+    private int[] candidateLast = new int[0];
+    private int[] sortKeys = new int[0];
+    private int[] sortOrder = new int[0];
+    private int[] sortKeysScratch = new int[0];
+    private int[] sortOrderScratch = new int[0];
+    private final int[] radixCounts = new int[RADIX_SIZE];
+
+    // Records the depth of the walls of the frame, one entry per ray
+    public void setDepth(RayHits hits, int columns) {
+        if(depthBuffer.length < columns) {
+            depthBuffer = new float[columns];
+        }
+        for(int i = 0; i < columns; i++) {
+            depthBuffer[i] = hits.cellValue[i] > 0 ? hits.distance[i] : Float.POSITIVE_INFINITY;
+        }
+        this.columns = columns;
+    }
+
+    // Finds the sprites that are visible from the camera at (originX, originY)
+    // and sorts them back to front. A sprite is spriteWidth world units wide and
+    // heightScale * rows / distance rows tall, the same as a wall of its distance
+    public void project(Sprites sprites, float originX, float originY, CameraPlane camera, int rows,
+                        float spriteWidth, float heightScale, float maxDistance) {
+        project(sprites, originX, originY, camera, rows, spriteWidth, heightScale, maxDistance, null);
+    }
+
+    // Same, but also drops the sprites in cells that the camera's visible cells
+    // do not contain, before any of the per column work. visible may be null
+    public void project(Sprites sprites, float originX, float originY, CameraPlane camera, int rows,
+                        float spriteWidth, float heightScale, float maxDistance, VisibleCells visible) {
+        project(sprites, null, originX, originY, camera, rows, spriteWidth, heightScale, maxDistance, visible);
+    }
+
+    // Same, but only looks at the sprites that were already found in the visible cells
+    public void project(Sprites sprites, VisibleSprites candidates, float originX, float originY, CameraPlane camera,
+                        int rows, float spriteWidth, float heightScale, float maxDistance) {
+        project(sprites, candidates, originX, originY, camera, rows, spriteWidth, heightScale, maxDistance, null);
+    }
+
+    private void project(Sprites sprites, VisibleSprites candidates, float originX, float originY, CameraPlane camera,
+                         int rows, float spriteWidth, float heightScale, float maxDistance, VisibleCells visible) {
+        ensureCapacity(sprites.count);
+        candidateCount = 0;
+
+        // Inverse of the matrix with the camera plane and the direction as columns
+        float invDet = 1 / (camera.planeX * camera.dirY - camera.dirX * camera.planeY);
+        float halfColumns = columns / 2f;
+        // Columns of a sprite at a distance of 1
+        float widthAtOne = spriteWidth * halfColumns / camera.getPlaneLength();
+
+        boolean culling = visible != null && visible.isKnown();
+        int count = candidates != null ? candidates.getCount() : sprites.count;
+        for(int k = 0; k < count; k++) {
+            int i = candidates != null ? candidates.get(k) : k;
+            float relativeX = sprites.x[i] - originX;
+            float relativeY = sprites.y[i] - originY;
+            // Distance along the direction vector, the same perpendicular distance as the walls
+            float depth = invDet * (-camera.planeY * relativeX + camera.planeX * relativeY);
+            if(depth < NEAR_PLANE || depth > maxDistance) continue;
+            // Cheaper than the projection, but not than the depth test
+            if(culling && !visible.containsPoint(sprites.x[i], sprites.y[i])) continue;
+
+            // Position on the camera plane, -1 is the left edge of the view and 1 the right one
+            float planeOffset = invDet * (camera.dirY * relativeX - camera.dirX * relativeY) / depth;
+            float width = widthAtOne / depth;
+            float left = halfColumns * (1 + planeOffset) - width / 2;
+
+            // Columns whose center is inside the sprite
+            int first = Math.max(0, (int)Math.ceil(left - 0.5f));
+            int last = Math.min(columns, (int)Math.ceil(left + width - 0.5f));
+            if(first >= last) continue;
+
+            if(!isInFrontOfWalls(depth, first, last)) continue;
+
+            int c = candidateCount++;
+            candidateSprite[c] = i;
+            candidateDepth[c] = depth;
+            candidateLeft[c] = left;
+            candidateWidth[c] = width;
+            candidateHeight[c] = heightScale * rows / depth;
+            candidateFirst[c] = first;
+            candidateLast[c] = last;
+        }
+
+        sortByDepth();
+
+        // The sort is nearest first, the visible list is farthest first
+        visibleCount = candidateCount;
+        for(int k = 0; k < candidateCount; k++) {
+            int c = sortOrder[candidateCount - 1 - k];
+            visibleSprite[k] = candidateSprite[c];
+            visibleDepth[k] = candidateDepth[c];
+            visibleLeft[k] = candidateLeft[c];
+            visibleWidth[k] = candidateWidth[c];
+            visibleHeight[k] = candidateHeight[c];
+            visibleFirst[k] = candidateFirst[c];
+            visibleLast[k] = candidateLast[c];
+        }
+    }
+
+    // Per column occlusion, true when at least one column of the sprite is not hidden by its wall
+    private boolean isInFrontOfWalls(float depth, int first, int last) {
+        for(int column = first; column < last; column++) {
+            if(depth < depthBuffer[column]) return true;
+        }
+        return false;
+    }
+
+    // LSD radix sort of the candidates by depth, nearest first. Positive floats
+    // sort like their bits as ints, so the sort only ever looks at integers
+    private void sortByDepth() {
+        int count = candidateCount;
+        int[] keys = sortKeys;
+        int[] order = sortOrder;
+        int[] keysScratch = sortKeysScratch;
+        int[] orderScratch = sortOrderScratch;
+        for(int i = 0; i < count; i++) {
+            keys[i] = Float.floatToRawIntBits(candidateDepth[i]);
+            order[i] = i;
+        }
+
+        for(int shift = 0; shift < 32; shift += RADIX_BITS) {
+            int[] counts = radixCounts;
+            for(int i = 0; i < RADIX_SIZE; i++) {
+                counts[i] = 0;
+            }
+            for(int i = 0; i < count; i++) {
+                counts[(keys[i] >>> shift) & (RADIX_SIZE - 1)]++;
+            }
+            // A digit that is the same for every key leaves the order as it is
+            if(count == 0 || counts[(keys[0] >>> shift) & (RADIX_SIZE - 1)] == count) continue;
+
+            int sum = 0;
+            for(int i = 0; i < RADIX_SIZE; i++) {
+                int digitCount = counts[i];
+                counts[i] = sum;
+                sum += digitCount;
+            }
+            for(int i = 0; i < count; i++) {
+                int position = counts[(keys[i] >>> shift) & (RADIX_SIZE - 1)]++;
+                keysScratch[position] = keys[i];
+                orderScratch[position] = order[i];
+            }
+
+            int[] swap = keys;
+            keys = keysScratch;
+            keysScratch = swap;
+            swap = order;
+            order = orderScratch;
+            orderScratch = swap;
+        }
+
+        sortKeys = keys;
+        sortOrder = order;
+        sortKeysScratch = keysScratch;
+        sortOrderScratch = orderScratch;
+    }
+
+    // Draws the visible sprites into the software renderer, one pixel column per ray
+    public void draw(Sprites sprites, SoftwareRenderer renderer, int textureWidth) {
+        for(int k = 0; k < visibleCount; k++) {
+            int cellValue = sprites.texture[visibleSprite[k]];
+            float depth = visibleDepth[k];
+            float left = visibleLeft[k];
+            float width = visibleWidth[k];
+            float height = visibleHeight[k];
+            for(int column = visibleFirst[k]; column < visibleLast[k]; column++) {
+                if(depth >= depthBuffer[column]) continue;
+                int texX = (int)((column + 0.5f - left) / width * textureWidth);
+                renderer.drawSpriteColumn(column, height, cellValue, texX, depth);
+            }
+        }
+    }
+
+    // Adds the visible sprites to the mesh as one quad per run of unoccluded columns,
+    // where each column is columnWidth pixels wide and the view starts at (xOffset, yOffset)
+    public void draw(Sprites sprites, WallMesh mesh, float xOffset, float yOffset, float columnWidth, float viewHeight) {
+        for(int k = 0; k < visibleCount; k++) {
+            int cellValue = sprites.texture[visibleSprite[k]];
+            float depth = visibleDepth[k];
+            float left = visibleLeft[k];
+            float right = left + visibleWidth[k];
+            float height = visibleHeight[k];
+            float y = yOffset + viewHeight / 2 - height / 2;
+            int last = visibleLast[k];
+
+            int column = visibleFirst[k];
+            while(column < last) {
+                if(depth >= depthBuffer[column]) {
+                    column++;
+                    continue;
+                }
+                int runStart = column;
+                while(column < last && depth < depthBuffer[column]) {
+                    column++;
+                }
+                // The outer ends of the sprite keep their exact position, inner ends follow the columns
+                float runLeft = runStart == visibleFirst[k] ? Math.max(left, 0) : runStart;
+                float runRight = column == last ? Math.min(right, columns) : column;
+                float u = (runLeft - left) / (right - left);
+                float u2 = (runRight - left) / (right - left);
+                mesh.addSprite(xOffset + runLeft * columnWidth, y, (runRight - runLeft) * columnWidth, height,
+                        cellValue, u, u2);
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if(candidateSprite.length < count) {
+            int capacity = Math.max(count, candidateSprite.length * 2);
+            candidateSprite = new int[capacity];
+            candidateDepth = new float[capacity];
+            candidateLeft = new float[capacity];
+            candidateWidth = new float[capacity];
+            candidateHeight = new float[capacity];
+            candidateFirst = new int[capacity];
+            candidateLast = new int[capacity];
+            sortKeys = new int[capacity];
+            sortOrder = new int[capacity];
+            sortKeysScratch = new int[capacity];
+            sortOrderScratch = new int[capacity];
+            visibleSprite = new int[capacity];
+            visibleDepth = new float[capacity];
+            visibleLeft = new float[capacity];
+            visibleWidth = new float[capacity];
+            visibleHeight = new float[capacity];
+            visibleFirst = new int[capacity];
+            visibleLast = new int[capacity];
+        }
+    }
+
+    // Sprites drawn in the last projected frame
+    public int getVisibleCount() {
+        return visibleCount;
+    }
+}
@@ -0,0 +1,125 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// GPU texture whose contents are replaced every frame from an int[] of
+// RGBA8888 pixels. The textures and the staging byte buffers are allocated
+// once and only reallocated when the size grows past them, a smaller size
+// uses their top left corner (see getWidth() and getHeight()). With double buffering
+// enabled consecutive frames upload into different textures, so the upload
+// of a new frame never has to wait for the GPU to finish reading the last one
+public class StreamingTexture implements Disposable {
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final int bufferCount;
+    private final Texture[] textures;
+    private final ByteBuffer[] byteBuffers;
+    // Int views of the byte buffers, created once so that an update does not allocate
+    private final IntBuffer[] intBuffers;
+    private int current = 0;
+    // Size of the textures and byte buffers
+    private int capacityWidth;
+    private int capacityHeight;
+    // Size of the uploaded image
+    private int width;
+    private int height;
+    private long bytesUploadedThisFrame = 0;
+    private long bytesUploadedLastFrame = 0;
+    private long totalBytesUploaded = 0;
+
+    public StreamingTexture(int width, int height, boolean doubleBuffered) {
+        this.bufferCount = doubleBuffered ? 2 : 1;
+        this.textures = new Texture[bufferCount];
+        this.byteBuffers = new ByteBuffer[bufferCount];
+        this.intBuffers = new IntBuffer[bufferCount];
+        allocate(width, height);
+    }
+
+    private void allocate(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.capacityWidth = width;
+        this.capacityHeight = height;
+        for(int i = 0; i < bufferCount; i++) {
+            if(textures[i] != null) textures[i].dispose();
+            textures[i] = new Texture(width, height, Pixmap.Format.RGBA8888);
+            byteBuffers[i] = ByteBuffer.allocateDirect(width * height * BYTES_PER_PIXEL);
+            intBuffers[i] = byteBuffers[i].asIntBuffer();
+        }
+    }
+
+    public void resize(int width, int height) {
+        if(width > capacityWidth || height > capacityHeight) {
+            allocate(Math.max(width, capacityWidth), Math.max(height, capacityHeight));
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    // Must be called once at the start of each frame, so the per frame counter is correct
+    public void beginFrame() {
+        bytesUploadedLastFrame = bytesUploadedThisFrame;
+        bytesUploadedThisFrame = 0;
+    }
+
+    // Uploads the first width * height ints of pixels in place
+    public void update(int[] pixels) {
+        int next = (current + 1) % bufferCount;
+        ByteBuffer byteBuffer = byteBuffers[next];
+        IntBuffer intBuffer = intBuffers[next];
+
+        // Same copy as ByteBufferHandler.put_ints() but through the cached view
+        byteBuffer.clear();
+        intBuffer.clear();
+        intBuffer.put(pixels, 0, width * height);
+
+        textures[next].bind();
+        Gdx.gl.glPixelStorei(GL20.GL_UNPACK_ALIGNMENT, 1);
+        Gdx.gl.glTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, 0, width, height,
+                GL20.GL_RGBA, GL20.GL_UNSIGNED_BYTE, byteBuffer);
+
+        current = next;
+        long bytes = (long)width * height * BYTES_PER_PIXEL;
+        bytesUploadedThisFrame += bytes;
+        totalBytesUploaded += bytes;
+    }
+
+    // Texture that holds the most recent upload in its top left width x height texels
+    public Texture getTexture() {
+        return textures[current];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getBytesUploadedThisFrame() {
+        return bytesUploadedThisFrame;
+    }
+
+    public long getBytesUploadedLastFrame() {
+        return bytesUploadedLastFrame;
+    }
+
+    public long getTotalBytesUploaded() {
+        return totalBytesUploaded;
+    }
+
+    @Override
+    public void dispose() {
+        for(Texture texture: textures) {
+            texture.dispose();
+        }
+    }
+}
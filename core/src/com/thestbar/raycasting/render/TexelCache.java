@@ -0,0 +1,150 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Every texture decoded once into a plain int[] of RGBA8888 texels (the same
+// values Pixmap.getPixel() returns), so the CPU renderers never go through
+// JNI while sampling. Wall textures are stored column major, which makes a
+// vertical wall strip one contiguous read. Floor and ceiling textures are
+// stored row major, since the floor caster walks them along rows.
+// Both are addressed by map cell value, where value 1 is texture index 0.
+// Walls also have a mip chain: every level is a 2x2 box filter of the one
+// before, down to one texel wide or tall. A wall column only a few pixels
+// tall reads a level about as tall as itself instead of striding through
+// the full texture, which touches fewer cache lines and aliases less.
+// Texture sizes are powers of two, like the floor caster expects
+public class TexelCache {
+    private final int textureWidth;
+    private final int textureHeight;
+    private final int mipLevels;
+    // Column major mip chain of every wall texture, level 0 is the texture itself
+    private final int[][][] wallMips;
+    private final int[][] flatTexels;
+
+    public TexelCache(int textureWidth, int textureHeight, int[][] rowMajorTexels) {
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+        this.flatTexels = rowMajorTexels;
+        this.mipLevels = 32 - Integer.numberOfLeadingZeros(Math.min(textureWidth, textureHeight));
+        this.wallMips = new int[rowMajorTexels.length][mipLevels][];
+        for(int i = 0; i < rowMajorTexels.length; i++) {
+            wallMips[i][0] = toColumnMajor(rowMajorTexels[i], textureWidth, textureHeight);
+            for(int level = 1; level < mipLevels; level++) {
+                wallMips[i][level] = downsample(wallMips[i][level - 1], textureWidth >> (level - 1),
+                        textureHeight >> (level - 1));
+            }
+        }
+    }
+
+    // Decodes the pixmaps, in any format, to RGBA8888 texels
+    public static TexelCache fromPixmaps(Pixmap[] pixmaps) {
+        int width = pixmaps[0].getWidth();
+        int height = pixmaps[0].getHeight();
+        int[][] texels = new int[pixmaps.length][];
+        for(int i = 0; i < pixmaps.length; i++) {
+            if(pixmaps[i].getWidth() != width || pixmaps[i].getHeight() != height) {
+                throw new IllegalArgumentException("All textures must be " + width + "x" + height);
+            }
+            texels[i] = decode(pixmaps[i]);
+        }
+        return new TexelCache(width, height, texels);
+    }
+
+    static int[] decode(Pixmap pixmap) {
+        Pixmap rgba = pixmap;
+        // Convert once, so the pixels can be copied in bulk instead of calling getPixel() per texel
+        if(pixmap.getFormat() != Pixmap.Format.RGBA8888) {
+            rgba = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Pixmap.Format.RGBA8888);
+            rgba.setBlending(Pixmap.Blending.None);
+            rgba.drawPixmap(pixmap, 0, 0);
+        }
+
+        int[] texels = new int[pixmap.getWidth() * pixmap.getHeight()];
+        // Pixmap bytes are R, G, B, A, which read as a big endian int is RGBA8888
+        ByteBuffer pixels = rgba.getPixels().duplicate();
+        pixels.clear();
+        pixels.order(ByteOrder.BIG_ENDIAN).asIntBuffer().get(texels);
+
+        if(rgba != pixmap) rgba.dispose();
+        return texels;
+    }
+
+    static int[] toColumnMajor(int[] rowMajor, int width, int height) {
+        int[] columnMajor = new int[rowMajor.length];
+        for(int y = 0; y < height; y++) {
+            for(int x = 0; x < width; x++) {
+                columnMajor[x * height + y] = rowMajor[y * width + x];
+            }
+        }
+        return columnMajor;
+    }
+
+    // Half the width and height of a column major texture, each channel averaged over 2x2 texels
+    static int[] downsample(int[] columnMajor, int width, int height) {
+        int halfWidth = width / 2;
+        int halfHeight = height / 2;
+        int[] half = new int[halfWidth * halfHeight];
+        for(int x = 0; x < halfWidth; x++) {
+            int left = 2 * x * height;
+            int right = left + height;
+            for(int y = 0; y < halfHeight; y++) {
+                int a = columnMajor[left + 2 * y];
+                int b = columnMajor[left + 2 * y + 1];
+                int c = columnMajor[right + 2 * y];
+                int d = columnMajor[right + 2 * y + 1];
+                int texel = 0;
+                for(int shift = 0; shift < 32; shift += 8) {
+                    int sum = ((a >>> shift) & 0xff) + ((b >>> shift) & 0xff) + ((c >>> shift) & 0xff)
+                            + ((d >>> shift) & 0xff);
+                    texel |= ((sum + 2) >> 2) << shift;
+                }
+                half[x * halfHeight + y] = texel;
+            }
+        }
+        return half;
+    }
+
+    // Column major texels of the wall with the given cell value, index with (texX * height + texY)
+    public int[] getWallTexels(int cellValue) {
+        return wallMips[cellValue - 1][0];
+    }
+
+    // Same for a level of the mip chain, which is (width >> level) x (height >> level) texels
+    public int[] getWallTexels(int cellValue, int level) {
+        return wallMips[cellValue - 1][level];
+    }
+
+    // Level whose height is the smallest one that is still at least columnHeight
+    // texels, so a column of that many pixels never skips over texels of it
+    public int getMipLevel(float columnHeight) {
+        int level = 0;
+        while(level < mipLevels - 1 && (textureHeight >> (level + 1)) >= columnHeight) {
+            level++;
+        }
+        return level;
+    }
+
+    public int getMipLevels() {
+        return mipLevels;
+    }
+
+    // Row major texels of the floor/ceiling with the given cell value, index with (texY * width + texX)
+    public int[] getFlatTexels(int cellValue) {
+        return flatTexels[cellValue - 1];
+    }
+
+    public int getTextureCount() {
+        return wallMips.length;
+    }
+
+    public int getTextureWidth() {
+        return textureWidth;
+    }
+
+    public int getTextureHeight() {
+        return textureHeight;
+    }
+}
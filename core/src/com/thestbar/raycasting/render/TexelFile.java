@@ -0,0 +1,145 @@
+package com.thestbar.raycasting.render;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+// Baked texture format, all the textures already decoded to RGBA8888 in one
+// file, so starting the game maps it instead of decoding PNGs. The header and
+// the index are little endian like the level format:
+//   magic (0x52435458, 'RCTX'), version, texture count, texture width, texture height,
+//   then per texture the size and the CRC32 (8 bytes each) of the PNG it was baked from
+// The texels follow at the next multiple of DATA_ALIGNMENT, texture after
+// texture, row major, as the R, G, B, A bytes of a Pixmap. They can be copied
+// into a Pixmap as they are, and read as big endian ints they are the values
+// Pixmap.getPixel() returns. The sizes and checksums of the sources tell when
+// the file is stale, the caller bakes it again then. Checksums instead of
+// modification times, since textures inside a jar or an APK do not have any
+public final class TexelFile {
+    public static final int MAGIC = 0x52435458;
+    public static final int VERSION = 1;
+    // Start of the texels, a cache line so every texture starts on one
+    public static final int DATA_ALIGNMENT = 64;
+    // Magic, version, count, width and height
+    private static final int HEADER_SIZE = 5 * 4;
+    private static final int INDEX_ENTRY_SIZE = 2 * 8;
+
+    private TexelFile() {
+    }
+
+    // Size and checksum of a source, as isUpToDate() and write() expect them
+    public static long checksum(byte[] source) {
+        CRC32 crc = new CRC32();
+        crc.update(source, 0, source.length);
+        return crc.getValue();
+    }
+
+    // True when the file exists and was baked from sources of exactly these sizes and checksums
+    public static boolean isUpToDate(File file, long[] sourceSizes, long[] sourceChecksums) {
+        if(!file.isFile()) return false;
+        // Read instead of mapped, a mapping would keep the file from being written again on some systems
+        try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            int indexSize = HEADER_SIZE + sourceSizes.length * INDEX_ENTRY_SIZE;
+            if(input.length() < indexSize) return false;
+            byte[] bytes = new byte[indexSize];
+            input.readFully(bytes);
+            ByteBuffer index = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            if(!hasValidHeader(index, input.length()) || index.getInt(8) != sourceSizes.length) return false;
+            for(int i = 0; i < sourceSizes.length; i++) {
+                int entry = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+                if(index.getLong(entry) != sourceSizes[i] || index.getLong(entry + 8) != sourceChecksums[i]) return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static BakedTextures read(File file) throws IOException {
+        ByteBuffer buffer = map(file);
+        if(!hasValidHeader(buffer, file.length())) {
+            throw new IOException(file + " is not a texel file of version " + VERSION);
+        }
+        int count = buffer.getInt(8);
+        int width = buffer.getInt(12);
+        int height = buffer.getInt(16);
+        buffer.position(dataOffset(count));
+        return new BakedTextures(count, width, height, buffer.slice());
+    }
+
+    // Writes the file next to its final place and renames it there once it is complete
+    // and on disk, so a bake that dies halfway never leaves a file that isUpToDate() accepts
+    public static void write(File file, TexelCache cache, long[] sourceSizes, long[] sourceChecksums) throws IOException {
+        int count = cache.getTextureCount();
+        int texelsPerTexture = cache.getTextureWidth() * cache.getTextureHeight();
+        int size = dataOffset(count) + 4 * count * texelsPerTexture;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putInt(cache.getTextureWidth());
+        buffer.putInt(cache.getTextureHeight());
+        for(int i = 0; i < count; i++) {
+            buffer.putLong(sourceSizes[i]);
+            buffer.putLong(sourceChecksums[i]);
+        }
+
+        buffer.position(dataOffset(count));
+        IntBuffer texels = buffer.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        for(int i = 0; i < count; i++) {
+            texels.put(cache.getFlatTexels(i + 1));
+        }
+        buffer.position(0);
+
+        File partial = new File(file.getPath() + ".partial");
+        try(FileOutputStream output = new FileOutputStream(partial)) {
+            FileChannel channel = output.getChannel();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        }
+        // Renaming onto an existing file fails on Windows, without a file the next start just bakes again
+        if(!partial.renameTo(file) && !(file.delete() && partial.renameTo(file))) {
+            partial.delete();
+            throw new IOException("Could not move " + partial + " to " + file);
+        }
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try(RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    // Magic, version and a file size that matches the count and the texture size
+    private static boolean hasValidHeader(ByteBuffer buffer, long fileSize) {
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) return false;
+        int count = buffer.getInt(8);
+        int width = buffer.getInt(12);
+        int height = buffer.getInt(16);
+        if(count <= 0 || width <= 0 || height <= 0) return false;
+        return fileSize == dataOffset(count) + 4L * count * width * height;
+    }
+
+    private static int dataOffset(int count) {
+        int indexEnd = HEADER_SIZE + count * INDEX_ENTRY_SIZE;
+        return (indexEnd + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+    }
+}
@@ -0,0 +1,228 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.thestbar.raycasting.caster.CameraPlane;
+import com.thestbar.raycasting.caster.RayHits;
+import com.thestbar.raycasting.caster.Rays;
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibleCells;
+import com.thestbar.raycasting.util.CenteredRectangle;
+import com.thestbar.raycasting.util.WorkerPool;
+
+// One camera of the 3D view and everything that depends on it: the rays and
+// hits of its frame, its visible sprites, the buffers it is rendered into and
+// the part of the screen it is shown on. The map, the textures and the worker
+// threads are shared by all the views, see MultiViewRenderer. A view never
+// allocates once its buffers have grown to its resolution
+public class View3D {
+    // Where the camera is and where it looks, set by the owner before every frame
+    public final Vector2 position = new Vector2();
+    public final Vector2 direction = new Vector2(1, 0);
+    public final CameraPlane camera = new CameraPlane();
+    public final Rays rays = new Rays();
+    public final RayHits hits = new RayHits();
+    private final SpriteRenderer spriteRenderer = new SpriteRenderer();
+    // Per view because the floor caster keeps the walls of the view's last frame
+    private final FloorCaster floorCaster;
+    private final SoftwareRenderer softwareRenderer;
+    // Floor and ceiling alone, the background of the walls drawn with the sprite batch
+    private final PixelBuffer background = new PixelBuffer(1, 1);
+    private final CenteredRectangle wallRectangle = new CenteredRectangle();
+    // Fog of the software frame, null when there is none
+    private FogTable fog;
+    // Part of the screen the view is shown on, in pixels
+    private int screenX;
+    private int screenY;
+    private int screenWidth = 1;
+    private int screenHeight = 1;
+    // Internal resolution the view is rendered at, one ray is cast per column
+    private int columns = 1;
+    private int rows = 1;
+    // Statistics of the last frame
+    private int wallColumns;
+    private long floorNanos;
+    private long drawNanos;
+
+    public View3D(WorkerPool pool, int textureWidth, int textureHeight) {
+        floorCaster = new FloorCaster(pool, textureWidth, textureHeight);
+        softwareRenderer = new SoftwareRenderer(1, 1, textureWidth, textureHeight, floorCaster);
+    }
+
+    public void setScreenArea(int x, int y, int width, int height) {
+        screenX = x;
+        screenY = y;
+        screenWidth = width;
+        screenHeight = height;
+    }
+
+    // The buffers only grow, so going back and forth between resolutions does not allocate
+    public void setResolution(int columns, int rows) {
+        this.columns = columns;
+        this.rows = rows;
+        background.resize(columns, rows);
+        softwareRenderer.resize(columns, rows);
+    }
+
+    // Fogs the floor, the walls and the sprites by their distance, null turns the fog off.
+    // Nothing is visible past the end of the fog, so the rays stop there. The wall
+    // height scale is the one the walls of this view are drawn with
+    public void setFog(FogTable fog, float wallHeightScale) {
+        this.fog = fog;
+        softwareRenderer.setFog(fog, wallHeightScale);
+    }
+
+    // Points the camera plane and one ray per column along the direction
+    public void aim(float fov) {
+        camera.set(direction, fov, columns);
+        rays.fan(camera);
+        rays.maxDistance = fog != null ? fog.getFogEnd() : Float.POSITIVE_INFINITY;
+    }
+
+    // Casts the floor and the ceiling around the walls of the hits, into the
+    // software frame or, with the textures given here, into the background
+    public void drawFloorAndCeiling(boolean software, float wallHeightScale, float cellWidth, float cellHeight,
+                                    int[] floorTexels, int[] ceilingTexels) {
+        long start = System.nanoTime();
+        int walls = 0;
+        for(int i = 0; i < rays.count; i++) {
+            if(hits.cellValue[i] > 0) walls++;
+        }
+        wallColumns = walls;
+
+        // The floor and ceiling are only shaded above and below the walls that the rays hit
+        floorCaster.occludeWithWalls(hits, rays.count, rows, wallHeightScale);
+        if(software)
+            softwareRenderer.drawFloorAndCeiling(position, camera, cellWidth, cellHeight);
+        else
+            floorCaster.cast(background.getPixels(), columns, rows, position, camera, cellWidth, cellHeight,
+                    floorTexels, ceilingTexels);
+        floorNanos = System.nanoTime() - start;
+    }
+
+    // Culls and sorts the sprites, with the walls of the hits as the depth buffer. Software
+    // frames are as tall as the internal rows, the sprite batch path as the screen area.
+    // Sprites outside the cells that can be seen from the camera's cell are dropped, either
+    // with visible while they are projected or, with candidates, before, see
+    // MultiViewRenderer. At most one of them is given, without either no sprite is dropped
+    public void projectSprites(Sprites sprites, VisibleCells visible, VisibleSprites candidates, boolean software,
+                               float spriteWidth, float heightScale, float maxDistance) {
+        long start = System.nanoTime();
+        spriteRenderer.setDepth(hits, rays.count);
+        if(fog != null) maxDistance = Math.min(maxDistance, fog.getFogEnd());
+        int spriteRows = software ? rows : screenHeight;
+        if(candidates != null)
+            spriteRenderer.project(sprites, candidates, position.x, position.y, camera, spriteRows,
+                    spriteWidth, heightScale, maxDistance);
+        else
+            spriteRenderer.project(sprites, position.x, position.y, camera, spriteRows,
+                    spriteWidth, heightScale, maxDistance, visible);
+        drawNanos = System.nanoTime() - start;
+    }
+
+    // Draws the walls and then the sprites into the software frame
+    public void drawSoftware(Sprites sprites, float wallHeightScale, int textureWidth) {
+        long start = System.nanoTime();
+        for(int i = 0; i < rays.count; i++) {
+            int cellValue = hits.cellValue[i];
+            // The ray left the map without hitting a wall
+            if(cellValue <= 0) continue;
+            // Each ray is one column of the internal resolution, so the wall height is in internal rows
+            softwareRenderer.drawWallColumn(i, i + 1, wallHeightScale * rows / hits.distance[i], hits.side[i],
+                    cellValue, (int)(hits.textureU[i] * textureWidth), hits.distance[i]);
+        }
+        spriteRenderer.draw(sprites, softwareRenderer, textureWidth);
+        drawNanos += System.nanoTime() - start;
+    }
+
+    // Quads this view adds to the wall mesh with addToMesh()
+    public int getMeshQuadCount() {
+        return rays.count + spriteRenderer.getVisibleCount();
+    }
+
+    // Every column becomes a quad of the wall mesh, followed by the visible
+    // parts of the sprites, back to front
+    public void addToMesh(WallMesh mesh, Sprites sprites, float wallHeightScale, int textureWidth) {
+        long start = System.nanoTime();
+        // Calculate the number of pixels that each column of the 3D contains
+        float pixelsOfEachCol = (float)screenWidth / rays.count;
+        for(int i = 0; i < rays.count; i++) {
+            int cellValue = hits.cellValue[i];
+            if(cellValue <= 0) continue;
+
+            // Calculate the height of the column of the 3D screen
+            // This is calculated by dividing the maximum height of the screen
+            // by the perpendicular distance of the intersection from the camera pane
+            // Also, we multiply this by a final variable, to make the walls higher
+            float rectangleHeight = wallHeightScale * screenHeight / hits.distance[i];
+
+            // Place the centered rectangle of the wall inside the screen area of the view
+            Rectangle rectangle = wallRectangle.setCentered(screenX + i * pixelsOfEachCol + pixelsOfEachCol / 2,
+                    screenY + screenHeight / 2f, pixelsOfEachCol, rectangleHeight);
+
+            // If the ray hit the Y-Axis then the wall is made a bit darker through the vertex color
+            mesh.addColumn(rectangle.x, rectangle.y, rectangle.width, rectangle.height,
+                    cellValue, (int)(hits.textureU[i] * textureWidth), hits.side[i]);
+        }
+        spriteRenderer.draw(sprites, mesh, screenX, screenY, pixelsOfEachCol, screenHeight);
+        drawNanos += System.nanoTime() - start;
+    }
+
+    public SoftwareRenderer getSoftwareRenderer() {
+        return softwareRenderer;
+    }
+
+    // The software frame, valid after drawSoftware()
+    public PixelBuffer getFrame() {
+        return softwareRenderer.getPixelBuffer();
+    }
+
+    // The floor and ceiling of the sprite batch path, valid after drawFloorAndCeiling()
+    public PixelBuffer getBackground() {
+        return background;
+    }
+
+    public int getScreenX() {
+        return screenX;
+    }
+
+    public int getScreenY() {
+        return screenY;
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    // Columns whose ray hit a wall in the last frame
+    public int getWallColumns() {
+        return wallColumns;
+    }
+
+    // Sprites drawn in the last frame
+    public int getVisibleSprites() {
+        return spriteRenderer.getVisibleCount();
+    }
+
+    // Time the last frame spent on the floor and ceiling of this view
+    public long getFloorNanos() {
+        return floorNanos;
+    }
+
+    // Time the last frame spent on the sprites and the walls of this view
+    public long getDrawNanos() {
+        return drawNanos;
+    }
+}
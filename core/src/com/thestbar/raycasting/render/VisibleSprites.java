@@ -0,0 +1,36 @@
+package com.thestbar.raycasting.render;
+
+import com.thestbar.raycasting.map.Sprites;
+import com.thestbar.raycasting.map.VisibleCells;
+
+// Indices of the sprites that are in the cells of a VisibleCells. The cells
+// only depend on the cell the camera is in, not on where it looks, so the
+// list is found once per frame and shared by every view in that cell, which
+// then only projects these sprites instead of testing all the sprites of the
+// level. The array only grows, so selecting does not allocate
+public class VisibleSprites {
+    private int[] indices = new int[0];
+    private int count;
+
+    // When the cells are not known every sprite is kept
+    public void select(Sprites sprites, VisibleCells visible) {
+        if(indices.length < sprites.count) {
+            indices = new int[Math.max(sprites.count, indices.length * 2)];
+        }
+        int found = 0;
+        boolean culling = visible.isKnown();
+        for(int i = 0; i < sprites.count; i++) {
+            if(culling && !visible.containsPoint(sprites.x[i], sprites.y[i])) continue;
+            indices[found++] = i;
+        }
+        count = found;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int get(int index) {
+        return indices[index];
+    }
+}
@@ -0,0 +1,156 @@
+package com.thestbar.raycasting.render;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// All the wall columns and sprites of a frame as one array of textured quads.
+// The wall textures are packed side by side in a single atlas texture and the
+// side shading is carried by the vertex color, so the whole wall pass is one
+// batch.draw() call without texture switches. The second row of the atlas
+// holds the same textures with black made transparent, for the sprites
+public class WallMesh implements Disposable {
+    // Texels of this color are the transparent parts of a sprite
+    public static final int SPRITE_KEY_COLOR = 0x000000ff;
+
+    // Same layout as SpriteBatch: x, y, packed color, u, v for each of the 4 corners
+    private static final int VERTEX_SIZE = 5;
+    private static final int QUAD_SIZE = 4 * VERTEX_SIZE;
+
+    private final Pixmap atlasPixmap;
+    private final Texture atlas;
+    private final int textureWidth;
+    private final float texelU;
+    // Height of one row of the atlas in texture coordinates
+    private final float rowV = 0.5f;
+    private final float litColor = Color.WHITE.toFloatBits();
+    private final float sideColor;
+    private float[] vertices = new float[0];
+    private int quadCount = 0;
+
+    // Wall pixmaps in the order of their cell values, all of the same size
+    public WallMesh(Pixmap[] wallPixmaps, float sideShade) {
+        this(buildAtlas(wallPixmaps), wallPixmaps[0].getWidth(), sideShade);
+    }
+
+    // Takes over an atlas made by buildAtlas(), only this part needs the render thread
+    public WallMesh(Pixmap atlasPixmap, int textureWidth, float sideShade) {
+        this.atlasPixmap = atlasPixmap;
+        this.textureWidth = textureWidth;
+        // Managed, so the atlas is restored from the pixmap when the GL context is lost
+        atlas = new Texture(new PixmapTextureData(atlasPixmap, null, false, false, true));
+
+        texelU = 1f / atlasPixmap.getWidth();
+        sideColor = new Color(sideShade, sideShade, sideShade, 1).toFloatBits();
+    }
+
+    // Packs the wall pixmaps into the two rows of the atlas. Only touches pixmaps,
+    // so it can run on a worker thread while the render thread shows the loading screen
+    public static Pixmap buildAtlas(Pixmap[] wallPixmaps) {
+        int textureWidth = wallPixmaps[0].getWidth();
+        int textureHeight = wallPixmaps[0].getHeight();
+
+        Pixmap atlasPixmap = new Pixmap(textureWidth * wallPixmaps.length, textureHeight * 2, Pixmap.Format.RGBA8888);
+        atlasPixmap.setBlending(Pixmap.Blending.None);
+        for(int i = 0; i < wallPixmaps.length; i++) {
+            atlasPixmap.drawPixmap(wallPixmaps[i], i * textureWidth, 0);
+            atlasPixmap.drawPixmap(wallPixmaps[i], i * textureWidth, textureHeight);
+        }
+        // Straight on the pixel bytes of the second row, read as big endian ints they are RGBA8888
+        ByteBuffer pixels = atlasPixmap.getPixels().duplicate().order(ByteOrder.BIG_ENDIAN);
+        int rowBytes = 4 * atlasPixmap.getWidth();
+        for(int i = textureHeight * rowBytes; i < 2 * textureHeight * rowBytes; i += 4) {
+            if(pixels.getInt(i) == SPRITE_KEY_COLOR) pixels.putInt(i, 0);
+        }
+        return atlasPixmap;
+    }
+
+    // Starts a new frame, room for expectedQuads is made up front and more is added when needed
+    public void begin(int expectedQuads) {
+        if(vertices.length < expectedQuads * QUAD_SIZE) {
+            vertices = new float[expectedQuads * QUAD_SIZE];
+        }
+        quadCount = 0;
+    }
+
+    // Adds the quad of one wall column, one texel wide, of the wall with the given cell value
+    public void addColumn(float x, float y, float width, float height, int cellValue, int texX, boolean sideHit) {
+        if(texX < 0) texX = 0;
+        if(texX > textureWidth - 1) texX = textureWidth - 1;
+
+        float u = ((cellValue - 1) * textureWidth + texX) * texelU;
+        // Same corners and texture coordinates as batch.draw(region, x, y, width, height)
+        addQuad(x, y, width, height, u, u + texelU, rowV, 0, sideHit ? sideColor : litColor);
+    }
+
+    // Adds the part [u, u2) of a sprite, given as a fraction of its texture width.
+    // Unlike the walls the first row of the texture is at the top, at y
+    public void addSprite(float x, float y, float width, float height, int cellValue, float u, float u2) {
+        float textureU = (cellValue - 1) * textureWidth * texelU;
+        float textureWidthU = textureWidth * texelU;
+        addQuad(x, y, width, height, textureU + u * textureWidthU, textureU + u2 * textureWidthU,
+                rowV, 2 * rowV, litColor);
+    }
+
+    // Corner (x, y) gets texture coordinate (u, vAtY) and corner (x + width, y + height) gets (u2, vAtY2)
+    private void addQuad(float x, float y, float width, float height, float u, float u2,
+                         float vAtY, float vAtY2, float color) {
+        if(vertices.length < (quadCount + 1) * QUAD_SIZE) {
+            float[] grown = new float[Math.max(QUAD_SIZE, vertices.length * 2)];
+            System.arraycopy(vertices, 0, grown, 0, quadCount * QUAD_SIZE);
+            vertices = grown;
+        }
+        float fx2 = x + width;
+        float fy2 = y + height;
+
+        float[] vertices = this.vertices;
+        int i = quadCount * QUAD_SIZE;
+        vertices[i++] = x;
+        vertices[i++] = y;
+        vertices[i++] = color;
+        vertices[i++] = u;
+        vertices[i++] = vAtY;
+
+        vertices[i++] = x;
+        vertices[i++] = fy2;
+        vertices[i++] = color;
+        vertices[i++] = u;
+        vertices[i++] = vAtY2;
+
+        vertices[i++] = fx2;
+        vertices[i++] = fy2;
+        vertices[i++] = color;
+        vertices[i++] = u2;
+        vertices[i++] = vAtY2;
+
+        vertices[i++] = fx2;
+        vertices[i++] = y;
+        vertices[i++] = color;
+        vertices[i++] = u2;
+        vertices[i] = vAtY;
+
+        quadCount++;
+    }
+
+    // Submits every quad added since begin(), the batch must be drawing already
+    public void draw(Batch batch) {
+        if(quadCount == 0) return;
+        batch.draw(atlas, vertices, 0, quadCount * QUAD_SIZE);
+    }
+
+    public int getQuadCount() {
+        return quadCount;
+    }
+
+    @Override
+    public void dispose() {
+        atlas.dispose();
+        atlasPixmap.dispose();
+    }
+}
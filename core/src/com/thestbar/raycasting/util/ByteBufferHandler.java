@@ -11,6 +11,11 @@ public class ByteBufferHandler {
         intBuffer.put(data); // position of this IntBuffer changes by +data.length;
     } // this IntBuffer goes out of scope
 
+    public static void put_ints(ByteBuffer byteBuffer, int[] data, int length) {
+        IntBuffer intBuffer = byteBuffer.asIntBuffer();
+        intBuffer.put(data, 0, length); // only the first length ints are copied
+    }
+
     public static void print(ByteBuffer byteBuffer) { // prints from start to limit
         ByteBuffer byteBuffer2 = byteBuffer.duplicate(); // shares backing content, but has its own capacity/limit/position/mark (equivalent to original buffer at initialization)
         byteBuffer2.rewind();
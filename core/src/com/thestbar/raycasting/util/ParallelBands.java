@@ -0,0 +1,85 @@
+package com.thestbar.raycasting.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the bands of a frame (ranges of columns, rows, ...) on a worker pool
+// together with the calling thread. The helper tasks are created once and the
+// bands are claimed through a shared counter, so running a frame does not
+// allocate, and the calling thread never sits idle while bands are still queued.
+// With a pool without threads every band runs on the calling thread
+public abstract class ParallelBands {
+    private final WorkerPool pool;
+    private final Helper[] helpers;
+    private final AtomicInteger nextBand = new AtomicInteger();
+    private int bandCount;
+
+    protected ParallelBands(WorkerPool pool) {
+        this.pool = pool;
+        helpers = new Helper[pool.getThreadCount()];
+        for(int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Helper();
+        }
+    }
+
+    // Calls runBand() once for every band in [0, bandCount) and returns when all of them are done
+    public void run(int bandCount) {
+        if(bandCount <= 1) {
+            if(bandCount == 1) runBand(0);
+            return;
+        }
+
+        this.bandCount = bandCount;
+        nextBand.set(0);
+
+        int helperCount = Math.min(helpers.length, bandCount - 1);
+        for(int i = 0; i < helperCount; i++) {
+            pool.execute(helpers[i]);
+        }
+
+        Throwable failure = null;
+        try {
+            claimBands();
+        } catch (Throwable t) {
+            failure = t;
+            // The bands nobody claimed yet are dropped, so the helpers stop early
+            nextBand.set(bandCount);
+        }
+
+        // All bands are claimed, take back the helpers that no thread started
+        // and wait for the ones still running their last band. The helpers have
+        // to be idle again before run() returns, even when a band threw, or
+        // queueing them next frame fails. The first failure is thrown once all are
+        for(int i = 0; i < helperCount; i++) {
+            if(!helpers[i].tryUnqueue()) {
+                while(!helpers[i].isDone()) {
+                    Thread.yield();
+                }
+            }
+            Throwable helperFailure = helpers[i].takeFailure();
+            if(failure == null) failure = helperFailure;
+        }
+        if(failure instanceof RuntimeException) throw (RuntimeException)failure;
+        if(failure instanceof Error) throw (Error)failure;
+        if(failure != null) throw new RuntimeException(failure);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    protected abstract void runBand(int band);
+
+    private void claimBands() {
+        int band;
+        while((band = nextBand.getAndIncrement()) < bandCount) {
+            runBand(band);
+        }
+    }
+
+    private class Helper extends WorkerPool.Task {
+        @Override
+        protected void compute() {
+            claimBands();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.thestbar.raycasting.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Worker threads for the bands of a frame and for the loading jobs. Android
+// only has ForkJoinPool from API 21 on and the game still runs on API 14, so
+// this is a fixed set of daemon threads that take tasks from one queue, built
+// from what every Java and Android version has. Tasks are reusable objects,
+// queueing one does not allocate once the queue has grown to its working
+// size. The thread that runs the bands of a frame works on them too, so the
+// default pool has one thread less than there are cores, but at least one for
+// the loading jobs. A pool without threads runs every task on the thread that
+// queues it
+public class WorkerPool {
+    private final Thread[] threads;
+    private final Object lock = new Object();
+    // Ring buffer of the queued tasks, guarded by lock
+    private Task[] queue = new Task[16];
+    private int head = 0;
+    private int size = 0;
+    private boolean shutdown = false;
+
+    public WorkerPool() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public WorkerPool(int threadCount) {
+        if(threadCount < 0) {
+            throw new IllegalArgumentException("Thread count can not be negative, got " + threadCount);
+        }
+        threads = new Thread[threadCount];
+        for(int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "worker-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    // Threads that work on the bands of a frame, the one that runs them included
+    public int getParallelism() {
+        return threads.length + 1;
+    }
+
+    public int getThreadCount() {
+        return threads.length;
+    }
+
+    // Queues a task that is not queued or running already
+    public void execute(Task task) {
+        if(!task.state.compareAndSet(Task.IDLE, Task.QUEUED)) {
+            throw new IllegalStateException("Task is queued or running already");
+        }
+        if(threads.length == 0) {
+            task.runIfQueued();
+            return;
+        }
+        synchronized(lock) {
+            if(shutdown) {
+                task.state.set(Task.IDLE);
+                throw new IllegalStateException("Worker pool is shut down");
+            }
+            if(size == queue.length) {
+                Task[] grown = new Task[queue.length * 2];
+                for(int i = 0; i < size; i++) {
+                    grown[i] = queue[(head + i) % queue.length];
+                }
+                queue = grown;
+                head = 0;
+            }
+            queue[(head + size) % queue.length] = task;
+            size++;
+            lock.notify();
+        }
+    }
+
+    // Runs the callable as a job of its own, jobs that wait for other jobs
+    // have to be submitted after them, the queue runs in the order it was filled
+    public <T> Job<T> submit(Callable<T> callable) {
+        Job<T> job = new Job<T>(callable);
+        execute(job);
+        return job;
+    }
+
+    // Lets the threads end once the queue is empty
+    public void shutdown() {
+        synchronized(lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void work() {
+        while(true) {
+            Task task;
+            synchronized(lock) {
+                while(size == 0 && !shutdown) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if(size == 0) return;
+                task = queue[head];
+                queue[head] = null;
+                head = (head + 1) % queue.length;
+                size--;
+            }
+            task.runIfQueued();
+        }
+    }
+
+    // Work that can be queued again every time it finished. A task that was
+    // taken back with tryUnqueue() is skipped when a thread reaches it
+    public abstract static class Task {
+        private static final int IDLE = 0;
+        private static final int QUEUED = 1;
+        private static final int RUNNING = 2;
+
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        // What the last run threw, null when it did not throw
+        private volatile Throwable failure;
+
+        protected abstract void compute();
+
+        private void runIfQueued() {
+            if(!state.compareAndSet(QUEUED, RUNNING)) return;
+            try {
+                compute();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                state.set(IDLE);
+            }
+        }
+
+        // Takes the task back if no thread started it yet, then it will not run
+        public boolean tryUnqueue() {
+            return state.compareAndSet(QUEUED, IDLE);
+        }
+
+        // True when the task is neither queued nor running
+        public boolean isDone() {
+            return state.get() == IDLE;
+        }
+
+        // What the last run threw, or null, and forgets it so the next run starts clean
+        public Throwable takeFailure() {
+            Throwable t = failure;
+            failure = null;
+            return t;
+        }
+    }
+
+    // A task that runs once and keeps the result of its callable
+    public static class Job<T> extends Task {
+        private final Callable<T> callable;
+        private T result;
+        private Throwable exception;
+        private volatile boolean done = false;
+
+        private Job(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                result = callable.call();
+            } catch (Throwable t) {
+                exception = t;
+            } finally {
+                synchronized(this) {
+                    done = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        // Waits for the result, an exception of the callable is thrown here
+        public T join() {
+            synchronized(this) {
+                while(!done) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(e);
+                    }
+                }
+            }
+            if(exception instanceof RuntimeException) throw (RuntimeException)exception;
+            if(exception instanceof Error) throw (Error)exception;
+            if(exception != null) throw new RuntimeException(exception);
+            return result;
+        }
+    }
+}
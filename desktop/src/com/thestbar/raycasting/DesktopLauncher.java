@@ -4,6 +4,8 @@ import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.thestbar.raycasting.RayCasting;
 
+import java.io.File;
+
 // Please note that on macOS your application needs to be started with the -XstartOnFirstThread JVM argument
 public class DesktopLauncher {
 	public static void main (String[] arg) {
@@ -12,6 +14,16 @@ public class DesktopLauncher {
 		config.useVsync(false);
 		config.setTitle("RayCasting");
 		config.setWindowedMode(1440, 720);
-		new Lwjgl3Application(new RayCasting(), config);
+
+		// --record <file> writes the input of the session to a trace, --replay <file> plays one back
+		File recordFile = null;
+		File replayFile = null;
+		for(int i = 0; i + 1 < arg.length; i++) {
+			if(arg[i].equals("--record")) recordFile = new File(arg[++i]);
+			else if(arg[i].equals("--replay")) replayFile = new File(arg[++i]);
+		}
+		// Baked files go to the user's home, the working directory may be the source tree
+		File cacheDirectory = new File(System.getProperty("user.home"), ".raycasting" + File.separator + "cache");
+		new Lwjgl3Application(new RayCasting(recordFile, replayFile, cacheDirectory), config);
 	}
 }